@@ -0,0 +1,159 @@
+package engine;
+
+import lexer.TokenType;
+import java.util.Random;
+
+/**
+ * Times the vector kernels against the scalar loops they replace. Each
+ * kernel runs over columns of a million rows, or of the number of rows
+ * given as the first argument, first untimed so the JIT compiles it, then
+ * timed; the best of several rounds is reported. Run with
+ * {@code ant bench}.
+ * @author Zach Kissel
+ */
+public final class KernelBenchmark
+{
+  private static final int WARMUP = 200;     // The untimed runs.
+  private static final int ROUNDS = 10;      // The timed rounds.
+  private static final int RUNS = 50;        // The runs in each round.
+
+  private static int rows = 1 << 20;        // The rows of each column.
+  private static int[] ia;
+  private static int[] ib;
+  private static int[] ires;
+  private static double[] da;
+  private static double[] db;
+  private static double[] dres;
+  private static boolean[] cond;
+  private static boolean[] bres;
+  private static int zeros;                 // The columns found to hold 0.
+
+  /**
+   * A kernel to time.
+   */
+  private interface Kernel
+  {
+    /**
+     * Runs the kernel once over the columns.
+     */
+    void run();
+  }
+
+  /**
+   * Prevents construction.
+   */
+  private KernelBenchmark()
+  {
+  }
+
+  /**
+   * Runs the benchmark.
+   * @param args the number of rows, if given.
+   */
+  public static void main(String[] args)
+  {
+    Random rand = new Random(42);
+
+    if (args.length > 0)
+      rows = Integer.parseInt(args[0]);
+    ia = new int[rows];
+    ib = new int[rows];
+    ires = new int[rows];
+    da = new double[rows];
+    db = new double[rows];
+    dres = new double[rows];
+    cond = new boolean[rows];
+    bres = new boolean[rows];
+
+    for (int i = 0; i < rows; i++)
+    {
+      ia[i] = rand.nextInt();
+      ib[i] = rand.nextInt(1000) + 1;
+      da[i] = rand.nextDouble();
+      db[i] = rand.nextDouble() + 1.0;
+      cond[i] = rand.nextBoolean();
+    }
+
+    if (!Kernels.VECTOR)
+    {
+      System.out.println("The Vector API is not in use; nothing to compare.");
+      return;
+    }
+    System.out.printf("%d rows, %d integer lanes%n%n", rows,
+      VectorKernels.lanes());
+    System.out.printf("%-16s %12s %12s %8s%n", "kernel", "scalar (us)",
+      "vector (us)", "speedup");
+
+    for (TokenType op : new TokenType[] { TokenType.ADD, TokenType.MULT })
+      compare("int " + op,
+        () -> Kernels.arith(op, ia, ib, ires, 0),
+        () -> Kernels.arith(op, ia, ib, ires,
+          VectorKernels.arith(op, ia, ib, ires)));
+    for (TokenType op : new TokenType[] { TokenType.ADD, TokenType.DIV })
+      compare("double " + op,
+        () -> Kernels.arith(op, da, db, dres, 0),
+        () -> Kernels.arith(op, da, db, dres,
+          VectorKernels.arith(op, da, db, dres)));
+    compare("int LT",
+      () -> Kernels.compare(TokenType.LT, ia, ib, bres, 0),
+      () -> Kernels.compare(TokenType.LT, ia, ib, bres,
+        VectorKernels.compare(TokenType.LT, ia, ib, bres)));
+    compare("int select",
+      () -> Kernels.select(cond, ia, ib, ires, 0),
+      () -> Kernels.select(cond, ia, ib, ires,
+        VectorKernels.select(cond, ia, ib, ires)));
+    compare("double select",
+      () -> Kernels.select(cond, da, db, dres, 0),
+      () -> Kernels.select(cond, da, db, dres,
+        VectorKernels.select(cond, da, db, dres)));
+    compare("int hasZero",
+      () -> zeros += Kernels.hasZero(ib, 0) ? 1 : 0,
+      () -> zeros += Kernels.hasZero(ib, VectorKernels.hasZero(ib) ? rows :
+        VectorKernels.intBound(rows)) ? 1 : 0);
+
+    // The divisors are never 0; printing the count keeps the JIT from
+    // dropping the searches as dead code.
+    System.out.printf("%nzero columns found: %d%n", zeros);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Times a scalar loop and its vector kernel and prints the results.
+   * @param name the name of the kernel.
+   * @param scalar the scalar loop.
+   * @param vector the vector kernel followed by the scalar tail.
+   */
+  private static void compare(String name, Kernel scalar, Kernel vector)
+  {
+    double slow = time(scalar);
+    double fast = time(vector);
+
+    System.out.printf("%-16s %12.1f %12.1f %7.2fx%n", name, slow, fast,
+      slow / fast);
+  }
+
+  /**
+   * Times a kernel.
+   * @param kernel the kernel.
+   * @return the best time of one run, in microseconds.
+   */
+  private static double time(Kernel kernel)
+  {
+    long best = Long.MAX_VALUE;
+
+    for (int i = 0; i < WARMUP; i++)
+      kernel.run();
+    for (int round = 0; round < ROUNDS; round++)
+    {
+      long start = System.nanoTime();
+
+      for (int i = 0; i < RUNS; i++)
+        kernel.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / (RUNS * 1000.0);
+  }
+}
@@ -0,0 +1,210 @@
+package engine;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks prepared programs against the values they should have. Each
+ * program is prepared once and evaluated with several bindings of its
+ * parameters, and programs evaluated over columns are checked against
+ * evaluating them one row at a time. A mismatch is printed and the check
+ * exits with status 1. Run with {@code ant check}, which checks once
+ * with the Vector API and once without it.
+ * @author Zach Kissel
+ */
+public final class EngineCheck
+{
+  // The rows of each column; not a multiple of any vector length.
+  private static final int ROWS = 10007;
+
+  // Programs over the columns x, y (integers), u, v (reals) and b.
+  private static final String[] COLUMN_PROGRAMS = {
+    "x + y * 3 - x", "(x * y) / y", "x - 7", "u / v + u * v - u",
+    "if x < y then x else y", "if x >= y then u else v",
+    "if (u > v) or (x = y) then 1 else 0", "if u = v then 1.5 else u",
+    "x <= 0", "not b", "b and (x > 0)", "if b then u else 2.5",
+    "if x > 0 then x else 1.5", "fun sq z ~ (z * z)\napply sq x",
+    "hd list(x, y)" };
+
+  private static int checks;     // The checks made.
+  private static int failures;   // The checks that failed.
+
+  /**
+   * Prevents construction.
+   */
+  private EngineCheck()
+  {
+  }
+
+  /**
+   * Runs the checks.
+   * @param args unused.
+   */
+  public static void main(String[] args)
+  {
+    checkPrepared();
+    checkColumns();
+
+    System.out.printf("%d checks, %d failed, %s kernels%n", checks, failures,
+      Kernels.VECTOR ? "vector" : "scalar");
+    if (failures > 0)
+      System.exit(1);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Checks evaluating prepared programs one binding at a time.
+   */
+  private static void checkPrepared()
+  {
+    PreparedProgram sq = PreparedProgram.prepare(
+      "fun sq x ~ (x * x)\napply sq n", "n");
+    PreparedProgram scaled = PreparedProgram.prepare(
+      "fun scale x ~ (x * k)\nlet k := 100 in apply scale n", "n", "k");
+    PreparedProgram pick = PreparedProgram.prepare(
+      "if b then x + 1 else x - 1", "x", "b");
+    PreparedProgram union = PreparedProgram.prepare("s union set[4, 5]",
+      "s");
+
+    for (int n = -3; n <= 3; n++)
+      expect("sq " + n, n * n, sq.evaluate(n));
+    expect("sq 2.5", 6.25, sq.evaluate(2.5));
+    expect("sq by name", 49, sq.evaluate(Map.of("n", 7)));
+
+    // The body of scale sees the parameter k, not the let around the call.
+    expect("scale", 21, scaled.evaluate(7, 3));
+    expect("pick true", 5, pick.evaluate(4, true));
+    expect("pick false", 3, pick.evaluate(4, false));
+    expect("union", Set.of(1, 4, 5), union.evaluate(Set.of(1, 5)));
+
+    expectRejected("too few arguments", () -> sq.evaluate());
+    expectRejected("unbound parameter", () -> pick.evaluate(Map.of("x", 1)));
+    expectRejected("bad value", () -> sq.evaluate("seven"));
+    expectRejected("bad program",
+      () -> PreparedProgram.prepare("fun f x => x", "x"));
+    expectRejected("parameter named twice",
+      () -> PreparedProgram.prepare("x", "x", "x"));
+  }
+
+  /**
+   * Checks evaluating programs over columns against evaluating them one
+   * row at a time.
+   */
+  private static void checkColumns()
+  {
+    Random rand = new Random(7);
+    int[] x = new int[ROWS];
+    int[] y = new int[ROWS];
+    double[] u = new double[ROWS];
+    double[] v = new double[ROWS];
+    boolean[] b = new boolean[ROWS];
+    Map<String, Object> columns = new HashMap<>();
+
+    for (int i = 0; i < ROWS; i++)
+    {
+      x[i] = rand.nextInt(2001) - 1000;
+      y[i] = rand.nextInt(50) + 1;
+      u[i] = rand.nextDouble() - 0.5;
+      v[i] = i % 97 == 0 ? Double.NaN : rand.nextDouble();
+      b[i] = rand.nextBoolean();
+    }
+    columns.put("x", x);
+    columns.put("y", y);
+    columns.put("u", u);
+    columns.put("v", v);
+    columns.put("b", b);
+
+    for (String source : COLUMN_PROGRAMS)
+      checkColumns(source, columns);
+
+    // A parameter bound to a single value is used in every row.
+    columns.put("y", 3);
+    checkColumns("x * y", columns);
+  }
+
+  /**
+   * Checks evaluating a program over columns against evaluating it one
+   * row at a time.
+   * @param source the program.
+   * @param columns the columns and values of its parameters.
+   */
+  private static void checkColumns(String source, Map<String, Object> columns)
+  {
+    PreparedProgram prog = PreparedProgram.prepare(source,
+      columns.keySet().toArray(new String[0]));
+    Object res = prog.evaluateColumns(columns);
+    Map<String, Object> row = new HashMap<>();
+
+    checks++;
+    for (int i = 0; i < ROWS; i++)
+    {
+      Object expected;
+
+      for (Map.Entry<String, Object> col : columns.entrySet())
+        row.put(col.getKey(), col.getValue().getClass().isArray() ?
+          Array.get(col.getValue(), i) : col.getValue());
+      expected = prog.evaluate(row);
+      if (!same(expected, Array.get(res, i)))
+      {
+        failures++;
+        System.out.println(source + ": row " + i + " expected " + expected +
+          " but got " + Array.get(res, i));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Determines if two values of a row are the same.
+   * @param a one value or null.
+   * @param b the other value or null.
+   * @return true if the values are equal or both null.
+   */
+  private static boolean same(Object a, Object b)
+  {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  /**
+   * Checks that a value is the one expected.
+   * @param name the name of the check.
+   * @param expected the expected value.
+   * @param actual the value computed.
+   */
+  private static void expect(String name, Object expected, Object actual)
+  {
+    checks++;
+    if (!expected.equals(actual))
+    {
+      failures++;
+      System.out.println(name + ": expected " + expected + " but got " +
+        actual);
+    }
+  }
+
+  /**
+   * Checks that an action is rejected with an
+   * {@link IllegalArgumentException}.
+   * @param name the name of the check.
+   * @param action the action.
+   */
+  private static void expectRejected(String name, Runnable action)
+  {
+    checks++;
+    try
+    {
+      action.run();
+      failures++;
+      System.out.println(name + ": not rejected");
+    }
+    catch (IllegalArgumentException ex)
+    {
+    }
+  }
+}
@@ -1,9 +1,51 @@
 #!/bin/sh
 
+# The modes whose output must match the tree walker's. Options of a mode
+# are joined by commas. A program the type checker rejects is not run, so
+# its output under -s is not compared.
+modes="-c -j -H -T,1 -O -O,-j -n -m -s"
+
+# Runs the interpreter, stopping programs the parser never finishes.
+run()
+{
+  timeout 10 java -jar dist/let-lang.jar "$@" 2>&1 | head -c 65536
+}
+
+# Drops the lines reporting what the optimizer and memo tables did.
+filter()
+{
+  grep -v -e '^Inlined [0-9]* calls\.$' -e '^Folding removed [0-9]* nodes\.$' \
+    -e '^Memo .*: [0-9]* hits, [0-9]* misses\.$'
+}
+
 mkdir -p results
+got=$(mktemp)
+trap 'rm -f $got' EXIT
+status=0
 for i in $(ls tests/*.let); do
   printf "Processing test %13s . . . " `basename $i .let`
   out="results/"`basename $i .let`".expected"
-  java -jar dist/let-lang.jar $i &> $out
+  run $i | filter > $out
+  for mode in $modes; do
+    run $(echo $mode | tr , ' ') $i | filter > $got
+    if [ $mode = -s ] && grep -q '^Type error: ' $got; then
+      continue
+    fi
+    if ! cmp -s $got $out; then
+      printf "[ %s DIFFERS ] " $mode
+      status=1
+    fi
+  done
   echo "[ DONE ]"
 done
+
+# Checks the prepared programs of the engine.
+printf "Processing check %12s . . . " engine
+if ant -q check > $got 2>&1; then
+  echo "[ DONE ]"
+else
+  echo "[ FAILED ]"
+  cat $got
+  status=1
+fi
+exit $status
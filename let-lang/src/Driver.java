@@ -1,7 +1,28 @@
 import java.util.Scanner;
 import java.io.File;
+import lexer.TokenType;
 import parser.Parser;
 import ast.SyntaxTree;
+import ast.nodes.BinOpNode;
+import compiler.Compiler;
+import compiler.CompileException;
+import compiler.Program;
+import analysis.PurityAnalysis;
+import analysis.Resolver;
+import analysis.Type;
+import analysis.TypeException;
+import analysis.TypeInference;
+import ast.nodes.FunNode;
+import environment.MemoTable;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import compiler.VirtualMachine;
+import jvm.HandleCompiler;
+import jvm.JvmCompiler;
+import jvm.TieredCompiler;
+import optimizer.ConstantFolder;
+import optimizer.Inliner;
 
 import java.io.FileNotFoundException;
 
@@ -18,7 +39,21 @@ import java.io.FileNotFoundException;
     */
    public static void usage()
    {
-     System.err.println("Usage: let-lang [-t] <filename> ");
+     System.err.println("Usage: let-lang [-t] [-c] [-j] [-H] [-T calls] [-O] [-L] [-n]\n" +
+       "                [-s] [-m] [-M name] [-S size] [-F] <filename> ");
+     System.err.println("  -t  trace the parser");
+     System.err.println("  -c  compile to bytecode and run on the virtual machine");
+     System.err.println("  -j  compile to JVM bytecode");
+     System.err.println("  -H  compile to a tree of method handles");
+     System.err.println("  -T  compile functions to JVM bytecode once called this often");
+     System.err.println("  -O  inline small functions and fold constant expressions");
+     System.err.println("  -L  skip the right operand of * when the left is 0");
+     System.err.println("  -n  evaluate bindings and arguments only when needed");
+     System.err.println("  -s  check the types of the program before running it");
+     System.err.println("  -m  memoize every pure function");
+     System.err.println("  -M  memoize the named pure function");
+     System.err.println("  -S  the number of results each memo table holds");
+     System.err.println("  -F  evict the least frequently used memo entry");
      System.exit(1);
    }
 
@@ -30,24 +65,77 @@ import java.io.FileNotFoundException;
    {
      Parser parse;
      SyntaxTree ast;
-     String fileName;
+     String fileName = null;
      boolean doTracing = false;
+     boolean doCompile = false;
+     boolean doJvm = false;
+     boolean doHandles = false;
+     int tierThreshold = 0;
+     boolean doOptimize = false;
+     boolean doLazy = false;
+     boolean doTypes = false;
+     boolean memoAll = false;
+     ArrayList<String> memoNames = new ArrayList<>();
+     int memoSize = 1024;
+     MemoTable.Policy policy = MemoTable.Policy.LRU;
 
-     // Determine if we are looking at file or command line.
-     if (args.length > 2 || args.length < 1)
-      usage();
-
-     // Process command line arguments.
-     fileName = args[0];
-     if (args.length == 2)
+     // Process command line arguments; the file name comes last.
+     for (int i = 0; i < args.length; i++)
      {
-        fileName = args[1];
-        if (args[0].equals("-t"))
-          doTracing = true;
-        else
-          usage();
+       if (args[i].equals("-t"))
+         doTracing = true;
+       else if (args[i].equals("-c"))
+         doCompile = true;
+       else if (args[i].equals("-j"))
+         doJvm = true;
+       else if (args[i].equals("-H"))
+         doHandles = true;
+       else if (args[i].equals("-T") && i < args.length - 2)
+       {
+         try
+         {
+           tierThreshold = Integer.parseInt(args[++i]);
+         }
+         catch (NumberFormatException ex)
+         {
+           usage();
+         }
+         if (tierThreshold < 1)
+           usage();
+       }
+       else if (args[i].equals("-O"))
+         doOptimize = true;
+       else if (args[i].equals("-n"))
+         doLazy = true;
+       else if (args[i].equals("-s"))
+         doTypes = true;
+       else if (args[i].equals("-m"))
+         memoAll = true;
+       else if (args[i].equals("-M") && i < args.length - 2)
+         memoNames.add(args[++i]);
+       else if (args[i].equals("-S") && i < args.length - 2)
+       {
+         try
+         {
+           memoSize = Integer.parseInt(args[++i]);
+         }
+         catch (NumberFormatException ex)
+         {
+           usage();
+         }
+         if (memoSize < 1)
+           usage();
+       }
+       else if (args[i].equals("-F"))
+         policy = MemoTable.Policy.LFU;
+       else if (args[i].equals("-L"))
+         BinOpNode.setLazy(TokenType.MULT, true);
+       else if (i == args.length - 1 && !args[i].startsWith("-"))
+         fileName = args[i];
+       else
+         usage();
      }
-     if (fileName.equals("-t"))
+     if (fileName == null)
       usage();
 
      // Try to interpret the program.
@@ -63,7 +151,43 @@ import java.io.FileNotFoundException;
        if (!parse.hasError())
        {
         System.out.println("Parse successful!");
-        System.out.println("Result: " + ast.evaluate());
+        if (doOptimize)
+        {
+          System.out.println("Inlined " + new Inliner().inline(ast) +
+            " calls.");
+          System.out.println("Folding removed " +
+            new ConstantFolder().fold(ast) + " nodes.");
+        }
+
+        // Compiled code evaluates eagerly, so lazy trees are walked.
+        if (doLazy)
+        {
+          new Resolver(true).resolve(ast);
+          doCompile = false;
+          doJvm = false;
+          doHandles = false;
+          tierThreshold = 0;
+        }
+
+        // Memo tables live on the tree, so memoized programs are walked.
+        Set<FunNode> memoized = memoize(ast, memoAll, memoNames,
+          memoSize, policy);
+        if (!memoized.isEmpty())
+        {
+          doCompile = false;
+          doJvm = false;
+          doHandles = false;
+          tierThreshold = 0;
+        }
+
+        if (doTypes && !typeCheck(ast, doTracing))
+          return;
+
+        System.out.println("Result: " +
+          run(ast, doCompile, doJvm, doHandles, tierThreshold, doTracing));
+        for (FunNode fun : memoized)
+          System.out.println("Memo " + fun.getName().getValue() + ": " +
+            fun.getMemoTable() + ".");
        }
        else
         System.out.println("Parse failed.");
@@ -74,4 +198,120 @@ import java.io.FileNotFoundException;
        System.exit(1);
      }
    }
+
+   /**
+    * Checks the types of the program, annotating the tree with what is
+    * learned.
+    * @param ast the tree of the program.
+    * @param tracing true if the type of each function should be printed.
+    * @return true if the program is well typed; otherwise, false.
+    */
+   private static boolean typeCheck(SyntaxTree ast, boolean tracing)
+   {
+     try
+     {
+       Map<FunNode, Type> types = new TypeInference().infer(ast);
+
+       if (tracing)
+         for (Map.Entry<FunNode, Type> entry : types.entrySet())
+           System.out.println(entry.getKey().getName().getValue() + " : " +
+             entry.getValue());
+       return true;
+     }
+     catch (TypeException ex)
+     {
+       System.out.println("Type error: " + ex.getMessage());
+       return false;
+     }
+   }
+
+  /**
+    * Gives each pure function asked for a memo table. A function named
+    * that is not pure is reported and left alone.
+    * @param ast the resolved syntax tree.
+    * @param all true if every pure function should be memoized.
+    * @param names the names of the functions to memoize.
+    * @param size the number of results each table holds.
+    * @param policy how the tables evict results.
+    * @return the functions memoized.
+    */
+   private static Set<FunNode> memoize(SyntaxTree ast, boolean all,
+     ArrayList<String> names, int size, MemoTable.Policy policy)
+   {
+     Set<FunNode> pure = new PurityAnalysis().analyze(ast);
+
+     if (!all)
+     {
+       for (String name : names)
+         if (pure.stream().noneMatch(f -> f.getName().getValue().equals(name)))
+           System.out.println("No pure function " + name +
+             "; not memoized.");
+       pure.removeIf(f -> !names.contains(f.getName().getValue()));
+     }
+     for (FunNode fun : pure)
+       fun.setMemoTable(MemoTable.create(size, policy));
+     return pure;
+   }
+
+   /**
+    * Evaluates the syntax tree either by walking it or by compiling it to
+    * bytecode. Programs the compiler can not handle are walked.
+    * @param ast the syntax tree to evaluate.
+    * @param doCompile true if the tree should be compiled.
+    * @param doJvm true if the tree should be compiled to JVM bytecode.
+    * @param doHandles true if the tree should be compiled to method
+    * handles.
+    * @param tierThreshold the number of calls after which a function of
+    * a walked tree is compiled or 0 to walk every call.
+    * @param doTracing true if the bytecode should be listed.
+    * @return the result of the program.
+    */
+   private static Object run(SyntaxTree ast, boolean doCompile,
+     boolean doJvm, boolean doHandles, int tierThreshold, boolean doTracing)
+   {
+     if (doJvm)
+     {
+       try
+       {
+         return new JvmCompiler().compile(ast).run();
+       }
+       catch (CompileException ex)
+       {
+         if (doTracing)
+           System.out.println("Not compiled: " + ex.getMessage());
+       }
+     }
+     else if (doHandles)
+     {
+       try
+       {
+         return HandleCompiler.cached(ast).run();
+       }
+       catch (CompileException ex)
+       {
+         if (doTracing)
+           System.out.println("Not compiled: " + ex.getMessage());
+       }
+     }
+     else if (doCompile)
+     {
+       try
+       {
+         Program prog = new Compiler().compile(ast);
+         if (doTracing)
+           System.out.print(prog.disassemble());
+         return new VirtualMachine(prog).run();
+       }
+       catch (CompileException ex)
+       {
+         if (doTracing)
+           System.out.println("Not compiled: " + ex.getMessage());
+       }
+     }
+
+     // The hot functions of a walked tree are compiled as it runs.
+     if (tierThreshold > 0)
+       new TieredCompiler(ast, doTracing).attach(tierThreshold);
+     return ast.evaluate();
+   }
  }
@@ -0,0 +1,180 @@
+package analysis;
+
+import ast.SyntaxTree;
+import ast.nodes.*;
+import lexer.TokenType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the named functions whose result depends only on their argument,
+ * so that a call may be answered from a memo table. The body of a pure
+ * function uses only its parameter, its own let bindings and the named
+ * functions of the program, and it only calls named functions that are
+ * themselves pure. Functions that build closures or call functions they
+ * are given are not pure, nor are functions using a variable with no
+ * binding, since looking it up prints a message. A function calling a
+ * name that is defined more than once is not pure either, as the
+ * definition it reaches depends on when it is called. The analysis assumes
+ * every function pure and removes the ones that are not until nothing
+ * changes, so recursive functions can be pure. The tree must have been
+ * resolved.
+ * @author Zach Kissel
+ */
+public class PurityAnalysis
+{
+  // The depth of the program frame as seen from a function body.
+  private static final int PROGRAM_DEPTH = 1;
+
+  private Map<Integer, FunNode> functions;  // The functions by slot.
+  private Set<Integer> redefined;           // Slots defined more than once.
+  private Set<FunNode> pure;                // The functions still pure.
+
+  /**
+   * Finds the pure named functions of the tree {@code tree}.
+   * @param tree the resolved tree.
+   * @return the pure functions in the order they are defined.
+   */
+  public Set<FunNode> analyze(SyntaxTree tree)
+  {
+    boolean changed = true;
+
+    functions = new HashMap<>();
+    redefined = new HashSet<>();
+    pure = new LinkedHashSet<>();
+    if (tree.getRootNode() instanceof ProgNode)
+      for (SyntaxNode expr : ((ProgNode) tree.getRootNode()).getExprs())
+        if (expr instanceof FunNode)
+        {
+          FunNode fun = (FunNode) expr;
+          if (functions.put(fun.getSlot(), fun) != null)
+            redefined.add(fun.getSlot());
+          pure.add(fun);
+        }
+
+    while (changed)
+      changed = pure.removeIf(fun -> !isPure(fun.getLambdaExpression()));
+    return pure;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Determines if a function is pure given the functions still thought
+   * pure.
+   * @param node the lambda expression of the function.
+   * @return true if the function is pure; otherwise, false.
+   */
+  private boolean isPure(SyntaxNode node)
+  {
+    LambdaNode lexp = (LambdaNode) node;
+
+    return !lexp.isClosure() && check(lexp.getExpr());
+  }
+
+  /**
+   * Determines if an expression of a function body is pure.
+   * @param node the root of the expression.
+   * @return true if the expression is pure; otherwise, false.
+   */
+  private boolean check(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+    {
+      TokenNode tok = (TokenNode) node;
+      return tok.getToken().getType() != TokenType.ID ||
+        tok.getDepth() >= 0;
+    }
+    else if (node instanceof BinOpNode)
+      return check(((BinOpNode) node).getLeftTerm()) &&
+        check(((BinOpNode) node).getRightTerm());
+    else if (node instanceof RelOpNode)
+      return check(((RelOpNode) node).getLeftExpr()) &&
+        check(((RelOpNode) node).getRightExpr());
+    else if (node instanceof UnaryOpNode)
+      return check(((UnaryOpNode) node).getExpr());
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      return check(ifNode.getCond()) && check(ifNode.getTrueBranch()) &&
+        check(ifNode.getFalseBranch());
+    }
+    else if (node instanceof LetNode)
+    {
+      LetNode let = (LetNode) node;
+
+      if (let.isMultiLet())
+      {
+        for (SyntaxNode val : let.getLetMap().values())
+          if (!check(val))
+            return false;
+      }
+      else if (!check(let.getVarExpr()))
+        return false;
+      return check(let.getExpr());
+    }
+    else if (node instanceof ApplyNode)
+      return checkApply((ApplyNode) node);
+    else if (node instanceof HeadNode)
+      return check(((HeadNode) node).getList());
+    else if (node instanceof TailNode)
+      return check(((TailNode) node).getList());
+    else if (node instanceof ListNode)
+    {
+      for (TokenNode entry : ((ListNode) node).getEntries())
+        if (!check(entry))
+          return false;
+      return true;
+    }
+    else if (node instanceof SetNode)
+    {
+      for (TokenNode elem : ((SetNode) node).getSet())
+        if (!check(elem))
+          return false;
+      return true;
+    }
+    else if (node instanceof SwitchNode)
+    {
+      SwitchNode sw = (SwitchNode) node;
+
+      if (!check(sw.getTestCase()) ||
+        (sw.getDefaultCase() != null && !check(sw.getDefaultCase())))
+        return false;
+      for (CaseNode c : sw.getCaseList())
+        if (!check(c.getTokenNode()) || !check(c.getBranch()))
+          return false;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Determines if a function application is pure. A lambda expression
+   * applied in place is pure if its body is; a named function must still
+   * be thought pure and have only one definition.
+   * @param node the apply node.
+   * @return true if the application is pure; otherwise, false.
+   */
+  private boolean checkApply(ApplyNode node)
+  {
+    SyntaxNode func = node.getFunc();
+
+    if (!check(node.getArg()))
+      return false;
+    if (func instanceof LambdaNode)
+      return isPure(func);
+    if (func instanceof TokenNode)
+    {
+      TokenNode name = (TokenNode) func;
+      return name.getDepth() == PROGRAM_DEPTH &&
+        !redefined.contains(name.getIndex()) &&
+        pure.contains(functions.get(name.getIndex()));
+    }
+    return false;
+  }
+}
@@ -0,0 +1,389 @@
+package analysis;
+
+import ast.SyntaxTree;
+import ast.nodes.*;
+import environment.Environment;
+import lexer.Token;
+import lexer.TokenType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves every variable of a syntax tree to a (depth, index) address.
+ * The program frame holds the named functions; every top level
+ * expression and every named function get a frame of their own whose
+ * parent is the program frame. Let expressions and lambda expressions
+ * applied in place bind their variables to slots of the frame they
+ * appear in. Slots are reused once a scope ends, so a frame is only as
+ * large as the most variables live at once. While walking a function
+ * body the resolver also marks the calls in tail position, the calls
+ * whose value is the value of the function.
+ * <p>
+ * A tree resolved for lazy evaluation never reuses a slot, since a thunk
+ * may evaluate an expression binding variables long after the scope the
+ * slots were released by has ended.
+ * @author Zach Kissel
+ */
+public class Resolver
+{
+  private Scope scope;  // The scope of the frame being resolved.
+  private boolean lazy; // True if the tree is to be evaluated by need.
+
+  /**
+   * Constructs a resolver for eager evaluation.
+   */
+  public Resolver()
+  {
+    this(false);
+  }
+
+  /**
+   * Constructs a resolver.
+   * @param lazy true if the tree is to be evaluated by need.
+   */
+  public Resolver(boolean lazy)
+  {
+    this.lazy = lazy;
+  }
+
+  /**
+   * Resolves the tree {@code tree} and gives it a program frame large
+   * enough to hold its functions.
+   * @param tree the tree to resolve.
+   */
+  public void resolve(SyntaxTree tree)
+  {
+    resolve(tree, new ArrayList<String>());
+  }
+
+  /**
+   * Resolves the tree {@code tree} treating the names {@code params} as
+   * parameters of the program. A parameter is bound in the program frame,
+   * like a function, so every expression and function body sees it unless
+   * a binding of its own hides it. The names must differ from each other
+   * and from the names of the functions.
+   * @param tree the tree to resolve.
+   * @param params the names of the parameters.
+   * @return the slot of the program frame holding each parameter.
+   */
+  public int[] resolve(SyntaxTree tree, List<String> params)
+  {
+    SyntaxNode root = tree.getRootNode();
+    int[] paramSlots = new int[params.size()];
+    int frameSize = 0;
+
+    scope = new Scope(null);
+    for (int i = 0; i < paramSlots.length; i++)
+      paramSlots[i] = scope.bind(params.get(i));
+    if (root instanceof ProgNode)
+    {
+      ProgNode prog = (ProgNode) root;
+
+      // Functions are bound for the whole program so that they may call
+      // functions defined after them.
+      for (SyntaxNode expr : prog.getExprs())
+        if (expr instanceof FunNode)
+        {
+          FunNode fun = (FunNode) expr;
+          int slot = scope.find(fun.getName().getValue());
+          fun.setSlot(slot >= 0 ? slot : scope.bind(fun.getName().getValue()));
+        }
+
+      for (SyntaxNode expr : prog.getExprs())
+      {
+        if (expr instanceof FunNode)
+          resolveFunction(((FunNode) expr).getLambdaExpression());
+        else
+        {
+          scope = new Scope(scope);
+          resolve(expr);
+          frameSize = Math.max(frameSize, scope.size);
+          scope = scope.parent;
+        }
+      }
+      prog.setFrameSize(frameSize);
+    }
+    else
+      resolveScoped(root);
+
+    Environment env = new Environment(scope.size, null);
+    env.setLazy(lazy);
+    tree.setEnvironment(env);
+    return paramSlots;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Resolves a lambda expression that runs in a frame of its own.
+   * @param node the lambda expression.
+   */
+  private void resolveFunction(SyntaxNode node)
+  {
+    LambdaNode lexp = (LambdaNode) node;
+    int slot;
+
+    scope = new Scope(scope);
+    slot = scope.bind(lexp.getVar().getValue());
+    resolveBody(lexp, true);
+    lexp.setFrame(slot, scope.size);
+    scope = scope.parent;
+  }
+
+  /**
+   * Resolves the body of a lambda expression whose parameter is bound.
+   * @param lexp the lambda expression.
+   * @param tail true if the body is in tail position.
+   */
+  private void resolveBody(LambdaNode lexp, boolean tail)
+  {
+    if (!lexp.isClosure())
+      resolve(lexp.getExpr(), tail);
+    else if (lexp.getClosure() != null)
+      resolveFunction(lexp.getClosure().getLambda());
+  }
+
+  /**
+   * Resolves an expression releasing any slots it binds afterwards.
+   * @param node the expression.
+   */
+  private void resolveScoped(SyntaxNode node)
+  {
+    int mark = scope.mark();
+
+    resolve(node);
+    scope.release(mark, !lazy);
+  }
+
+  /**
+   * Resolves an expression that is not in tail position.
+   * @param node the root of the expression.
+   */
+  private void resolve(SyntaxNode node)
+  {
+    resolve(node, false);
+  }
+
+  /**
+   * Resolves an expression.
+   * @param node the root of the expression.
+   * @param tail true if the value of the expression is the value of the
+   * enclosing function.
+   */
+  private void resolve(SyntaxNode node, boolean tail)
+  {
+    if (node instanceof TokenNode)
+      resolveToken((TokenNode) node);
+    else if (node instanceof BinOpNode)
+    {
+      resolve(((BinOpNode) node).getLeftTerm());
+      resolve(((BinOpNode) node).getRightTerm());
+    }
+    else if (node instanceof RelOpNode)
+    {
+      resolve(((RelOpNode) node).getLeftExpr());
+      resolve(((RelOpNode) node).getRightExpr());
+    }
+    else if (node instanceof UnaryOpNode)
+      resolve(((UnaryOpNode) node).getExpr());
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      resolve(ifNode.getCond());
+      resolve(ifNode.getTrueBranch(), tail);
+      resolve(ifNode.getFalseBranch(), tail);
+    }
+    else if (node instanceof LetNode)
+      resolveLet((LetNode) node, tail);
+    else if (node instanceof ApplyNode)
+      resolveApply((ApplyNode) node, tail);
+    else if (node instanceof HeadNode)
+      resolve(((HeadNode) node).getList());
+    else if (node instanceof TailNode)
+      resolve(((TailNode) node).getList());
+    else if (node instanceof ListNode)
+    {
+      for (TokenNode entry : ((ListNode) node).getEntries())
+        resolve(entry);
+    }
+    else if (node instanceof SetNode)
+    {
+      for (TokenNode elem : ((SetNode) node).getSet())
+        resolve(elem);
+    }
+    else if (node instanceof SwitchNode)
+    {
+      SwitchNode sw = (SwitchNode) node;
+      resolve(sw.getTestCase());
+      for (CaseNode c : sw.getCaseList())
+      {
+        resolve(c.getTokenNode());
+        resolve(c.getBranch(), tail);
+      }
+      resolve(sw.getDefaultCase(), tail);
+    }
+  }
+
+  /**
+   * Resolves an identifier to the innermost binding of its name.
+   * Identifiers with no binding are left unresolved.
+   * @param node the token node.
+   */
+  private void resolveToken(TokenNode node)
+  {
+    Token tok = node.getToken();
+    Scope s = scope;
+    int depth = 0;
+
+    if (tok.getType() != TokenType.ID)
+      return;
+
+    while (s != null)
+    {
+      int slot = s.find(tok.getValue());
+      if (slot >= 0)
+      {
+        node.setAddress(depth, slot);
+        return;
+      }
+      s = s.parent;
+      depth++;
+    }
+  }
+
+  /**
+   * Resolves a let expression. Each binding sees the bindings before it.
+   * @param node the let node.
+   * @param tail true if the let is in tail position.
+   */
+  private void resolveLet(LetNode node, boolean tail)
+  {
+    int mark = scope.mark();
+    int[] slots;
+
+    if (node.isMultiLet())
+    {
+      int i = 0;
+
+      slots = new int[node.getLetMap().size()];
+      for (Map.Entry<Token, SyntaxNode> binding : node.getLetMap().entrySet())
+      {
+        resolve(binding.getValue());
+        slots[i++] = scope.bind(binding.getKey().getValue());
+      }
+    }
+    else
+    {
+      resolve(node.getVarExpr());
+      slots = new int[] { scope.bind(node.getVar().getValue()) };
+    }
+    node.setSlots(slots);
+
+    resolve(node.getExpr(), tail);
+    scope.release(mark, !lazy);
+  }
+
+  /**
+   * Resolves function application. A lambda expression applied in place
+   * binds its parameter in the current frame and its body is in tail
+   * position exactly when the application is.
+   * @param node the apply node.
+   * @param tail true if the application is in tail position.
+   */
+  private void resolveApply(ApplyNode node, boolean tail)
+  {
+    SyntaxNode func = node.getFunc();
+
+    resolve(node.getArg());
+    if (func instanceof LambdaNode)
+    {
+      LambdaNode lexp = (LambdaNode) func;
+      int mark = scope.mark();
+
+      lexp.setFrame(scope.bind(lexp.getVar().getValue()), 0);
+      resolveBody(lexp, tail);
+      scope.release(mark, !lazy);
+    }
+    else
+    {
+      resolve(func);
+      node.setTailCall(tail);
+    }
+  }
+
+  /**
+   * The names bound in a single frame.
+   */
+  private static class Scope
+  {
+    private Scope parent;                           // The enclosing frame.
+    private ArrayList<String> names = new ArrayList<>();  // Innermost last.
+    private ArrayList<Integer> slots = new ArrayList<>(); // Slot of each name.
+    private int next;                               // The next free slot.
+    private int size;                               // Slots ever in use.
+
+    /**
+     * Constructs an empty scope.
+     * @param parent the scope of the enclosing frame.
+     */
+    Scope(Scope parent)
+    {
+      this.parent = parent;
+    }
+
+    /**
+     * Binds {@code name} to a fresh slot.
+     * @param name the variable name.
+     * @return the slot of the variable.
+     */
+    int bind(String name)
+    {
+      names.add(name);
+      slots.add(next);
+      size = Math.max(size, next + 1);
+      return next++;
+    }
+
+    /**
+     * Finds the innermost binding of {@code name} in this frame.
+     * @param name the variable name.
+     * @return the slot or -1 if the name is not bound in this frame.
+     */
+    int find(String name)
+    {
+      for (int i = names.size() - 1; i >= 0; i--)
+        if (names.get(i).equals(name))
+          return slots.get(i);
+      return -1;
+    }
+
+    /**
+     * Marks the current scope so that it can be released later.
+     * @return the mark.
+     */
+    int mark()
+    {
+      return names.size();
+    }
+
+    /**
+     * Releases every binding made since {@code mark}.
+     * @param mark a value returned by {@link #mark()}.
+     * @param reuse true if the slots of the bindings may be bound again.
+     */
+    void release(int mark, boolean reuse)
+    {
+      while (names.size() > mark)
+      {
+        int slot = slots.remove(slots.size() - 1);
+
+        names.remove(names.size() - 1);
+        if (reuse)
+          next = slot;
+      }
+    }
+  }
+}
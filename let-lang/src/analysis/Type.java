@@ -0,0 +1,311 @@
+package analysis;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A type of the let language: an integer, a real, a Boolean, a list or a
+ * set of elements of one type, a function from one type to another or a
+ * type variable standing for a type not known yet. A variable may be
+ * limited to numbers, the types arithmetic works on, or to the types a
+ * let may bind. Variables are bound by unification.
+ * @author Zach Kissel
+ */
+public final class Type
+{
+  /** The type of integers. */
+  public static final Type INT = new Type("Int");
+  /** The type of reals. */
+  public static final Type REAL = new Type("Real");
+  /** The type of Booleans. */
+  public static final Type BOOL = new Type("Bool");
+
+  // The limits on what a type variable may stand for, weakest first.
+  static final int ANY = 0;
+  static final int BINDABLE = 1;   // A type a let may bind.
+  static final int NUMERIC = 2;    // An integer or a real.
+
+  private final String name;   // The constructor or null for a variable.
+  private final Type[] args;   // The element, parameter and result types.
+  private Type link;           // The type a variable is bound to or null.
+  private int limit;           // The limit of a variable.
+
+  /**
+   * Constructs a type with no arguments or a variable.
+   * @param name the name of the type or null for a variable.
+   * @param args the argument types.
+   */
+  private Type(String name, Type... args)
+  {
+    this.name = name;
+    this.args = args;
+  }
+
+  /**
+   * Get a fresh type variable.
+   * @param limit the types the variable may stand for.
+   * @return the variable.
+   */
+  static Type variable(int limit)
+  {
+    Type t = new Type(null);
+
+    t.limit = limit;
+    return t;
+  }
+
+  /**
+   * Get the type of lists.
+   * @param elem the type of the elements.
+   * @return the list type.
+   */
+  static Type list(Type elem)
+  {
+    return new Type("List", elem);
+  }
+
+  /**
+   * Get the type of sets.
+   * @param elem the type of the elements.
+   * @return the set type.
+   */
+  static Type set(Type elem)
+  {
+    return new Type("Set", elem);
+  }
+
+  /**
+   * Get the type of functions.
+   * @param param the type of the parameter.
+   * @param result the type of the result.
+   * @return the function type.
+   */
+  static Type function(Type param, Type result)
+  {
+    return new Type("->", param, result);
+  }
+
+  /**
+   * Get the type this type stands for, following bound variables.
+   * @return the representative of the type.
+   */
+  Type find()
+  {
+    Type t = this;
+
+    while (t.link != null)
+      t = t.link;
+    return t;
+  }
+
+  /**
+   * Determines if the type is an unbound variable.
+   * @return true if the type is not known yet; otherwise, false.
+   */
+  boolean isVariable()
+  {
+    return find().name == null;
+  }
+
+  /**
+   * Get the class of the values of the type, for the types whose values
+   * are boxed primitives.
+   * @return {@code Integer}, {@code Double} or {@code Boolean} or null if
+   * the type has no such class.
+   */
+  public Class<?> valueClass()
+  {
+    Type t = find();
+
+    if (t == INT)
+      return Integer.class;
+    if (t == REAL)
+      return Double.class;
+    if (t == BOOL)
+      return Boolean.class;
+    return null;
+  }
+
+  /**
+   * Get the parameter type of a function type.
+   * @return the type of the parameter.
+   */
+  public Type parameter()
+  {
+    return find().args[0];
+  }
+
+  /**
+   * Get the result type of a function type.
+   * @return the type of the result.
+   */
+  public Type result()
+  {
+    return find().args[1];
+  }
+
+  /**
+   * Makes two types equal, binding variables as needed.
+   * @param a the first type.
+   * @param b the second type.
+   * @throws TypeException if the types can not be made equal.
+   */
+  static void unify(Type a, Type b)
+  {
+    a = a.find();
+    b = b.find();
+    if (a == b)
+      return;
+
+    if (a.name == null || b.name == null)
+    {
+      Type var = a.name == null ? a : b;
+      Type other = var == a ? b : a;
+
+      if (other.name == null)
+        other.limit = Math.max(other.limit, var.limit);
+      else
+      {
+        if (other.occurs(var))
+          throw new TypeException("the type " + other +
+            " would contain itself");
+        other.restrict(var.limit);
+      }
+      var.link = other;
+      return;
+    }
+
+    if (!a.name.equals(b.name) || a.args.length != b.args.length)
+      throw new TypeException(a + " does not match " + b);
+    for (int i = 0; i < a.args.length; i++)
+      unify(a.args[i], b.args[i]);
+  }
+
+  /**
+   * Copies the type replacing the variables of {@code vars} by fresh
+   * ones, which is how a polymorphic function gets a type for one use.
+   * @param vars the variables to replace.
+   * @return the copy.
+   */
+  Type instantiate(List<Type> vars)
+  {
+    Map<Type, Type> fresh = new IdentityHashMap<>();
+
+    for (Type var : vars)
+      fresh.put(var, variable(var.limit));
+    return copy(fresh);
+  }
+
+  /**
+   * Collects the unbound variables of the type.
+   * @param vars the list to add the variables to.
+   */
+  void variables(List<Type> vars)
+  {
+    Type t = find();
+
+    if (t.name == null)
+    {
+      for (Type var : vars)
+        if (var == t)
+          return;
+      vars.add(t);
+    }
+    else
+      for (Type arg : t.args)
+        arg.variables(vars);
+  }
+
+  /**
+   * Provides the type in the form {@code Int -> List[Real]}, naming the
+   * variables {@code 'a}, {@code 'b} and so on.
+   * @return the string form of the type.
+   */
+  @Override
+  public String toString()
+  {
+    ArrayList<Type> vars = new ArrayList<>();
+
+    variables(vars);
+    return format(vars, false);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Makes sure a known type is allowed where a variable was limited.
+   * @param limit the limit of the variable.
+   * @throws TypeException if the type is not allowed.
+   */
+  private void restrict(int limit)
+  {
+    if (limit == NUMERIC && this != INT && this != REAL)
+      throw new TypeException("a number is expected but found " + this);
+    if (limit == BINDABLE && (this == BOOL || name.equals("->")))
+      throw new TypeException("a let can not bind a value of type " + this);
+  }
+
+  /**
+   * Determines if {@code var} occurs in the type.
+   * @param var an unbound variable.
+   * @return true if the type contains the variable; otherwise, false.
+   */
+  private boolean occurs(Type var)
+  {
+    Type t = find();
+
+    if (t == var)
+      return true;
+    for (Type arg : t.args)
+      if (arg.occurs(var))
+        return true;
+    return false;
+  }
+
+  /**
+   * Copies the type.
+   * @param fresh the variables to replace and their replacements.
+   * @return the copy.
+   */
+  private Type copy(Map<Type, Type> fresh)
+  {
+    Type t = find();
+    Type[] copied;
+
+    if (t.name == null)
+      return fresh.getOrDefault(t, t);
+    if (t.args.length == 0)
+      return t;
+    copied = new Type[t.args.length];
+    for (int i = 0; i < copied.length; i++)
+      copied[i] = t.args[i].copy(fresh);
+    return new Type(t.name, copied);
+  }
+
+  /**
+   * Formats the type.
+   * @param vars the variables of the outermost type, in naming order.
+   * @param nested true if a function type must be parenthesized.
+   * @return the string form of the type.
+   */
+  private String format(List<Type> vars, boolean nested)
+  {
+    Type t = find();
+
+    if (t.name == null)
+      return "'" + (char) ('a' + vars.indexOf(t) % 26);
+    if (t.name.equals("->"))
+    {
+      String s = t.args[0].format(vars, true) + " -> " +
+        t.args[1].format(vars, false);
+      return nested ? "(" + s + ")" : s;
+    }
+    if (t.args.length == 0)
+      return t.name;
+    return t.name + "[" + t.args[0].format(vars, false) + "]";
+  }
+}
@@ -0,0 +1,17 @@
+package analysis;
+
+/**
+ * Thrown when a program is not well typed.
+ * @author Zach Kissel
+ */
+public class TypeException extends RuntimeException
+{
+  /**
+   * Constructs a new exception with the given message.
+   * @param msg the reason the program is not well typed.
+   */
+  public TypeException(String msg)
+  {
+    super(msg);
+  }
+}
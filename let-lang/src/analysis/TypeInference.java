@@ -0,0 +1,747 @@
+package analysis;
+
+import ast.SyntaxTree;
+import ast.nodes.*;
+import lexer.Token;
+import lexer.TokenType;
+import values.ListValue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Infers the types of a program in the manner of Hindley and Milner so
+ * that a program that would stop with a type error is rejected before it
+ * runs. Named functions are polymorphic: the functions that call each
+ * other are typed together, callees first, and each use of a function
+ * gets a fresh copy of its type. Arithmetic and comparisons work on a
+ * number type, integer or real, the same on both sides; lists hold
+ * numbers; a let binds numbers, lists and sets.
+ * <p>
+ * Once the whole program is typed, every arithmetic operation, comparison
+ * and list whose operands have a known primitive type is told so, letting
+ * it start out specialized rather than check the types of its operands
+ * the first time it runs. The tree must have been resolved.
+ * <p>
+ * The compilers to JVM code type programs the same way, but need a
+ * function to have one type, learned from every use, and are content to
+ * compile what they can: they ask for monomorphic, partial inference and
+ * read the type of each expression with {@link #typeOf(SyntaxNode)}.
+ * @author Zach Kissel
+ */
+public class TypeInference
+{
+  // The depth of the program frame as seen from a function body.
+  private static final int PROGRAM_DEPTH = 1;
+
+  private final boolean polymorphic;  // True if functions are generalized.
+  private final boolean partial;      // True if errors only drop the part.
+
+  private Map<Integer, List<FunNode>> functions;  // Definitions by slot.
+  private Map<FunNode, Type> funTypes;         // The type of each function.
+  private Map<FunNode, List<Type>> generic;    // Their generalized variables.
+  private Map<Integer, FunNode> bound;         // Definitions reached or null.
+  private IdentityHashMap<SyntaxNode, Type> operands;  // Nodes to annotate.
+  private IdentityHashMap<SyntaxNode, Type> types;     // Expressions typed.
+  private Scope scope;                         // The local variables.
+
+  /**
+   * Sets up polymorphic inference of whole programs.
+   */
+  public TypeInference()
+  {
+    this(true, false);
+  }
+
+  /**
+   * Sets up inference.
+   * @param polymorphic true if each use of a named function gets a fresh
+   * copy of its type; false if a function has one type for every use.
+   * @param partial true if a function or top level expression that is
+   * not well typed is left without types rather than failing the program.
+   * Nodes are only annotated when inference is not partial.
+   */
+  public TypeInference(boolean polymorphic, boolean partial)
+  {
+    this.polymorphic = polymorphic;
+    this.partial = partial;
+  }
+
+  /**
+   * Infers the types of the tree {@code tree} and annotates its nodes.
+   * @param tree the resolved tree.
+   * @return the type of each named function in the order they are
+   * defined, leaving out those partial inference could not type.
+   * @throws TypeException if the program is not well typed.
+   */
+  public Map<FunNode, Type> infer(SyntaxTree tree)
+  {
+    SyntaxNode root = tree.getRootNode();
+    Map<FunNode, Type> typed = new LinkedHashMap<>();
+
+    functions = new HashMap<>();
+    funTypes = new HashMap<>();
+    generic = new HashMap<>();
+    bound = new HashMap<>();
+    operands = new IdentityHashMap<>();
+    types = new IdentityHashMap<>();
+    scope = null;
+
+    if (!(root instanceof ProgNode))
+      infer(root);
+    else
+    {
+      ProgNode prog = (ProgNode) root;
+
+      for (SyntaxNode expr : prog.getExprs())
+        if (expr instanceof FunNode)
+          functions.computeIfAbsent(((FunNode) expr).getSlot(),
+            slot -> new ArrayList<>()).add((FunNode) expr);
+
+      // A function may be defined again, binding its name to the new
+      // definition from there on. A body runs whenever it is called, so
+      // it may meet any definition of a name it uses; the program's
+      // expressions see the definition most recently reached.
+      bound = null;
+      for (List<FunNode> group : new CallGraph().groups())
+        inferGroup(group);
+      bound = new HashMap<>();
+
+      for (SyntaxNode expr : prog.getExprs())
+      {
+        if (expr instanceof FunNode)
+        {
+          FunNode fun = (FunNode) expr;
+
+          bound.put(fun.getSlot(), fun);
+          if (funTypes.containsKey(fun))
+            typed.put(fun, funTypes.get(fun));
+        }
+        else
+          inferPart(expr);
+      }
+    }
+
+    if (!partial)
+      for (Map.Entry<SyntaxNode, Type> entry : operands.entrySet())
+        annotate(entry.getKey(), entry.getValue().valueClass());
+    return typed;
+  }
+
+  /**
+   * Get the type inferred for an expression.
+   * @param node the root of the expression.
+   * @return its type or null if the expression was not typed.
+   */
+  public Type typeOf(SyntaxNode node)
+  {
+    return types.get(node);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Infers the type of a top level expression. Under partial inference an
+   * expression that is not well typed is skipped.
+   * @param expr the expression.
+   */
+  private void inferPart(SyntaxNode expr)
+  {
+    scope = null;
+    try
+    {
+      infer(expr);
+    }
+    catch (TypeException ex)
+    {
+      if (!partial)
+        throw ex;
+    }
+  }
+
+  /**
+   * Infers the types of a group of functions that call each other and
+   * generalizes them. The functions they call outside the group are
+   * already typed. Under partial inference a group that is not well typed
+   * is left without types, as are the functions that use it.
+   * @param group the functions.
+   */
+  private void inferGroup(List<FunNode> group)
+  {
+    for (FunNode fun : group)
+      funTypes.put(fun, Type.function(Type.variable(Type.ANY),
+        Type.variable(Type.ANY)));
+
+    for (FunNode fun : group)
+    {
+      SyntaxNode lexp = fun.getLambdaExpression();
+
+      scope = null;
+      try
+      {
+        expect(inferLambda(lexp), funTypes.get(fun),
+          "function " + fun.getName().getValue());
+      }
+      catch (TypeException ex)
+      {
+        if (!partial)
+          throw ex;
+        for (FunNode member : group)
+          funTypes.remove(member);
+        return;
+      }
+    }
+
+    // Nothing outside the group refers to its variables, so all of them
+    // may be generalized.
+    if (!polymorphic)
+      return;
+    for (FunNode fun : group)
+    {
+      List<Type> vars = new ArrayList<>();
+
+      funTypes.get(fun).variables(vars);
+      generic.put(fun, vars);
+    }
+  }
+
+  /**
+   * Infers the type of a lambda expression.
+   * @param node the lambda expression.
+   * @return its function type.
+   */
+  private Type inferLambda(SyntaxNode node)
+  {
+    LambdaNode lexp = (LambdaNode) node;
+    Type param = Type.variable(Type.ANY);
+    Type result;
+
+    if (lexp.isClosure())
+      throw new TypeException("closures can not be typed");
+    scope = new Scope(lexp.getVar().getValue(), param, scope);
+    result = infer(lexp.getExpr());
+    scope = scope.parent;
+    return Type.function(param, result);
+  }
+
+  /**
+   * Infers the type of an expression and remembers it.
+   * @param node the root of the expression.
+   * @return the type of the expression.
+   */
+  private Type infer(SyntaxNode node)
+  {
+    Type t = inferNode(node);
+
+    types.put(node, t);
+    return t;
+  }
+
+  /**
+   * Infers the type of an expression.
+   * @param node the root of the expression.
+   * @return the type of the expression.
+   */
+  private Type inferNode(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+      return inferToken((TokenNode) node);
+    else if (node instanceof BinOpNode)
+      return inferBinOp((BinOpNode) node);
+    else if (node instanceof RelOpNode)
+    {
+      RelOpNode rel = (RelOpNode) node;
+      Type t = Type.variable(Type.NUMERIC);
+
+      expect(infer(rel.getLeftExpr()), t, "the left side of " + rel.getOp());
+      expect(infer(rel.getRightExpr()), t,
+        "the right side of " + rel.getOp());
+      operands.put(rel, t);
+      return Type.BOOL;
+    }
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+
+      if (un.getOp() != TokenType.NOT)
+        throw new TypeException("operator " + un.getOp() + " is unknown");
+      expect(infer(un.getExpr()), Type.BOOL, "the operand of NOT");
+      return Type.BOOL;
+    }
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      Type t;
+
+      expect(infer(ifNode.getCond()), Type.BOOL, "the condition of an if");
+      t = infer(ifNode.getTrueBranch());
+      expect(infer(ifNode.getFalseBranch()), t, "the else branch of an if");
+      return t;
+    }
+    else if (node instanceof LetNode)
+      return inferLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+      return inferApply((ApplyNode) node);
+    else if (node instanceof HeadNode)
+    {
+      Type elem = Type.variable(Type.NUMERIC);
+
+      expectList(((HeadNode) node).getList(), elem, "hd");
+      return elem;
+    }
+    else if (node instanceof TailNode)
+    {
+      Type elem = Type.variable(Type.NUMERIC);
+
+      expectList(((TailNode) node).getList(), elem, "tl");
+      return Type.list(elem);
+    }
+    else if (node instanceof ListNode)
+    {
+      Type elem = Type.variable(Type.NUMERIC);
+
+      for (TokenNode entry : ((ListNode) node).getEntries())
+        expect(infer(entry), elem, "a list element");
+      operands.put(node, elem);
+      return Type.list(elem);
+    }
+    else if (node instanceof SetNode)
+    {
+      Type elem = Type.variable(Type.ANY);
+
+      for (TokenNode entry : ((SetNode) node).getSet())
+        expect(infer(entry), elem, "a set element");
+      return Type.set(elem);
+    }
+    else if (node instanceof SwitchNode)
+      return inferSwitch((SwitchNode) node);
+    throw new TypeException(node == null ? "an expression is missing" :
+      node.getClass().getSimpleName() + " can not be typed");
+  }
+
+  /**
+   * Infers the type of a literal or variable.
+   * @param node the token node.
+   * @return the type of the token.
+   */
+  private Type inferToken(TokenNode node)
+  {
+    Token tok = node.getToken();
+
+    if (node instanceof ConstantNode)
+      return valueType(((ConstantNode) node).getValue());
+
+    switch (tok.getType())
+    {
+      case INT:
+        return Type.INT;
+      case REAL:
+        return Type.REAL;
+      case TRUE:
+      case FALSE:
+        return Type.BOOL;
+      case ID:
+        return lookup(node);
+      default:
+        throw new TypeException("token " + tok + " can not be typed");
+    }
+  }
+
+  /**
+   * Infers the type of a binary operation.
+   * @param node the binary operation.
+   * @return the type of the result.
+   */
+  private Type inferBinOp(BinOpNode node)
+  {
+    String where = "the operands of " + node.getOp();
+    Type t;
+
+    switch (node.getOp())
+    {
+      case ADD:
+      case SUB:
+      case MULT:
+      case DIV:
+        t = Type.variable(Type.NUMERIC);
+        operands.put(node, t);
+        break;
+      case AND:
+      case OR:
+        t = Type.BOOL;
+        operands.put(node, t);
+        break;
+      case CONCAT:
+        t = Type.list(Type.variable(Type.NUMERIC));
+        break;
+      case UNION:
+      case INTERSECT:
+        t = Type.set(Type.variable(Type.ANY));
+        break;
+      default:
+        throw new TypeException("operator " + node.getOp() + " is unknown");
+    }
+
+    expect(infer(node.getLeftTerm()), t, where);
+    expect(infer(node.getRightTerm()), t, where);
+    return t;
+  }
+
+  /**
+   * Infers the type of a let expression. Each binding is in scope for
+   * the bindings after it and for the body.
+   * @param node the let node.
+   * @return the type of the body.
+   */
+  private Type inferLet(LetNode node)
+  {
+    Scope saved = scope;
+    Map<Token, SyntaxNode> bindings = new LinkedHashMap<>();
+    Type t;
+
+    if (node.isMultiLet())
+      bindings.putAll(node.getLetMap());
+    else
+      bindings.put(node.getVar(), node.getVarExpr());
+
+    for (Map.Entry<Token, SyntaxNode> binding : bindings.entrySet())
+    {
+      Type val = Type.variable(Type.BINDABLE);
+
+      expect(infer(binding.getValue()), val,
+        "the value of " + binding.getKey().getValue());
+      scope = new Scope(binding.getKey().getValue(), val, scope);
+    }
+    t = infer(node.getExpr());
+    scope = saved;
+    return t;
+  }
+
+  /**
+   * Infers the type of a function application.
+   * @param node the apply node.
+   * @return the type of the result.
+   */
+  private Type inferApply(ApplyNode node)
+  {
+    Type arg = infer(node.getArg());
+    Type result = Type.variable(Type.ANY);
+    Type func;
+
+    if (node.getFunc() instanceof LambdaNode)
+      func = inferLambda(node.getFunc());
+    else
+      func = infer(node.getFunc());
+    expect(func, Type.function(arg, result), "the applied function");
+    return result;
+  }
+
+  /**
+   * Infers the type of a switch on integers.
+   * @param node the switch node.
+   * @return the type of the branches.
+   */
+  private Type inferSwitch(SwitchNode node)
+  {
+    Type t;
+
+    expect(infer(node.getTestCase()), Type.INT, "the switch value");
+    t = infer(node.getDefaultCase());
+    for (CaseNode c : node.getCaseList())
+    {
+      expect(infer(c.getTokenNode()), Type.INT, "a case label");
+      expect(infer(c.getBranch()), t, "a case");
+    }
+    return t;
+  }
+
+  /**
+   * Makes sure the operand of a list operation is a list. As when the
+   * tree is walked, the operand must also be a variable, a list or a tail.
+   * @param list the operand.
+   * @param elem the type of the elements.
+   * @param op the name of the operation.
+   */
+  private void expectList(SyntaxNode list, Type elem, String op)
+  {
+    if (!HeadNode.isListExpression(list))
+      throw new TypeException(op + " needs a variable or a list");
+    expect(infer(list), Type.list(elem), "the operand of " + op);
+  }
+
+  /**
+   * Finds the type of a variable. In a function body a function name
+   * has a type fitting every definition of the name.
+   * @param node the variable.
+   * @return its type, a fresh copy if it names a polymorphic function.
+   */
+  private Type lookup(TokenNode node)
+  {
+    String name = node.getToken().getValue();
+    List<FunNode> defs;
+    Type t = null;
+
+    for (Scope s = scope; s != null; s = s.parent)
+      if (s.name.equals(name))
+        return s.type;
+
+    defs = node.getDepth() < 0 ? null : functions.get(node.getIndex());
+    if (defs != null && bound != null)
+      defs = bound.containsKey(node.getIndex()) ?
+        List.of(bound.get(node.getIndex())) : null;
+    if (defs == null)
+      throw new TypeException("variable " + name + " is not defined");
+
+    for (FunNode fun : defs)
+    {
+      Type def = funTypes.get(fun);
+
+      if (def == null)
+        throw new TypeException("function " + name + " is not well typed");
+
+      if (generic.containsKey(fun))
+        def = def.instantiate(generic.get(fun));
+      if (t == null)
+        t = def;
+      else
+        expect(def, t, "the definitions of " + name);
+    }
+    return t;
+  }
+
+  /**
+   * Unifies a type with the type expected for it.
+   * @param actual the type found.
+   * @param expected the type expected.
+   * @param where the place the type was found, for the error message.
+   * @throws TypeException if the types do not match.
+   */
+  private static void expect(Type actual, Type expected, String where)
+  {
+    try
+    {
+      Type.unify(actual, expected);
+    }
+    catch (TypeException ex)
+    {
+      throw new TypeException(where + ": " + ex.getMessage());
+    }
+  }
+
+  /**
+   * Get the type of a value folded into the tree.
+   * @param val the value.
+   * @return its type.
+   */
+  private static Type valueType(Object val)
+  {
+    if (val instanceof Integer)
+      return Type.INT;
+    if (val instanceof Double)
+      return Type.REAL;
+    if (val instanceof Boolean)
+      return Type.BOOL;
+    if (val instanceof ListValue)
+      return Type.list(((ListValue) val).isEmpty() ?
+        Type.variable(Type.NUMERIC) : valueType(((ListValue) val).head()));
+    if (val instanceof Set)
+      return Type.set(((Set<?>) val).isEmpty() ? Type.variable(Type.ANY) :
+        valueType(((Set<?>) val).iterator().next()));
+    throw new TypeException("the constant " + val + " can not be typed");
+  }
+
+  /**
+   * Tells a node the class of the values of its operands.
+   * @param node an arithmetic operation, comparison or list.
+   * @param type the class of the operands or null if it is not known.
+   */
+  private static void annotate(SyntaxNode node, Class<?> type)
+  {
+    if (type == null)
+      return;
+    if (node instanceof BinOpNode)
+      ((BinOpNode) node).setOperandType(type);
+    else if (node instanceof RelOpNode)
+      ((RelOpNode) node).setOperandType(type);
+    else if (node instanceof ListNode)
+      ((ListNode) node).setElementType(type);
+  }
+
+  /**
+   * A variable in scope and its type.
+   */
+  private static class Scope
+  {
+    private final String name;
+    private final Type type;
+    private final Scope parent;   // The enclosing bindings.
+
+    /**
+     * Constructs a new binding.
+     * @param name the name of the variable.
+     * @param type the type of the variable.
+     * @param parent the enclosing bindings.
+     */
+    Scope(String name, Type type, Scope parent)
+    {
+      this.name = name;
+      this.type = type;
+      this.parent = parent;
+    }
+  }
+
+  /**
+   * The calls between the named functions, split into the groups of
+   * functions that call each other.
+   */
+  private class CallGraph
+  {
+    private final Map<FunNode, Integer> index = new HashMap<>();
+    private final Map<FunNode, Integer> low = new HashMap<>();
+    private final ArrayList<FunNode> stack = new ArrayList<>();
+    private final List<List<FunNode>> groups = new ArrayList<>();
+
+    /**
+     * Finds the groups of functions that call each other with Tarjan's
+     * algorithm.
+     * @return the groups, each after the groups it calls.
+     */
+    List<List<FunNode>> groups()
+    {
+      for (List<FunNode> defs : functions.values())
+        for (FunNode fun : defs)
+          if (!index.containsKey(fun))
+            visit(fun);
+      return groups;
+    }
+
+    /**
+     * Visits a function and the functions it calls.
+     * @param fun the function.
+     */
+    private void visit(FunNode fun)
+    {
+      ArrayList<FunNode> callees = new ArrayList<>();
+
+      index.put(fun, index.size());
+      low.put(fun, index.get(fun));
+      stack.add(fun);
+
+      calls(fun.getLambdaExpression(), callees);
+      for (FunNode callee : callees)
+      {
+        if (!index.containsKey(callee))
+        {
+          visit(callee);
+          low.put(fun, Math.min(low.get(fun), low.get(callee)));
+        }
+        else if (stack.contains(callee))
+          low.put(fun, Math.min(low.get(fun), index.get(callee)));
+      }
+
+      if (low.get(fun).equals(index.get(fun)))
+      {
+        List<FunNode> group = new ArrayList<>();
+        FunNode member;
+
+        do
+        {
+          member = stack.remove(stack.size() - 1);
+          group.add(member);
+        } while (member != fun);
+        groups.add(group);
+      }
+    }
+
+    /**
+     * Collects the functions a function body refers to.
+     * @param node a node of the body.
+     * @param callees the list to add the functions to.
+     */
+    private void calls(SyntaxNode node, List<FunNode> callees)
+    {
+      if (node instanceof TokenNode)
+      {
+        TokenNode tok = (TokenNode) node;
+        List<FunNode> defs = functions.get(tok.getIndex());
+
+        if (tok.getToken().getType() == TokenType.ID &&
+            tok.getDepth() == PROGRAM_DEPTH && defs != null)
+          callees.addAll(defs);
+      }
+      else if (node instanceof BinOpNode)
+      {
+        calls(((BinOpNode) node).getLeftTerm(), callees);
+        calls(((BinOpNode) node).getRightTerm(), callees);
+      }
+      else if (node instanceof RelOpNode)
+      {
+        calls(((RelOpNode) node).getLeftExpr(), callees);
+        calls(((RelOpNode) node).getRightExpr(), callees);
+      }
+      else if (node instanceof UnaryOpNode)
+        calls(((UnaryOpNode) node).getExpr(), callees);
+      else if (node instanceof IfNode)
+      {
+        calls(((IfNode) node).getCond(), callees);
+        calls(((IfNode) node).getTrueBranch(), callees);
+        calls(((IfNode) node).getFalseBranch(), callees);
+      }
+      else if (node instanceof LetNode)
+      {
+        LetNode let = (LetNode) node;
+
+        if (let.isMultiLet())
+          for (SyntaxNode val : let.getLetMap().values())
+            calls(val, callees);
+        else
+          calls(let.getVarExpr(), callees);
+        calls(let.getExpr(), callees);
+      }
+      else if (node instanceof ApplyNode)
+      {
+        calls(((ApplyNode) node).getFunc(), callees);
+        calls(((ApplyNode) node).getArg(), callees);
+      }
+      else if (node instanceof LambdaNode)
+      {
+        LambdaNode lexp = (LambdaNode) node;
+
+        if (!lexp.isClosure())
+          calls(lexp.getExpr(), callees);
+      }
+      else if (node instanceof HeadNode)
+        calls(((HeadNode) node).getList(), callees);
+      else if (node instanceof TailNode)
+        calls(((TailNode) node).getList(), callees);
+      else if (node instanceof ListNode)
+      {
+        for (TokenNode entry : ((ListNode) node).getEntries())
+          calls(entry, callees);
+      }
+      else if (node instanceof SetNode)
+      {
+        for (TokenNode entry : ((SetNode) node).getSet())
+          calls(entry, callees);
+      }
+      else if (node instanceof SwitchNode)
+      {
+        SwitchNode sw = (SwitchNode) node;
+
+        calls(sw.getTestCase(), callees);
+        for (CaseNode c : sw.getCaseList())
+        {
+          calls(c.getTokenNode(), callees);
+          calls(c.getBranch(), callees);
+        }
+        calls(sw.getDefaultCase(), callees);
+      }
+    }
+  }
+}
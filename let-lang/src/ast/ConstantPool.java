@@ -0,0 +1,84 @@
+package ast;
+
+import lexer.Token;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The literal values of a program. Every literal is decoded once when the
+ * program is parsed and literals with the same value share a single
+ * object.
+ * @author Zach Kissel
+ */
+public class ConstantPool
+{
+  private ArrayList<Object> values = new ArrayList<>();      // By index.
+  private HashMap<Object, Integer> indices = new HashMap<>(); // By value.
+
+  /**
+   * Decodes the literal {@code tok} and adds its value to the pool.
+   * @param tok an INT, REAL, TRUE or FALSE token.
+   * @return the shared value of the literal or null if {@code tok} is not
+   * a literal.
+   */
+  public Object add(Token tok)
+  {
+    Object val;
+
+    switch (tok.getType())
+    {
+      case INT:
+        val = Integer.valueOf(tok.getValue());
+        break;
+      case REAL:
+        val = Double.valueOf(tok.getValue());
+        break;
+      case TRUE:
+        val = Boolean.TRUE;
+        break;
+      case FALSE:
+        val = Boolean.FALSE;
+        break;
+      default:
+        return null;
+    }
+
+    Integer index = indices.get(val);
+    if (index != null)
+      return values.get(index);
+
+    indices.put(val, values.size());
+    values.add(val);
+    return val;
+  }
+
+  /**
+   * Get the constant at position {@code index}.
+   * @param index the position of the constant.
+   * @return the value of the constant.
+   */
+  public Object get(int index)
+  {
+    return values.get(index);
+  }
+
+  /**
+   * Get the position of the constant {@code val}.
+   * @param val the value to look for.
+   * @return the position of the value or -1 if it is not in the pool.
+   */
+  public int indexOf(Object val)
+  {
+    Integer index = indices.get(val);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Get the number of distinct constants in the pool.
+   * @return the size of the pool.
+   */
+  public int size()
+  {
+    return values.size();
+  }
+}
@@ -10,7 +10,8 @@ import environment.Environment;
 public class SyntaxTree
 {
   SyntaxNode root;  // The root of the syntax tree.
-  Environment env;  // The executional environment.
+  Environment env;  // The shape of the program frame.
+  ConstantPool constants; // The literals of the program.
 
   /**
    * Constructs a new syntax tree with root {@code root}.
@@ -20,6 +21,7 @@ public class SyntaxTree
   {
     this.root = root;
     this.env = new Environment();
+    this.constants = new ConstantPool();
   }
 
   /**
@@ -49,16 +51,44 @@ public class SyntaxTree
     }
 
    /**
-    * Evaluate the syntax tree.
+    * Evaluate the syntax tree. Each evaluation gets a program frame of its
+    * own, sized and set up like the environment of the tree, and the tree
+    * itself is only read, so one tree may be evaluated by several threads
+    * at once.
     * @return the object representing the result of the evaluation.
     */
     public Object evaluate()
     {
-      return root.evaluate(env);
+      return evaluate(newFrame());
+    }
+
+   /**
+    * Evaluate the syntax tree in the program frame {@code frame}.
+    * @param frame a frame made by {@link #newFrame()}, possibly with some
+    * of its slots already bound.
+    * @return the object representing the result of the evaluation.
+    */
+    public Object evaluate(Environment frame)
+    {
+      return root.evaluate(frame);
+    }
+
+    /**
+     * Makes an empty program frame for one evaluation of the tree.
+     * @return a frame with the size and laziness of the environment of
+     * the tree.
+     */
+    public Environment newFrame()
+    {
+      Environment frame = new Environment(env.size(), null);
+
+      frame.setLazy(env.isLazy());
+      return frame;
     }
 
     /**
-     * Get a copy of the current executional evironment.
+     * Get the environment describing the program frame. Evaluations run
+     * in fresh frames of the same size and laziness.
      * @return the environment associated with this exeuction.
      */
     public Environment getEnvironment()
@@ -67,11 +97,29 @@ public class SyntaxTree
     }
 
     /**
-     * Set the executional environment to {@code env}
+     * Set the environment describing the program frame to {@code env}
      * @param env the executional environment.
      */
      public void setEnvironment(Environment env)
      {
        this.env = env;
      }
+
+    /**
+     * Get the constant pool holding the literals of the program.
+     * @return the constant pool.
+     */
+    public ConstantPool getConstantPool()
+    {
+      return constants;
+    }
+
+    /**
+     * Set the constant pool to {@code constants}.
+     * @param constants the constant pool.
+     */
+     public void setConstantPool(ConstantPool constants)
+     {
+       this.constants = constants;
+     }
 }
@@ -3,6 +3,9 @@ package ast.nodes;
 import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
+import environment.MemoTable;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
 
 /**
  * This node represents the unary op node.
@@ -12,6 +15,7 @@ import environment.Environment;
  {
    private SyntaxNode func;
    private SyntaxNode arg;
+   private boolean tailCall;   // True if the call is in tail position.
 
    /**
     * Constructs a new node that represents function application.
@@ -24,6 +28,43 @@ import environment.Environment;
      this.arg = arg;
    }
 
+   /**
+    * Get the function being applied.
+    * @return the function identifier or lambda expression.
+    */
+   public SyntaxNode getFunc()
+   {
+     return func;
+   }
+
+   /**
+    * Get the argument the function is applied to.
+    * @return the argument expression.
+    */
+   public SyntaxNode getArg()
+   {
+     return arg;
+   }
+
+   /**
+    * Marks whether the application is in tail position.
+    * @param tailCall true if the value of the call is the value of the
+    * enclosing function.
+    */
+   public void setTailCall(boolean tailCall)
+   {
+     this.tailCall = tailCall;
+   }
+
+   /**
+    * Determines if the application is in tail position.
+    * @return true if the call is a tail call; otherwise, false.
+    */
+   public boolean isTailCall()
+   {
+     return tailCall;
+   }
+
    /**
     * Evaluate the node.
     * @param env the executional environment we should evaluate the
@@ -32,14 +73,23 @@ import environment.Environment;
     */
    public Object evaluate(Environment env)
    {
-     SyntaxNode node = null;
-     LambdaNode lexp;
+     Object node = null;
+     LambdaNode lexp = null;
+     Environment callEnv;
+     Environment defEnv = null;
 
      // If our function is a TokenNode we should evaluate it as it
-     // may be an identifier.
+     // may be an identifier. Named functions are only defined at the top
+     // level, so the program frame is the frame every one was defined in
+     // whatever name it is called by.
      if (func instanceof TokenNode)
      {
-        node = (SyntaxNode)func.evaluate(env);
+        node = func.evaluate(env);
+        if (node instanceof FunNode)
+        {
+          lexp = (LambdaNode) ((FunNode) node).getLambdaExpression();
+          defEnv = env.getRoot();
+        }
      }
 
      // Make sure we have a function to apply.
@@ -49,24 +99,141 @@ import environment.Environment;
        return null;
      }
 
-     // Get the lambda expression to evaluate.
+     // Get the lambda expression to evaluate. A named function runs in a
+     // frame of its own whose enclosing scope is the frame it was
+     // defined in; a lambda expression binds its parameter in place.
      if (node instanceof FunNode)
      {
        FunNode function = (FunNode) node;
-       lexp = (LambdaNode)function.getLambdaExpression();
+       Object argVal = bindArg(env);
+       MemoTable memo = function.getMemoTable();
+       MethodHandle code = function.getCompiled();
+       Object res;
+
+       // A memoized function answers from its table when it can. A thunk
+       // is not forced for the sake of a key.
+       if (memo != null)
+       {
+         if (argVal == null || argVal instanceof Thunk)
+           memo = null;
+         else if ((res = memo.get(argVal)) != null)
+           return res;
+       }
+
+       // A hot function runs its compiled body once it has one; until then
+       // its calls are counted. Compiled code gets no tail calls, so a
+       // call it can not finish the way the interpreter would is walked.
+       if (code == null)
+         function.countCall();
+       else if (argVal != null && !(argVal instanceof Thunk) &&
+         (res = runCompiled(function, code, argVal)) != null)
+       {
+         if (memo != null)
+           memo.put(argVal, res);
+         return res;
+       }
+
+       // A tail call hands the call back to the enclosing call. The
+       // frame of the caller is dead once the argument is evaluated, so
+       // it is reused when it has the right shape. Under lazy evaluation
+       // the argument may still need the frame, so it is never reused.
+       if (tailCall)
+       {
+         if (env.size() == lexp.getFrameSize() && env.getParent() == defEnv &&
+           !env.isLazy())
+           callEnv = env;
+         else
+           callEnv = new Environment(lexp.getFrameSize(), defEnv);
+         callEnv.updateEnvironment(lexp.getSlot(), argVal);
+         return new TailCall(lexp, callEnv, memo, argVal);
+       }
+
+       callEnv = new Environment(lexp.getFrameSize(), defEnv);
+       callEnv.updateEnvironment(lexp.getSlot(), argVal);
+       res = call(lexp, callEnv);
+       if (memo != null && res != null)
+         memo.put(argVal, res);
+       return res;
      }
-     else
-      lexp = (LambdaNode)func;
 
-     if(lexp.isClosure) //if the lambda has a closure
+     // Bind the parameter to the argument and evaluate the lambda body.
+     lexp = (LambdaNode)func;
+     env.updateEnvironment(lexp.getSlot(), bindArg(env));
+     return lexp.evaluate(env);
+   }
+
+   /**
+    * Runs the compiled body of a function. A body that meets an argument
+    * of a type it was not compiled for, divides by zero or recurses too
+    * deeply is dropped for good.
+    * @param function the function called.
+    * @param code the compiled body of the function.
+    * @param argVal the argument.
+    * @return the value of the call or null if the call must be walked.
+    */
+   private static Object runCompiled(FunNode function, MethodHandle code,
+     Object argVal)
+   {
+     try
+     {
+       return (Object) code.invokeExact(argVal);
+     }
+     catch (ClassCastException | ArithmeticException | StackOverflowError ex)
+     {
+       function.deoptimize();
+       return null;
+     }
+     catch (RuntimeException | Error ex)
+     {
+       throw ex;
+     }
+     catch (Throwable ex)
      {
-         env.updateEnvironment(lexp.getVar(),lexp.getExpr()); //update the environment with the lambdas expression
+       throw new IllegalStateException(ex);
      }
+   }
+
+   /**
+    * Get the value to bind the parameter to. Under lazy evaluation this
+    * is a thunk that evaluates the argument when the parameter is used.
+    * @param env the environment of the call.
+    * @return the argument value or a thunk for it.
+    */
+   private Object bindArg(Environment env)
+   {
+     if (env.isLazy())
+       return new Thunk(arg, env, null);
+     return arg.evaluate(env);
+   }
 
-      // Bind the parameter to the argument and evaluate the function call.
-     env.updateEnvironment(lexp.getVar(), arg.evaluate(env));
+   /**
+    * Calls a function running any tail calls it returns until a value
+    * is produced. The value is remembered for every memoized call of the
+    * chain.
+    * @param lexp the function to call.
+    * @param env the frame of the call with the parameter bound.
+    * @return the value of the call.
+    */
+   private static Object call(LambdaNode lexp, Environment env)
+   {
+     Object res = lexp.evaluate(env);
+     ArrayList<TailCall> memoized = null;
 
+     while (res instanceof TailCall)
+     {
+       TailCall next = (TailCall) res;
+       if (next.memo != null)
+       {
+         if (memoized == null)
+           memoized = new ArrayList<>();
+         memoized.add(next);
+       }
+       res = next.lexp.evaluate(next.env);
+     }
 
-     return lexp.evaluate(env);
+     if (memoized != null && res != null)
+       for (TailCall done : memoized)
+         done.memo.put(done.key, res);
+     return res;
    }
  }
@@ -2,10 +2,13 @@ package ast.nodes;
 
 import lexer.Token;
 import lexer.TokenType;
+import values.IntSet;
+import values.ListValue;
 import environment.Environment;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Set;
 import java.util.Iterator;
-import java.util.LinkedList;
 
 /**
  * This node represents a binary operation.
@@ -16,6 +19,32 @@ import java.util.LinkedList;
    private TokenType op;
    private SyntaxNode leftTerm;
    private SyntaxNode rightTerm;
+   private boolean lazy;   // True if the right operand is evaluated lazily.
+
+   // The operators whose right operand is only evaluated when the left
+   // operand does not decide the result on its own.
+   private static final EnumSet<TokenType> lazyOps =
+     EnumSet.of(TokenType.AND, TokenType.OR);
+
+   // The specializations of the node. A node starts uninitialized and
+   // on its first execution specializes itself to the operator applied to
+   // the types it saw. If it later sees other types it falls back to the
+   // generic implementation for good. Threads evaluating the same tree may
+   // race on the state; every state copes with any operands, so a stale
+   // one costs at most a deoptimization.
+   private static final int UNINITIALIZED = 0;
+   private static final int GENERIC = 1;
+   private static final int INT_ADD = 2;
+   private static final int INT_SUB = 3;
+   private static final int INT_MULT = 4;
+   private static final int INT_DIV = 5;
+   private static final int DOUBLE_ADD = 6;
+   private static final int DOUBLE_SUB = 7;
+   private static final int DOUBLE_MULT = 8;
+   private static final int DOUBLE_DIV = 9;
+   private static final int BOOLEAN_AND = 10;
+   private static final int BOOLEAN_OR = 11;
+   private int state = UNINITIALIZED;
 
    /**
     * Constructs a new binary operation syntax node.
@@ -28,6 +57,82 @@ import java.util.LinkedList;
       this.op = op;
       this.leftTerm = lterm;
       this.rightTerm = rterm;
+      this.lazy = isLazy(op);
+    }
+
+    /**
+     * Marks the operator {@code op} for lazy evaluation of its right
+     * operand. The right operand of a lazy operator is skipped whenever
+     * the left operand alone decides the result: {@code and} with a false
+     * left operand, {@code or} with a true one and {@code *} with an
+     * integer 0. Marking applies to nodes built afterwards, so it should
+     * be done before parsing. {@code and} and {@code or} are lazy unless
+     * they are unmarked.
+     * @param op the operator.
+     * @param lazy true if the operator should be lazy.
+     */
+    public static synchronized void setLazy(TokenType op, boolean lazy)
+    {
+      if (lazy)
+        lazyOps.add(op);
+      else
+        lazyOps.remove(op);
+    }
+
+    /**
+     * Determines if the operator {@code op} is marked lazy.
+     * @param op the operator.
+     * @return true if the operator is lazy; otherwise, false.
+     */
+    public static synchronized boolean isLazy(TokenType op)
+    {
+      return lazyOps.contains(op);
+    }
+
+    /**
+     * Determines if this node evaluates its right operand lazily.
+     * @return true if the node is lazy; otherwise, false.
+     */
+    public boolean isLazy()
+    {
+      return lazy;
+    }
+
+    /**
+     * Get the operator of the binary operation.
+     * @return the token type of the operator.
+     */
+    public TokenType getOp()
+    {
+      return op;
+    }
+
+    /**
+     * Get the left operand.
+     * @return the left operand.
+     */
+    public SyntaxNode getLeftTerm()
+    {
+      return leftTerm;
+    }
+
+    /**
+     * Get the right operand.
+     * @return the right operand.
+     */
+    public SyntaxNode getRightTerm()
+    {
+      return rightTerm;
+    }
+
+    /**
+     * Tells the node the class of the values of both its operands, known
+     * from the types of the program, so that it starts out specialized.
+     * @param type the class of the operands.
+     */
+    public void setOperandType(Class<?> type)
+    {
+      state = specialize(op, type);
     }
 
     /**
@@ -40,16 +145,319 @@ import java.util.LinkedList;
      {
         Object lval;
         Object rval;
-        boolean useDouble = false;
+
+        // Specialized nodes evaluate their operands as primitives and
+        // only box the final result.
+        try
+        {
+          switch (state)
+          {
+            case INT_ADD:
+            case INT_SUB:
+            case INT_MULT:
+            case INT_DIV:
+              return evaluateInt(env);
+            case DOUBLE_ADD:
+            case DOUBLE_SUB:
+            case DOUBLE_MULT:
+            case DOUBLE_DIV:
+              return evaluateDouble(env);
+            case BOOLEAN_AND:
+            case BOOLEAN_OR:
+              return evaluateBoolean(env);
+            default:
+              break;
+          }
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return ex.getResult();
+        }
 
         lval = leftTerm.evaluate(env);
+        if (lazy)
+        {
+          rval = shortCircuit(op, lval);
+          if (rval != null)
+            return rval;
+        }
         rval = rightTerm.evaluate(env);
+        if (state == UNINITIALIZED)
+          state = lval != null && rval != null &&
+            lval.getClass() == rval.getClass() ?
+            specialize(op, lval.getClass()) : GENERIC;
+        return apply(op, lval, rval);
+     }
+
+    /**
+     * Evaluate the node expecting an integer. An integer specialization
+     * asks its operands for integers too, so whole arithmetic expressions
+     * run without allocating.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the integer result of the evaluation.
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+     @Override
+     public int evaluateInt(Environment env) throws UnexpectedResultException
+     {
+        int s = state;
+        int lval;
+        int rval;
+
+        if (s < INT_ADD || s > INT_DIV)
+          return super.evaluateInt(env);
+
+        // The guess was wrong if an operand is not an integer, deoptimize.
+        try
+        {
+          lval = leftTerm.evaluateInt(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectInt(deoptimize(ex.getResult(), env));
+        }
+        if (lazy && s == INT_MULT && lval == 0)
+          return 0;
+        try
+        {
+          rval = rightTerm.evaluateInt(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectInt(deoptimize(lval, ex.getResult()));
+        }
+
+        switch (s)
+        {
+          case INT_ADD:
+            return lval + rval;
+          case INT_SUB:
+            return lval - rval;
+          case INT_MULT:
+            return lval * rval;
+          default:
+            return lval / rval;
+        }
+     }
+
+    /**
+     * Evaluate the node expecting a real number.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the real result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a real.
+     */
+     @Override
+     public double evaluateDouble(Environment env)
+       throws UnexpectedResultException
+     {
+        int s = state;
+        double lval;
+        double rval;
+
+        if (s < DOUBLE_ADD || s > DOUBLE_DIV)
+          return super.evaluateDouble(env);
+
+        try
+        {
+          lval = leftTerm.evaluateDouble(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectDouble(deoptimize(ex.getResult(), env));
+        }
+        try
+        {
+          rval = rightTerm.evaluateDouble(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectDouble(deoptimize(lval, ex.getResult()));
+        }
+
+        switch (s)
+        {
+          case DOUBLE_ADD:
+            return lval + rval;
+          case DOUBLE_SUB:
+            return lval - rval;
+          case DOUBLE_MULT:
+            return lval * rval;
+          default:
+            return lval / rval;
+        }
+     }
+
+    /**
+     * Evaluate the node expecting a Boolean.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the Boolean result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a Boolean.
+     */
+     @Override
+     public boolean evaluateBoolean(Environment env)
+       throws UnexpectedResultException
+     {
+        int s = state;
+        boolean lval;
+        boolean rval;
+
+        if (s != BOOLEAN_AND && s != BOOLEAN_OR)
+          return super.evaluateBoolean(env);
+
+        try
+        {
+          lval = leftTerm.evaluateBoolean(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectBoolean(deoptimize(ex.getResult(), env));
+        }
+
+        // A false left operand decides and, a true one decides or.
+        if (lazy && lval == (s == BOOLEAN_OR))
+          return lval;
+        try
+        {
+          rval = rightTerm.evaluateBoolean(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectBoolean(deoptimize(lval, ex.getResult()));
+        }
+
+        if (s == BOOLEAN_AND)
+          return lval && rval;
+        return lval || rval;
+     }
+
+     /**
+      * Falls back to the generic implementation for good once the left
+      * operand turns out to be of an unexpected type, evaluating the right
+      * operand unless the left one decides the result.
+      * @param lval the value of the left operand.
+      * @param env the environment to evaluate the right operand under.
+      * @return the result of the generic operation.
+      */
+     private Object deoptimize(Object lval, Environment env)
+     {
+        Object res = lazy ? shortCircuit(op, lval) : null;
+
+        if (res != null)
+        {
+          state = GENERIC;
+          return res;
+        }
+        return deoptimize(lval, rightTerm.evaluate(env));
+     }
+
+     /**
+      * Falls back to the generic implementation for good once an operand
+      * of an unexpected type shows up.
+      * @param lval the value of the left operand.
+      * @param rval the value of the right operand.
+      * @return the result of the generic operation.
+      */
+     private Object deoptimize(Object lval, Object rval)
+     {
+        state = GENERIC;
+        return apply(op, lval, rval);
+     }
+
+     /**
+      * Picks the specialization of an operator for operands of one class.
+      * @param op the binary operation.
+      * @param type the class of both operands.
+      * @return the specialized state.
+      */
+     private static int specialize(TokenType op, Class<?> type)
+     {
+        if (type == Integer.class)
+        {
+          switch (op)
+          {
+            case ADD:
+              return INT_ADD;
+            case SUB:
+              return INT_SUB;
+            case MULT:
+              return INT_MULT;
+            case DIV:
+              return INT_DIV;
+            default:
+              return GENERIC;
+          }
+        }
+        if (type == Double.class)
+        {
+          switch (op)
+          {
+            case ADD:
+              return DOUBLE_ADD;
+            case SUB:
+              return DOUBLE_SUB;
+            case MULT:
+              return DOUBLE_MULT;
+            case DIV:
+              return DOUBLE_DIV;
+            default:
+              return GENERIC;
+          }
+        }
+        if (type == Boolean.class)
+        {
+          if (op == TokenType.AND)
+            return BOOLEAN_AND;
+          if (op == TokenType.OR)
+            return BOOLEAN_OR;
+        }
+        return GENERIC;
+     }
+
+     /**
+      * Computes the result of a lazy operator from its left operand alone
+      * when the left operand decides it.
+      * @param op the binary operation.
+      * @param lval the value of the left operand.
+      * @return the result of the operation or null if the right operand
+      * is needed.
+      */
+     public static Object shortCircuit(TokenType op, Object lval)
+     {
+        switch (op)
+        {
+          case AND:
+            return Boolean.FALSE.equals(lval) ? Boolean.FALSE : null;
+          case OR:
+            return Boolean.TRUE.equals(lval) ? Boolean.TRUE : null;
+          case MULT:
+            return Integer.valueOf(0).equals(lval) ? lval : null;
+          default:
+            return null;
+        }
+     }
+
+     /**
+      * Applies the binary operation {@code op} to two already evaluated
+      * operands. This is shared by every evaluator of the language so
+      * that they all agree on the semantics of the operators.
+      * @param op the binary operation to perform.
+      * @param lval the value of the left operand.
+      * @param rval the value of the right operand.
+      * @return the result of the operation or null if the operation is
+      * not defined on the operands.
+      */
+     public static Object apply(TokenType op, Object lval, Object rval)
+     {
+        boolean useDouble = false;
 
         if (op == TokenType.CONCAT)
           return handleConcat(lval, rval);
 
         if(op == TokenType.UNION || op == TokenType.INTERSECT) //handle set operations
-            return handleSetOp(lval,rval);
+            return handleSetOp(op, lval, rval);
 
         if (lval == null || rval == null)
           return null;
@@ -102,62 +510,68 @@ import java.util.LinkedList;
       * form of the list.
       * @return the concatenation of the two lists.
       */
-      @SuppressWarnings("unchecked")
-      private Object handleConcat(Object lval, Object rval)
+      private static Object handleConcat(Object lval, Object rval)
       {
-        if (!(lval instanceof LinkedList) || !(rval instanceof LinkedList))
+        if (!(lval instanceof ListValue) || !(rval instanceof ListValue))
           return null;
         else
         {
-          LinkedList leftList = (LinkedList)lval;
-          LinkedList rightList = (LinkedList)rval;
+          ListValue leftList = (ListValue)lval;
+          ListValue rightList = (ListValue)rval;
 
-          if (leftList.size() == 0)
+          if (leftList.isEmpty())
             return rightList;
-          else if (rightList.size() == 0)
+          else if (rightList.isEmpty())
             return leftList;
           else
           {
-            if (leftList.getFirst().getClass() != rightList.getFirst().getClass())
+            if (leftList.head().getClass() != rightList.head().getClass())
             {
               System.out.println("Error: mixed type list not supported.");
               return null;
             }
 
-            leftList.addAll(rightList);
-
-            return leftList;
+            return leftList.concat(rightList);
           }
         }
       }
       /**
        * Handles the union and intersection of two sets, returning a single set
        * that is either the union or intersection.
+       * @param op the set operation to perform.
        * @param lval The left set.
        * @param rval the right set.
        * @return a set having either the union or intersection of both.
        */
-      private Object handleSetOp(Object lval, Object rval)
+      @SuppressWarnings("unchecked")
+      private static Object handleSetOp(TokenType op, Object lval, Object rval)
       {
-          HashSet<Object> returnSet = new HashSet<>();
-          if(lval instanceof HashSet && rval instanceof HashSet)// make sure that sets are being used
+          HashSet<Object> returnSet;
+          if(lval instanceof Set && rval instanceof Set)// make sure that sets are being used
           {
-              HashSet<Object> leftSet = (HashSet<Object>) lval;
-              HashSet<Object> rightSet = (HashSet<Object>) rval;
+              Set<Object> leftSet = (Set<Object>) lval;
+              Set<Object> rightSet = (Set<Object>) rval;
               if(leftSet.isEmpty() || rightSet.isEmpty()) //cannot perform on empty sets
               {
                   System.out.println("Error: sets must not be empty");
                   return null;
               }
+              if(leftSet instanceof IntSet && rightSet instanceof IntSet) //sets of ints work on the unboxed values
+              {
+                  if(op == TokenType.UNION)
+                      return ((IntSet) leftSet).union((IntSet) rightSet);
+                  else if(op == TokenType.INTERSECT)
+                      return ((IntSet) leftSet).intersect((IntSet) rightSet);
+                  return null;
+              }
+              returnSet = new HashSet<>(leftSet); //never change an operand
               if(op == TokenType.UNION)
               {
-                  returnSet.addAll(leftSet);
                   returnSet.addAll(rightSet);
                   return returnSet; //return the union of both sets
               }
               else if(op == TokenType.INTERSECT)
               {
-                  returnSet = leftSet;
                   returnSet.retainAll(rightSet);
                   return returnSet; //return the intersection of both sets
               }
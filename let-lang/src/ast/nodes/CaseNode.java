@@ -31,6 +31,15 @@ public class CaseNode extends SyntaxNode {
         return cond;
     }
 
+    /**
+     * this returns the expression of the case.
+     * @return branch, the expression to evaluate
+     */
+    public SyntaxNode getBranch()
+    {
+        return branch;
+    }
+
     /**
      * This simply returns the evaluation of the branch for a specific case.
      * @param env the environment to evaluate under
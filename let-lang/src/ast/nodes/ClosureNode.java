@@ -45,14 +45,16 @@ public class ClosureNode extends SyntaxNode {
     }
 
     /**
-     * the evaluate method of closureNode simply returns a copy of its environment
+     * the evaluate method of closureNode captures its environment. Frames
+     * are linked to their enclosing frames rather than copied, so the
+     * capture is just a reference to the frame.
      * @param env the environment
-     * @return a copy of the environment
+     * @return the captured environment
      */
     @Override
     public Object evaluate(Environment env) {
 
-        return env.copy();
+        return env;
     }
 
 }
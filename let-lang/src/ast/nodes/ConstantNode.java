@@ -0,0 +1,87 @@
+package ast.nodes;
+
+import lexer.Token;
+import environment.Environment;
+
+/**
+ * This node represents a literal whose value was decoded when the program
+ * was parsed.
+ * @author Zach Kissel
+ */
+ public class ConstantNode extends TokenNode
+ {
+   private final Object value;  // The decoded value of the literal.
+
+   /**
+    * Constructs a new constant node.
+    * @param token the literal token.
+    * @param value the decoded value of the literal.
+    */
+    public ConstantNode(Token token, Object value)
+    {
+      super(token);
+      this.value = value;
+    }
+
+    /**
+     * Get the value of the literal.
+     * @return the decoded value.
+     */
+    public Object getValue()
+    {
+      return value;
+    }
+
+    /**
+     * Evaluate the node.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the object representing the result of the evaluation.
+     */
+     @Override
+     public Object evaluate(Environment env)
+     {
+       return value;
+     }
+
+    /**
+     * Evaluate the node expecting an integer.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the integer result of the evaluation.
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+     @Override
+     public int evaluateInt(Environment env) throws UnexpectedResultException
+     {
+       return expectInt(value);
+     }
+
+    /**
+     * Evaluate the node expecting a real number.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the real result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a real.
+     */
+     @Override
+     public double evaluateDouble(Environment env)
+       throws UnexpectedResultException
+     {
+       return expectDouble(value);
+     }
+
+    /**
+     * Evaluate the node expecting a Boolean.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the Boolean result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a Boolean.
+     */
+     @Override
+     public boolean evaluateBoolean(Environment env)
+       throws UnexpectedResultException
+     {
+       return expectBoolean(value);
+     }
+ }
@@ -3,6 +3,9 @@ package ast.nodes;
 import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
+import environment.MemoTable;
+import java.lang.invoke.MethodHandle;
+import java.util.function.Consumer;
 
 /**
  * This node represents a function (named lambda expression).
@@ -12,6 +15,12 @@ import environment.Environment;
  {
    private Token name;
    private SyntaxNode lexpr;
+   private int slot = -1;   // The slot holding the function.
+   private MemoTable memo;  // The results of earlier calls or null.
+   private int calls;       // The interpreted calls, counted loosely.
+   private int threshold;   // The calls after which the function is hot.
+   private Consumer<FunNode> onHot;  // Told once the function is hot.
+   private volatile MethodHandle compiled;  // The compiled body or null.
 
    /**
     * Constructs a new function node which represents
@@ -43,6 +52,98 @@ import environment.Environment;
      return lexpr;
    }
 
+   /**
+    * Sets the slot of the program frame that holds the function.
+    * @param slot the slot of the function.
+    */
+   public void setSlot(int slot)
+   {
+     this.slot = slot;
+   }
+
+   /**
+    * Get the slot of the program frame that holds the function.
+    * @return the slot of the function.
+    */
+   public int getSlot()
+   {
+     return slot;
+   }
+
+   /**
+    * Sets the table remembering the results of calls to the function. The
+    * function must be pure, its result depending only on its argument.
+    * @param memo the memo table or null to stop memoizing.
+    */
+   public void setMemoTable(MemoTable memo)
+   {
+     this.memo = memo;
+   }
+
+   /**
+    * Get the table remembering the results of calls to the function.
+    * @return the memo table or null if calls are not memoized.
+    */
+   public MemoTable getMemoTable()
+   {
+     return memo;
+   }
+
+   /**
+    * Starts counting the calls of the function so that it can be
+    * compiled once it is called often.
+    * @param threshold the number of calls after which the function is
+    * hot.
+    * @param onHot the action run, once, when the function becomes hot.
+    */
+   public void setTiering(int threshold, Consumer<FunNode> onHot)
+   {
+     this.threshold = threshold;
+     this.onHot = onHot;
+     calls = 0;
+   }
+
+   /**
+    * Counts an interpreted call of the function, reporting the function
+    * when the call makes it hot.
+    */
+   public void countCall()
+   {
+     if (onHot != null && calls < threshold && ++calls == threshold)
+       onHot.accept(this);
+   }
+
+   /**
+    * Sets the compiled body of the function. Calls made after this run
+    * the handle instead of walking the body.
+    * @param compiled a handle from the boxed argument to the boxed
+    * result.
+    */
+   public void setCompiled(MethodHandle compiled)
+   {
+     this.compiled = compiled;
+   }
+
+   /**
+    * Get the compiled body of the function.
+    * @return the handle taking and returning boxed values or null if
+    * the function is interpreted.
+    */
+   public MethodHandle getCompiled()
+   {
+     return compiled;
+   }
+
+   /**
+    * Drops the compiled body of the function for good. The function is
+    * interpreted from now on and no longer counts its calls.
+    */
+   public void deoptimize()
+   {
+     compiled = null;
+     onHot = null;
+   }
+
    /**
     * Evaluate the node.
     * @param env the executional environment we should evaluate the
@@ -1,6 +1,8 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import values.DoubleList;
+import values.IntList;
+import values.ListValue;
 import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
@@ -22,6 +24,15 @@ import environment.Environment;
       this.list = list;
     }
 
+    /**
+     * Get the expression the head operation is applied to.
+     * @return the list expression.
+     */
+    public SyntaxNode getList()
+    {
+      return list;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -30,51 +41,94 @@ import environment.Environment;
      */
      public Object evaluate(Environment env)
      {
-       Object res = null;
-
-       if (list instanceof TokenNode)
-       {
-         res = ((TokenNode)list).evaluate(env);
-
-         if (res == null)
-          return res;
-
-         if (res instanceof LinkedList)
-         {
-           LinkedList lst = (LinkedList)res;
-           if (lst.size() == 0)
-           {
-            System.out.println("empty list!");
-            res = null;
-           }
-          res = lst.getFirst();
-         }
-         else
-         {
-          System.out.println("List expected!");
-          return null;
-         }
-       }
-       else if (list instanceof ListNode || list instanceof TailNode)
+       if (!isListExpression(list))
        {
-         res = list.evaluate(env);
-         if (res == null)
-          return res;
-
-         LinkedList lst = (LinkedList)res;
-         if (lst.size() == 0)
-         {
-          System.out.println("empty list!");
-          return null;
-         }
-        res = lst.getFirst();
+         System.out.println("List expected!");
+         return null;
        }
-       else
+
+       return head(list.evaluate(env));
+     }
+
+    /**
+     * Evaluate the node expecting an integer. The head of an integer list
+     * is read without boxing it.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the integer result of the evaluation.
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+     @Override
+     public int evaluateInt(Environment env) throws UnexpectedResultException
+     {
+       Object res;
+
+       if (!isListExpression(list))
+         return super.evaluateInt(env);
+
+       res = list.evaluate(env);
+       if (res instanceof IntList && !((IntList) res).isEmpty())
+         return ((IntList) res).headInt();
+       return expectInt(head(res));
+     }
+
+    /**
+     * Evaluate the node expecting a real number. The head of a real list
+     * is read without boxing it.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the real result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a real.
+     */
+     @Override
+     public double evaluateDouble(Environment env)
+       throws UnexpectedResultException
+     {
+       Object res;
+
+       if (!isListExpression(list))
+         return super.evaluateDouble(env);
+
+       res = list.evaluate(env);
+       if (res instanceof DoubleList && !((DoubleList) res).isEmpty())
+         return ((DoubleList) res).headDouble();
+       return expectDouble(head(res));
+     }
+
+     /**
+      * Determines if {@code node} is an expression the list operations
+      * may be applied to.
+      * @param node the operand of the list operation.
+      * @return true if the node can produce a list; otherwise, false.
+      */
+     public static boolean isListExpression(SyntaxNode node)
+     {
+       return node instanceof TokenNode || node instanceof ListNode ||
+         node instanceof TailNode;
+     }
+
+     /**
+      * Computes the head of an already evaluated list.
+      * @param res the value of the list expression.
+      * @return the first element of the list or null if there is none.
+      */
+     public static Object head(Object res)
+     {
+       if (res == null)
+        return res;
+
+       if (!(res instanceof ListValue))
        {
          System.out.println("List expected!");
          return null;
        }
 
-       return res;
+       ListValue lst = (ListValue)res;
+       if (lst.isEmpty())
+       {
+        System.out.println("empty list!");
+        return null;
+       }
+       return lst.head();
      }
  }
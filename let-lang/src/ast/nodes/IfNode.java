@@ -28,6 +28,33 @@ import java.util.LinkedList;
      this.falseBranch = falseBranch;
    }
 
+   /**
+    * Get the condition of the conditional.
+    * @return the condition expression.
+    */
+   public SyntaxNode getCond()
+   {
+     return cond;
+   }
+
+   /**
+    * Get the branch taken when the condition is true.
+    * @return the true branch.
+    */
+   public SyntaxNode getTrueBranch()
+   {
+     return trueBranch;
+   }
+
+   /**
+    * Get the branch taken when the condition is false.
+    * @return the false branch.
+    */
+   public SyntaxNode getFalseBranch()
+   {
+     return falseBranch;
+   }
+
    /**
     * Evaluate the node.
     * @param env the executional environment we should evaluate the
@@ -36,24 +63,88 @@ import java.util.LinkedList;
     */
    public Object evaluate(Environment env)
    {
-     Object res;
-     Boolean condVal;
-     Object trueVal;
-     Object falseVal;
+     boolean condVal;
 
      // Evaluate the condition.
-     res = cond.evaluate(env);
-
-     if (res == null || !(res instanceof Boolean))
+     try
+     {
+       condVal = condition(env);
+     }
+     catch (UnexpectedResultException ex)
      {
-       System.out.println("Error: condition must evaluate to a Boolean.");
        return null;
      }
 
      // Evaluate the expression.
-     condVal = (Boolean) res;
      if (condVal)
       return trueBranch.evaluate(env);
      return falseBranch.evaluate(env);
    }
+
+   /**
+    * Evaluate the node expecting an integer from the branch taken.
+    * @param env the executional environment we should evaluate the
+    * node under.
+    * @return the integer result of the evaluation.
+    * @throws UnexpectedResultException if the result is not an integer.
+    */
+   @Override
+   public int evaluateInt(Environment env) throws UnexpectedResultException
+   {
+     if (condition(env))
+      return trueBranch.evaluateInt(env);
+     return falseBranch.evaluateInt(env);
+   }
+
+   /**
+    * Evaluate the node expecting a real number from the branch taken.
+    * @param env the executional environment we should evaluate the
+    * node under.
+    * @return the real result of the evaluation.
+    * @throws UnexpectedResultException if the result is not a real.
+    */
+   @Override
+   public double evaluateDouble(Environment env)
+     throws UnexpectedResultException
+   {
+     if (condition(env))
+      return trueBranch.evaluateDouble(env);
+     return falseBranch.evaluateDouble(env);
+   }
+
+   /**
+    * Evaluate the node expecting a Boolean from the branch taken.
+    * @param env the executional environment we should evaluate the
+    * node under.
+    * @return the Boolean result of the evaluation.
+    * @throws UnexpectedResultException if the result is not a Boolean.
+    */
+   @Override
+   public boolean evaluateBoolean(Environment env)
+     throws UnexpectedResultException
+   {
+     if (condition(env))
+      return trueBranch.evaluateBoolean(env);
+     return falseBranch.evaluateBoolean(env);
+   }
+
+   /**
+    * Evaluates the condition without boxing it.
+    * @param env the executional environment.
+    * @return the value of the condition.
+    * @throws UnexpectedResultException with a null result if the condition
+    * is not a Boolean.
+    */
+   private boolean condition(Environment env) throws UnexpectedResultException
+   {
+     try
+     {
+       return cond.evaluateBoolean(env);
+     }
+     catch (UnexpectedResultException ex)
+     {
+       System.out.println("Error: condition must evaluate to a Boolean.");
+       throw new UnexpectedResultException(null);
+     }
+   }
  }
@@ -14,6 +14,8 @@ import environment.Environment;
    private SyntaxNode expr;
    private ClosureNode closure;
    boolean isClosure = false;
+   private int slot = -1;      // The slot of the parameter.
+   private int frameSize = 0;  // Slots in the frame of a called function.
 
    /**
     * Constructs a new function node which represents
@@ -67,6 +69,47 @@ import environment.Environment;
      return var;
    }
 
+   /**
+    * Get the closure of the lambda expression.
+    * @return the closure or null if there is none.
+    */
+   public ClosureNode getClosure()
+   {
+     return closure;
+   }
+
+   /**
+    * Sets where the parameter lives. A lambda expression that is called
+    * by name gets a frame of its own, one applied in place binds its
+    * parameter in the frame it is applied in.
+    * @param slot the slot of the parameter.
+    * @param frameSize the number of slots in the frame of the function or
+    * 0 if it does not have its own frame.
+    */
+   public void setFrame(int slot, int frameSize)
+   {
+     this.slot = slot;
+     this.frameSize = frameSize;
+   }
+
+   /**
+    * Get the slot of the parameter.
+    * @return the slot of the parameter.
+    */
+   public int getSlot()
+   {
+     return slot;
+   }
+
+   /**
+    * Get the number of slots in the frame of the function.
+    * @return the frame size.
+    */
+   public int getFrameSize()
+   {
+     return frameSize;
+   }
+
    /**
     * Evaluate the node.
     * @param env the executional environment we should evaluate the
@@ -76,11 +119,7 @@ import environment.Environment;
    public Object evaluate(Environment env)
    {
      if(isClosure)
-     {
-         env = (Environment)closure.evaluate(env); //get the environment from the closure and make it this env
-         env.updateEnvironment(var, closure.getLambda()); //update the env with the closures lambda
-         return closure.evaluate(env); //
-     }
+         return closure.evaluate(env); //the closure captures this env
      else
         return expr.evaluate(env);
    }
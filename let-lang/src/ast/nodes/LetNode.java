@@ -4,11 +4,11 @@ import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import values.ListValue;
 
 /**
  * This node represents a let expression.
@@ -21,6 +21,7 @@ import java.util.Map.Entry;
    private SyntaxNode expr;
    private  HashMap<Token, SyntaxNode> letMap;
    private boolean multiLet = false;
+   private int[] slots;   // The slot of each variable in binding order.
 
    /**
     * Constructs a new binary operation syntax node.
@@ -47,6 +48,97 @@ import java.util.Map.Entry;
       multiLet = true;
     }
 
+    /**
+     * Get the variable bound by a single variable let.
+     * @return the variable identifier.
+     */
+    public Token getVar()
+    {
+      return var;
+    }
+
+    /**
+     * Get the expression giving the value of a single variable let.
+     * @return the variable expression.
+     */
+    public SyntaxNode getVarExpr()
+    {
+      return varExpr;
+    }
+
+    /**
+     * Get the expression that uses the bound variables.
+     * @return the body of the let.
+     */
+    public SyntaxNode getExpr()
+    {
+      return expr;
+    }
+
+    /**
+     * Get the variables and expressions of a multiple variable let.
+     * @return the map of variables to their expressions.
+     */
+    public HashMap<Token, SyntaxNode> getLetMap()
+    {
+      return letMap;
+    }
+
+    /**
+     * Determines if this let declares multiple variables.
+     * @return true if this is a multiple variable let; otherwise, false.
+     */
+    public boolean isMultiLet()
+    {
+      return multiLet;
+    }
+
+    /**
+     * Sets the slots the variables are bound to. The slots are given in
+     * the iteration order of the let map for a multiple variable let.
+     * @param slots the slot of each variable.
+     */
+    public void setSlots(int[] slots)
+    {
+      this.slots = slots;
+    }
+
+    /**
+     * Get the slots the variables are bound to.
+     * @return the slot of each variable in binding order.
+     */
+    public int[] getSlots()
+    {
+      return slots;
+    }
+
+    /**
+     * Determines if {@code val} is of a type a let may bind.
+     * @param val the value being bound.
+     * @return true if the value may be bound; otherwise, false.
+     */
+    public static boolean isBindable(Object val)
+    {
+      return val instanceof Integer || val instanceof Double ||
+        val instanceof ListValue || val instanceof Set;
+    }
+
+    /**
+     * Determines if {@code val} may be bound by a let, reporting the
+     * failure if it can not.
+     * @param var the variable being bound.
+     * @param val the value being bound to the variable.
+     * @return true if the value may be bound; otherwise, false.
+     */
+    public static boolean canBind(Token var, Object val)
+    {
+      if (isBindable(val))
+        return true;
+      System.out.println("Failed to add " + var + "with  value " +
+        (val == null ? null : val.getClass()));
+      return false;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -59,21 +151,22 @@ import java.util.Map.Entry;
          if(multiLet)
          {
              //iterate through the hashmap and for each varVal check to make sure
-             //its one of the allowed values, if it is add that and its key to
-             //the env
+             //its one of the allowed values, if it is add that to its slot
              //finally evaluate the expression
              Iterator<Entry<Token, SyntaxNode>> it = letMap.entrySet().iterator();
+             int i = 0;
              while(it.hasNext())
              {
-                Map.Entry mapObject = (Map.Entry) it.next(); //here get each individual thing and add it to eh environment
-                Token x = (Token) mapObject.getKey();
-                SyntaxNode y = (SyntaxNode) mapObject.getValue();
+                Map.Entry<Token, SyntaxNode> mapObject = it.next(); //here get each individual thing and add it to eh environment
+                Token x = mapObject.getKey();
+                SyntaxNode y = mapObject.getValue();
+                if (env.isLazy())
+                {
+                  env.updateEnvironment(slots[i++], new Thunk(y, env, x));
+                  continue;
+                }
                 Object val = y.evaluate(env);
-                if (val instanceof Integer || val instanceof Double ||
-                val instanceof LinkedList || val instanceof HashSet)
-                    env.updateEnvironment(x, val);
-                else
-                    System.out.println("Failed to add " + x + "with  value " + val.getClass());
+                env.updateEnvironment(slots[i++], canBind(x, val) ? val : null);
              }
              //when there is nothing left in the iterator
              //eval expr
@@ -82,13 +175,14 @@ import java.util.Map.Entry;
          }
          else
          {
-            Object varVal = varExpr.evaluate(env);
-
-            if (varVal instanceof Integer || varVal instanceof Double ||
-                varVal instanceof LinkedList ||varVal instanceof HashSet)
-            env.updateEnvironment(var, varVal);
+            if (env.isLazy())
+              env.updateEnvironment(slots[0], new Thunk(varExpr, env, var));
             else
-                System.out.println("Failed to add " + var + "with  value " + varVal.getClass());
+            {
+              Object varVal = varExpr.evaluate(env);
+              env.updateEnvironment(slots[0],
+                canBind(var, varVal) ? varVal : null);
+            }
             value = expr.evaluate(env);
             return value;
          }
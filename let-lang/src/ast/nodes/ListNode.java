@@ -1,6 +1,10 @@
 package ast.nodes;
 
 import java.util.LinkedList;
+import values.ConsList;
+import values.DoubleList;
+import values.IntList;
+import values.ListValue;
 import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
@@ -12,6 +16,7 @@ import environment.Environment;
  public class ListNode extends SyntaxNode
  {
    private LinkedList<TokenNode> entries;
+   private Class<?> elementType;   // The class of the entries if known.
 
    /**
     * Constructs a new list syntax node.
@@ -22,6 +27,27 @@ import environment.Environment;
       this.entries = entries;
     }
 
+    /**
+     * Get the entries of the list.
+     * @return the linked list of entries.
+     */
+    public LinkedList<TokenNode> getEntries()
+    {
+      return entries;
+    }
+
+    /**
+     * Tells the node the class of its entries, known from the types of the
+     * program, so that it builds the list from primitive values without
+     * checking that it is homogeneous.
+     * @param type {@code Integer} or {@code Double}.
+     */
+    public void setElementType(Class<?> type)
+    {
+      if (type == Integer.class || type == Double.class)
+        elementType = type;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -29,49 +55,96 @@ import environment.Environment;
      * @return the object representing the result of the evaluation.
      */
      public Object evaluate(Environment env)
+     {
+        Object[] vals = new Object[entries.size()];
+        int i = 0;
+
+        if (elementType != null && !entries.isEmpty())
+        {
+          try
+          {
+            return evaluateTyped(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            elementType = null;
+          }
+        }
+
+        for (TokenNode entry : entries)
+          vals[i++] = entry.evaluate(env);
+        return makeList(vals);
+     }
+
+     /**
+      * Builds the list out of the primitive values of the entries.
+      * @param env the environment to evaluate the entries under.
+      * @return the list.
+      * @throws UnexpectedResultException if an entry is not of the
+      * element type after all.
+      */
+     private ListValue evaluateTyped(Environment env)
+       throws UnexpectedResultException
+     {
+        int i = 0;
+
+        if (elementType == Integer.class)
+        {
+          int[] elems = new int[entries.size()];
+
+          for (TokenNode entry : entries)
+            elems[i++] = entry.evaluateInt(env);
+          return IntList.wrap(elems);
+        }
+        else
+        {
+          double[] elems = new double[entries.size()];
+
+          for (TokenNode entry : entries)
+            elems[i++] = entry.evaluateDouble(env);
+          return DoubleList.wrap(elems);
+        }
+     }
+
+     /**
+      * Builds a list value out of already evaluated entries making sure
+      * the list is homogeneous.
+      * @param vals the values of the entries in order.
+      * @return the list or null if the entries do not form a valid list.
+      */
+     public static Object makeList(Object[] vals)
      {
         Object currVal;
         Object firstVal;
-        LinkedList<Object> lst = new LinkedList<>();
-
-        TokenType type;
 
         // Handle the empty list.
-        if (entries.size() == 0)
-          return lst;
+        if (vals.length == 0)
+          return ConsList.EMPTY;
 
         // The type of the list is the type of the first element
         // of the list.
-        firstVal = entries.getFirst().evaluate(env);
+        firstVal = vals[0];
 
-        if (firstVal instanceof TokenNode)
-        {
-            TokenNode tok = (TokenNode)firstVal;
-            firstVal = tok.evaluate(env);
-            return firstVal;
-        }
-        else if (firstVal instanceof Integer ||
-                 firstVal instanceof Double)
-            lst.add(firstVal);
-        else if (firstVal instanceof LinkedList)
+        if (firstVal instanceof ListValue)
         {
           System.out.println("Nested lists not supported.");
           return null;
         }
-        else
+        else if (!(firstVal instanceof Integer) &&
+                 !(firstVal instanceof Double))
         {
           System.out.println("Unknown list type.");
           return null;
         }
 
-        // Walk the list evaluating each node if the node
+        // Walk the list checking each value if the value
         // is of the correct type, we add it to the current list.
-        for (int i = 1; i < entries.size(); i++)
+        for (int i = 1; i < vals.length; i++)
         {
-          currVal = entries.get(i).evaluate(env);
+          currVal = vals[i];
 
           if (!(currVal instanceof Integer) && !(currVal instanceof Double) &&
-              !(currVal instanceof LinkedList))
+              !(currVal instanceof ListValue))
           {
             System.out.println("Unknown element type.");
             return null;
@@ -82,9 +155,9 @@ import environment.Environment;
             System.out.println("Mixed mode list not supported.");
             return null;
           }
-
-          lst.add(currVal);
         }
-        return lst;
+        if (firstVal instanceof Integer)
+          return IntList.of(vals);
+        return DoubleList.of(vals);
      }
  }
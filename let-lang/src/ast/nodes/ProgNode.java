@@ -12,6 +12,7 @@ import java.util.LinkedList;
  public class ProgNode extends SyntaxNode
  {
    private LinkedList<SyntaxNode> exprs;
+   private int frameSize;   // Slots needed by any top level expression.
 
    /**
     * Constructs a new program node which represents
@@ -23,6 +24,33 @@ import java.util.LinkedList;
      this.exprs = exprs;
    }
 
+   /**
+    * Get the expressions that make up the program.
+    * @return the linked list of expressions.
+    */
+   public LinkedList<SyntaxNode> getExprs()
+   {
+     return exprs;
+   }
+
+   /**
+    * Sets the number of slots the frame of a top level expression needs.
+    * @param frameSize the frame size.
+    */
+   public void setFrameSize(int frameSize)
+   {
+     this.frameSize = frameSize;
+   }
+
+   /**
+    * Get the number of slots the frame of a top level expression needs.
+    * @return the frame size.
+    */
+   public int getFrameSize()
+   {
+     return frameSize;
+   }
+
    /**
     * Evaluate the node.
     * @param env the executional environment we should evaluate the
@@ -44,17 +72,14 @@ import java.util.LinkedList;
        if (expr instanceof FunNode)
        {
         FunNode fun = (FunNode) expr;
-        env.updateEnvironment(fun.getName(), fun);
+        env.updateEnvironment(fun.getSlot(), fun);
        }
        else  // Simply evaluate being careful to obey let scoping rules.
        {
-        // Let expressions and funciton applications define new scope. This
-        // results values being added to the environment. We should make a
-        // copy of the environment to and restore it after executing the
-        // expression to preserve scope rules.
-        Environment copy = env.copy();
-        res = expr.evaluate(env);
-        env = copy;
+        // Let expressions define new scope. Each expression gets a fresh
+        // frame linked to the program frame so its variables disappear
+        // with it while the functions are shared rather than copied.
+        res = expr.evaluate(new Environment(frameSize, env));
         if (res == null)
           return null;
        }
@@ -14,6 +14,22 @@ import environment.Environment;
    private SyntaxNode leftExpr;
    private SyntaxNode rightExpr;
 
+   // The specializations of the node, see BinOpNode. Equality keeps
+   // using equals so that it agrees with the generic implementation.
+   private static final int UNINITIALIZED = 0;
+   private static final int GENERIC = 1;
+   private static final int INT_LT = 2;
+   private static final int INT_LTE = 3;
+   private static final int INT_GT = 4;
+   private static final int INT_GTE = 5;
+   private static final int INT_EQ = 6;
+   private static final int INT_NEQ = 7;
+   private static final int DOUBLE_LT = 8;
+   private static final int DOUBLE_LTE = 9;
+   private static final int DOUBLE_GT = 10;
+   private static final int DOUBLE_GTE = 11;
+   private int state = UNINITIALIZED;
+
    /**
     * Constructs a new binary operation syntax node.
     * @param lexpr the left operand.
@@ -27,6 +43,43 @@ import environment.Environment;
       this.rightExpr = rexpr;
     }
 
+    /**
+     * Get the relational operator.
+     * @return the token type of the operator.
+     */
+    public TokenType getOp()
+    {
+      return op;
+    }
+
+    /**
+     * Get the left operand.
+     * @return the left operand.
+     */
+    public SyntaxNode getLeftExpr()
+    {
+      return leftExpr;
+    }
+
+    /**
+     * Get the right operand.
+     * @return the right operand.
+     */
+    public SyntaxNode getRightExpr()
+    {
+      return rightExpr;
+    }
+
+    /**
+     * Tells the node the class of the values of both its operands, known
+     * from the types of the program, so that it starts out specialized.
+     * @param type the class of the operands.
+     */
+    public void setOperandType(Class<?> type)
+    {
+      state = specialize(op, type);
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -37,10 +90,191 @@ import environment.Environment;
      {
         Object lval;
         Object rval;
-        boolean useDouble = false;
+
+        // Specialized nodes compare primitive operands.
+        if (state >= INT_LT)
+        {
+          try
+          {
+            return evaluateBoolean(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            return ex.getResult();
+          }
+        }
 
         lval = leftExpr.evaluate(env);
         rval = rightExpr.evaluate(env);
+        if (state == UNINITIALIZED)
+          state = lval != null && rval != null &&
+            lval.getClass() == rval.getClass() ?
+            specialize(op, lval.getClass()) : GENERIC;
+        return apply(op, lval, rval);
+     }
+
+    /**
+     * Evaluate the node expecting a Boolean. A specialized comparison
+     * asks its operands for primitive values so no boxes are created.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the Boolean result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a Boolean.
+     */
+     @Override
+     public boolean evaluateBoolean(Environment env)
+       throws UnexpectedResultException
+     {
+        int s = state;
+
+        if (s >= INT_LT && s <= INT_NEQ)
+        {
+          int lval;
+          int rval;
+
+          // The guess was wrong if an operand is not an integer, deoptimize.
+          try
+          {
+            lval = leftExpr.evaluateInt(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            return expectBoolean(deoptimize(ex.getResult(), rightExpr.evaluate(env)));
+          }
+          try
+          {
+            rval = rightExpr.evaluateInt(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            return expectBoolean(deoptimize(lval, ex.getResult()));
+          }
+
+          switch (s)
+          {
+            case INT_LT:
+              return lval < rval;
+            case INT_LTE:
+              return lval <= rval;
+            case INT_GT:
+              return lval > rval;
+            case INT_GTE:
+              return lval >= rval;
+            case INT_EQ:
+              return lval == rval;
+            default:
+              return lval != rval;
+          }
+        }
+        else if (s >= DOUBLE_LT && s <= DOUBLE_GTE)
+        {
+          double lval;
+          double rval;
+
+          try
+          {
+            lval = leftExpr.evaluateDouble(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            return expectBoolean(deoptimize(ex.getResult(), rightExpr.evaluate(env)));
+          }
+          try
+          {
+            rval = rightExpr.evaluateDouble(env);
+          }
+          catch (UnexpectedResultException ex)
+          {
+            return expectBoolean(deoptimize(lval, ex.getResult()));
+          }
+
+          switch (s)
+          {
+            case DOUBLE_LT:
+              return lval < rval;
+            case DOUBLE_LTE:
+              return lval <= rval;
+            case DOUBLE_GT:
+              return lval > rval;
+            default:
+              return lval >= rval;
+          }
+        }
+        return super.evaluateBoolean(env);
+     }
+
+     /**
+      * Falls back to the generic implementation for good once an operand
+      * of an unexpected type shows up.
+      * @param lval the value of the left operand.
+      * @param rval the value of the right operand.
+      * @return the result of the generic operation.
+      */
+     private Object deoptimize(Object lval, Object rval)
+     {
+        state = GENERIC;
+        return apply(op, lval, rval);
+     }
+
+     /**
+      * Picks the specialization of an operator for operands of one class.
+      * @param op the relational operation.
+      * @param type the class of both operands.
+      * @return the specialized state.
+      */
+     private static int specialize(TokenType op, Class<?> type)
+     {
+        if (type == Integer.class)
+        {
+          switch (op)
+          {
+            case LT:
+              return INT_LT;
+            case LTE:
+              return INT_LTE;
+            case GT:
+              return INT_GT;
+            case GTE:
+              return INT_GTE;
+            case EQ:
+              return INT_EQ;
+            case NEQ:
+              return INT_NEQ;
+            default:
+              return GENERIC;
+          }
+        }
+        if (type == Double.class)
+        {
+          switch (op)
+          {
+            case LT:
+              return DOUBLE_LT;
+            case LTE:
+              return DOUBLE_LTE;
+            case GT:
+              return DOUBLE_GT;
+            case GTE:
+              return DOUBLE_GTE;
+            default:
+              return GENERIC;
+          }
+        }
+        return GENERIC;
+     }
+
+     /**
+      * Applies the relational operation {@code op} to two already
+      * evaluated operands.
+      * @param op the relational operation to perform.
+      * @param lval the value of the left operand.
+      * @param rval the value of the right operand.
+      * @return the Boolean result of the comparison or null if the
+      * comparison is not defined on the operands.
+      */
+     public static Object apply(TokenType op, Object lval, Object rval)
+     {
+        boolean useDouble = false;
 
         if (lval == null || rval == null)
           return null;
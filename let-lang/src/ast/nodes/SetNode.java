@@ -3,6 +3,7 @@ package ast.nodes;
 import environment.Environment;
 import java.util.HashSet;
 import java.util.Iterator;
+import values.IntSet;
 
 /**
  * This node will construct a new set syntax node
@@ -20,23 +21,60 @@ public class SetNode extends SyntaxNode{
         this.set = set;
 
     }
+    /**
+     * Get the elements of the set.
+     * @return the set of TokenNodes.
+     */
+    public HashSet<TokenNode> getSet()
+    {
+        return set;
+    }
+
+    /**
+     * This evaluates each element of the set.
+     * @param env the environment to evaluate under
+     * @return the set of values.
+     */
     @Override
     public Object evaluate(Environment env) {
 
-        HashSet<Object> rSet = new HashSet<>();
-
         if(set.isEmpty()) //if the set is empty
         {
-            return set;
+            return IntSet.of(new int[0]);
         }
+        Object[] vals = new Object[set.size()];
+        int i = 0;
         Iterator<TokenNode> it = set.iterator();
 
         while(it.hasNext())// walk through the set and eval each element
         {
             TokenNode node = it.next();
-            Object val = node.evaluate(env);//eval each token node
-            rSet.add(val);//add them to the return set
+            vals[i++] = node.evaluate(env);//eval each token node
         }
+        return makeSet(vals);
+    }
+
+    /**
+     * Builds a set value out of already evaluated elements.
+     * @param vals the values of the elements.
+     * @return the set of values.
+     */
+    public static Object makeSet(Object[] vals)
+    {
+        HashSet<Object> rSet = new HashSet<>();
+        int[] ints = new int[vals.length];
+        int n = 0;
+
+        while(n < vals.length && vals[n] instanceof Integer) //sets of ints are stored unboxed
+        {
+            ints[n] = (Integer) vals[n];
+            n++;
+        }
+        if(n == vals.length)
+            return IntSet.of(ints);
+
+        for(Object val : vals)
+            rSet.add(val);//add them to the return set
         return rSet;
     }
 
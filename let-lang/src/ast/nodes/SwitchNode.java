@@ -1,6 +1,7 @@
 package ast.nodes;
 
 import environment.Environment;
+import java.util.Iterator;
 import java.util.LinkedList;
 import lexer.Token;
 
@@ -13,59 +14,105 @@ public class SwitchNode extends SyntaxNode{
     private TokenNode testCase;
     private LinkedList<CaseNode> caseList = new LinkedList<>();
     private SyntaxNode defaultCase;
+    private CaseNode[] table;   // The dense jump table, indexed from low.
+    private int low;            // The smallest case label.
+    private int[] keys;         // The labels of the sparse jump table.
+    private CaseNode[] targets; // The branches of the sparse jump table.
     /**
-     *
-     * @param testCase
-     * @param defaultCase
-     * @param caseList
+     * Constructs a new switch node. When every case label is an integer
+     * constant the cases are laid out once into a jump table.
+     * @param testCase the value being switched on.
+     * @param defaultCase the expression to evaluate if no case matches.
+     * @param caseList the cases in the order they were written.
      */
     public SwitchNode(TokenNode testCase, SyntaxNode defaultCase,LinkedList<CaseNode> caseList)
     {
         this.caseList = caseList;
         this.testCase = testCase;
         this.defaultCase = defaultCase;
+        buildJumpTable();
     }
     /**
-     * This method evaluates the switch statement. The linked list of cases
-     * is walked through and for each caseNode, the tokenNode containing the case
-     * number is compared against the original test case, if they match the loop
-     * is broken and the branch of the corresponding case is evaluated
-     * and returned.
+     * this returns the test case of the switch.
+     * @return the token node being tested.
+     */
+    public TokenNode getTestCase()
+    {
+        return testCase;
+    }
+
+    /**
+     * this returns the cases of the switch.
+     * @return the linked list of case nodes.
+     */
+    public LinkedList<CaseNode> getCaseList()
+    {
+        return caseList;
+    }
+
+    /**
+     * this returns the default case of the switch.
+     * @return the default expression.
+     */
+    public SyntaxNode getDefaultCase()
+    {
+        return defaultCase;
+    }
+
+    /**
+     * This method evaluates the switch statement. The test case is looked
+     * up in the jump table if there is one; otherwise the linked list of
+     * cases is walked through and for each caseNode, the tokenNode
+     * containing the case number is compared against the original test
+     * case. The branch of the first case that matches is evaluated and
+     * returned.
      * @param env the environment to evaluate under
      * @return the evaluation of the expression which matches the initial test case.
      */
     @Override
     public Object evaluate(Environment env) {
 
-        Object firstCase = testCase.evaluate(env);
         CaseNode trueCase = null;
-        if(!(firstCase instanceof Integer)) //switchs only allow ints as test cases
+        int fCase;
+        try
+        {
+            fCase = testCase.evaluateInt(env); //switchs only allow ints as test cases
+        }
+        catch(UnexpectedResultException ex)
         {
             System.out.println("Error: only ints allowed for switch statements");
             return null;
         }
-        int fCase = (int) firstCase;
-        int size = caseList.size(); //get the size of the list to walk through it
-        boolean caseFound = false;//set casefound to false for the loop
-        for(int x=0;(x < size) && (caseFound != true); x++) //while there are still elements and the case hasnt been found
+
+        if(table != null) //dense labels, index straight into the table
         {
-            CaseNode temp = caseList.get(x);//get the case node
-            TokenNode tTemp = temp.getTokenNode();//get its tokenNode
-            if(tTemp.evaluate(env) instanceof Integer)
+            long index = (long) fCase - low;
+            if(index >= 0 && index < table.length)
+                trueCase = table[(int) index];
+        }
+        else if(keys != null) //sparse labels, probe the hash table
+            trueCase = lookup(fCase);
+        else
+        {
+            for(CaseNode temp : caseList) //walk the cases until one matches
             {
-                int tempCase = (int) tTemp.evaluate(env);//check if it matches
-                if(tempCase == fCase)
+                Object label = temp.getTokenNode().evaluate(env);
+                if(label instanceof Integer)
                 {
-                    trueCase = temp;//get the correct caseNode
-                    caseFound = true;//so the loop can break on the next iteration
+                    if((Integer) label == fCase)
+                    {
+                        trueCase = temp;//get the correct caseNode
+                        break;
+                    }
                 }
-            }
-            else
-            {
-                System.out.println("Error: only ints allowed for switch statements");
-            }
-        }//end of for loop
-        if(caseFound != true)
+                else
+                {
+                    System.out.println("Error: only ints allowed for switch statements");
+                }
+            }//end of for loop
+        }
+
+        if(trueCase == null)
             return defaultCase.evaluate(env);//return the default if case is not found
         else
         {
@@ -73,4 +120,83 @@ public class SwitchNode extends SyntaxNode{
         }
     }//end of evaluate
 
+    /**
+     * Lays the cases out into a jump table if every label is an integer
+     * constant. Labels that span a range at most about twice the number of
+     * cases get a dense table; any others get an open addressing hash
+     * table. The first case with a given label wins.
+     */
+    private void buildJumpTable()
+    {
+        int n = caseList.size();
+        int[] labels = new int[n];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int i = 0;
+
+        if(n == 0)
+            return;
+        for(CaseNode c : caseList) //every label must be a known int
+        {
+            if(!(c.getTokenNode() instanceof ConstantNode) ||
+               !(((ConstantNode) c.getTokenNode()).getValue() instanceof Integer))
+                return;
+            labels[i] = (Integer) ((ConstantNode) c.getTokenNode()).getValue();
+            min = Math.min(min, labels[i]);
+            max = Math.max(max, labels[i]);
+            i++;
+        }
+
+        if((long) max - min < 2L * n + 8)
+        {
+            table = new CaseNode[max - min + 1];
+            low = min;
+            i = n - 1;
+            for(Iterator<CaseNode> it = caseList.descendingIterator(); it.hasNext(); i--)
+                table[labels[i] - min] = it.next(); //earlier cases overwrite later ones
+        }
+        else
+        {
+            keys = new int[Integer.highestOneBit(n) * 4];
+            targets = new CaseNode[keys.length];
+            i = 0;
+            for(CaseNode c : caseList)
+            {
+                int slot = slot(labels[i++]);
+                if(targets[slot] == null)
+                {
+                    keys[slot] = labels[i - 1];
+                    targets[slot] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of the sparse jump table that holds {@code key} or
+     * the free slot where it belongs.
+     * @param key the case label.
+     * @return the slot.
+     */
+    private int slot(int key)
+    {
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+
+        while(targets[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * Looks up the case for {@code key} in the sparse jump table.
+     * @param key the value of the test case.
+     * @return the matching case or null if there is none.
+     */
+    private CaseNode lookup(int key)
+    {
+        return targets[slot(key)];
+    }
+
 }
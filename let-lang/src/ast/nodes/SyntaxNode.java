@@ -6,7 +6,8 @@ import environment.Environment;
  * Represents the node of a syntax tree. Each node is slightly
  * different therefore, the class is abstract each derived class
  * is responsible for implementing the evaluate method for that
- * node subtype.
+ * node subtype. Nodes that can produce primitive values without boxing
+ * them also override the primitive evaluation methods.
  *
  * @author Zach Kissel
  */
@@ -20,4 +21,82 @@ public abstract class SyntaxNode
    * @return the object representing the result of the evaluation.
    */
   public abstract Object evaluate(Environment env);
+
+  /**
+   * Evaluate the node expecting an integer.
+   * @param env the executional environment we should evaluate the
+   * node under.
+   * @return the integer result of the evaluation.
+   * @throws UnexpectedResultException if the result is not an integer.
+   */
+  public int evaluateInt(Environment env) throws UnexpectedResultException
+  {
+    return expectInt(evaluate(env));
+  }
+
+  /**
+   * Evaluate the node expecting a real number.
+   * @param env the executional environment we should evaluate the
+   * node under.
+   * @return the real result of the evaluation.
+   * @throws UnexpectedResultException if the result is not a real.
+   */
+  public double evaluateDouble(Environment env) throws UnexpectedResultException
+  {
+    return expectDouble(evaluate(env));
+  }
+
+  /**
+   * Evaluate the node expecting a Boolean.
+   * @param env the executional environment we should evaluate the
+   * node under.
+   * @return the Boolean result of the evaluation.
+   * @throws UnexpectedResultException if the result is not a Boolean.
+   */
+  public boolean evaluateBoolean(Environment env)
+    throws UnexpectedResultException
+  {
+    return expectBoolean(evaluate(env));
+  }
+
+  /**
+   * Unboxes a value a primitive evaluation method computed generically.
+   * @param val the value.
+   * @return the integer value.
+   * @throws UnexpectedResultException if the value is not an integer.
+   */
+  protected static int expectInt(Object val) throws UnexpectedResultException
+  {
+    if (val instanceof Integer)
+      return (Integer) val;
+    throw new UnexpectedResultException(val);
+  }
+
+  /**
+   * Unboxes a value a primitive evaluation method computed generically.
+   * @param val the value.
+   * @return the real value.
+   * @throws UnexpectedResultException if the value is not a real.
+   */
+  protected static double expectDouble(Object val)
+    throws UnexpectedResultException
+  {
+    if (val instanceof Double)
+      return (Double) val;
+    throw new UnexpectedResultException(val);
+  }
+
+  /**
+   * Unboxes a value a primitive evaluation method computed generically.
+   * @param val the value.
+   * @return the Boolean value.
+   * @throws UnexpectedResultException if the value is not a Boolean.
+   */
+  protected static boolean expectBoolean(Object val)
+    throws UnexpectedResultException
+  {
+    if (val instanceof Boolean)
+      return (Boolean) val;
+    throw new UnexpectedResultException(val);
+  }
 }
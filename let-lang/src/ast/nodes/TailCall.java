@@ -0,0 +1,37 @@
+package ast.nodes;
+
+import environment.Environment;
+import environment.MemoTable;
+
+/**
+ * A call made in tail position that has not been run yet. Rather than
+ * evaluating the callee, a tail call returns one of these to the nearest
+ * enclosing call which runs it in a loop, so a chain of tail calls uses
+ * a constant amount of Java stack. Every call of a chain of tail calls
+ * has the value of the last one, so a call to a memoized function
+ * carries its table and argument for the value to be remembered once the
+ * chain ends.
+ * @author Zach Kissel
+ */
+final class TailCall
+{
+  final LambdaNode lexp;   // The function to call.
+  final Environment env;   // The frame with the parameter bound.
+  final MemoTable memo;    // The memo table of the function or null.
+  final Object key;        // The argument of the call.
+
+  /**
+   * Constructs a new pending tail call.
+   * @param lexp the function to call.
+   * @param env the frame of the call.
+   * @param memo the memo table of the function or null if it has none.
+   * @param key the argument of the call.
+   */
+  TailCall(LambdaNode lexp, Environment env, MemoTable memo, Object key)
+  {
+    this.lexp = lexp;
+    this.env = env;
+    this.memo = memo;
+    this.key = key;
+  }
+}
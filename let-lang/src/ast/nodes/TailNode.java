@@ -1,6 +1,6 @@
 package ast.nodes;
 
-import java.util.LinkedList;
+import values.ListValue;
 import lexer.Token;
 import lexer.TokenType;
 import environment.Environment;
@@ -22,6 +22,15 @@ import environment.Environment;
       this.list = list;
     }
 
+    /**
+     * Get the expression the tail operation is applied to.
+     * @return the list expression.
+     */
+    public SyntaxNode getList()
+    {
+      return list;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -30,46 +39,39 @@ import environment.Environment;
      */
      public Object evaluate(Environment env)
      {
-       Object res;
-       if (list instanceof TokenNode)
-       {
-         res = ((TokenNode)list).evaluate(env);
-         if (res instanceof LinkedList)
-         {
-           LinkedList lst = (LinkedList)res;
-           if (lst.size() <= 1)
-           {
-            System.out.println("Can't find tail of list");
-            return null;
-           }
-          lst.remove();
-          res = lst;
-         }
-         else
-         {
-           System.out.println("List expected!");
-           return null;
-         }
-       }
-       else if (list instanceof ListNode || list instanceof TailNode)
+       if (!HeadNode.isListExpression(list))
        {
-         res = list.evaluate(env);
-         LinkedList lst = (LinkedList)res;
-         if (lst.size() <= 1)
-         {
-          System.out.println("Can't find tail of list.");
-          return null;
-         }
-        lst.remove();
-        res = lst;
+         System.out.println("List expected!");
+         return null;
        }
-       else
+
+       return tail(list.evaluate(env));
+     }
+
+     /**
+      * Computes the tail of an already evaluated list.
+      * @param res the value of the list expression.
+      * @return the list without its first element or null if the list
+      * has no tail.
+      */
+     public static Object tail(Object res)
+     {
+       if (res == null)
+        return res;
+
+       if (!(res instanceof ListValue))
        {
          System.out.println("List expected!");
          return null;
        }
 
-       return res;
+       ListValue lst = (ListValue)res;
+       if (lst.size() <= 1)
+       {
+        System.out.println("Can't find tail of list.");
+        return null;
+       }
+       return lst.tail();
      }
 
  }
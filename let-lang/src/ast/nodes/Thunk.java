@@ -0,0 +1,64 @@
+package ast.nodes;
+
+import environment.Environment;
+import lexer.Token;
+
+/**
+ * A value bound by need. Rather than evaluating the expression of a let
+ * binding or the argument of a call, lazy evaluation binds one of these
+ * and the expression is evaluated the first time the variable is looked
+ * up. The value is remembered so the expression runs at most once.
+ * @author Zach Kissel
+ */
+final class Thunk
+{
+  private SyntaxNode expr;  // The expression, null once forced.
+  private Environment env;  // The frame the expression is evaluated in.
+  private Token var;        // The let variable bound or null for an argument.
+  private Object value;     // The value once forced.
+
+  /**
+   * Constructs a new unevaluated thunk.
+   * @param expr the expression giving the value.
+   * @param env the frame to evaluate the expression in.
+   * @param var the variable a let binds the value to or null if the value
+   * is a function argument.
+   */
+  Thunk(SyntaxNode expr, Environment env, Token var)
+  {
+    this.expr = expr;
+    this.env = env;
+    this.var = var;
+  }
+
+  /**
+   * Get the value of the thunk, evaluating the expression the first time.
+   * A let binding whose value may not be bound is null, as it would be
+   * had the let been evaluated eagerly.
+   * @return the value of the expression.
+   */
+  Object force()
+  {
+    if (expr != null)
+    {
+      value = expr.evaluate(env);
+      if (var != null && !LetNode.canBind(var, value))
+        value = null;
+
+      // The frame is no longer needed once the value is known.
+      expr = null;
+      env = null;
+    }
+    return value;
+  }
+
+  /**
+   * Provides a string representing the value of the thunk.
+   * @return the value as a string.
+   */
+  @Override
+  public String toString()
+  {
+    return String.valueOf(force());
+  }
+}
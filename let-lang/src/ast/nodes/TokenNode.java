@@ -11,6 +11,8 @@ import environment.Environment;
  public class TokenNode extends SyntaxNode
  {
    private Token token;   // The token type.
+   private int depth = -1; // Frames to walk up to find an identifier.
+   private int index = -1; // The slot of an identifier in its frame.
 
    /**
     * Constructs a new token node.
@@ -21,6 +23,44 @@ import environment.Environment;
       this.token = token;
     }
 
+    /**
+     * Get the token associated with the node.
+     * @return the token.
+     */
+    public Token getToken()
+    {
+      return token;
+    }
+
+    /**
+     * Sets the address of the variable this identifier refers to.
+     * @param depth the number of frames to walk up.
+     * @param index the slot within that frame.
+     */
+    public void setAddress(int depth, int index)
+    {
+      this.depth = depth;
+      this.index = index;
+    }
+
+    /**
+     * Get the number of frames to walk up to find the variable.
+     * @return the depth or -1 if the identifier is not bound.
+     */
+    public int getDepth()
+    {
+      return depth;
+    }
+
+    /**
+     * Get the slot of the variable within its frame.
+     * @return the index or -1 if the identifier is not bound.
+     */
+    public int getIndex()
+    {
+      return index;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -40,7 +80,9 @@ import environment.Environment;
          case FALSE:
           return Boolean.valueOf(false);
          case ID:
-          Object val = env.lookup(token);
+          Object val = depth < 0 ? null : env.lookup(depth, index);
+          if (val instanceof Thunk)
+            val = ((Thunk) val).force();
           if (val == null)
             System.out.println("Undefined variable " + token.getValue());
           return val;
@@ -48,4 +90,53 @@ import environment.Environment;
           return token;
         }
      }
+
+    /**
+     * Evaluate the node expecting an integer.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the integer result of the evaluation.
+     * @throws UnexpectedResultException if the result is not an integer.
+     */
+     @Override
+     public int evaluateInt(Environment env) throws UnexpectedResultException
+     {
+       if (token.getType() == TokenType.INT)
+         return Integer.parseInt(token.getValue());
+       return super.evaluateInt(env);
+     }
+
+    /**
+     * Evaluate the node expecting a real number.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the real result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a real.
+     */
+     @Override
+     public double evaluateDouble(Environment env)
+       throws UnexpectedResultException
+     {
+       if (token.getType() == TokenType.REAL)
+         return Double.parseDouble(token.getValue());
+       return super.evaluateDouble(env);
+     }
+
+    /**
+     * Evaluate the node expecting a Boolean.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the Boolean result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a Boolean.
+     */
+     @Override
+     public boolean evaluateBoolean(Environment env)
+       throws UnexpectedResultException
+     {
+       if (token.getType() == TokenType.TRUE)
+         return true;
+       if (token.getType() == TokenType.FALSE)
+         return false;
+       return super.evaluateBoolean(env);
+     }
  }
@@ -25,6 +25,24 @@ import environment.Environment;
       this.expr = expr;
     }
 
+    /**
+     * Get the unary operator.
+     * @return the token type of the operator.
+     */
+    public TokenType getOp()
+    {
+      return op;
+    }
+
+    /**
+     * Get the operand.
+     * @return the operand of the operation.
+     */
+    public SyntaxNode getExpr()
+    {
+      return expr;
+    }
+
     /**
      * Evaluate the node.
      * @param env the executional environment we should evaluate the
@@ -33,10 +51,43 @@ import environment.Environment;
      */
      public Object evaluate(Environment env)
      {
-        Object val;
+        return apply(op, expr.evaluate(env));
+     }
 
-        val = expr.evaluate(env);
+    /**
+     * Evaluate the node expecting a Boolean.
+     * @param env the executional environment we should evaluate the
+     * node under.
+     * @return the Boolean result of the evaluation.
+     * @throws UnexpectedResultException if the result is not a Boolean.
+     */
+     @Override
+     public boolean evaluateBoolean(Environment env)
+       throws UnexpectedResultException
+     {
+        if (op != TokenType.NOT)
+          return super.evaluateBoolean(env);
 
+        try
+        {
+          return !expr.evaluateBoolean(env);
+        }
+        catch (UnexpectedResultException ex)
+        {
+          return expectBoolean(apply(op, ex.getResult()));
+        }
+     }
+
+     /**
+      * Applies the unary operation {@code op} to an already evaluated
+      * operand.
+      * @param op the unary operation to perform.
+      * @param val the value of the operand.
+      * @return the result of the operation or null if the operation is
+      * not defined on the operand.
+      */
+     public static Object apply(TokenType op, Object val)
+     {
         if (val == null)
           return null;
 
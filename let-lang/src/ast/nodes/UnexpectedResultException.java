@@ -0,0 +1,31 @@
+package ast.nodes;
+
+/**
+ * Thrown by the primitive evaluation methods of a node when the node
+ * produced a value of a different type than the caller asked for. The
+ * value is carried along so that it is never computed twice.
+ * @author Zach Kissel
+ */
+public class UnexpectedResultException extends Exception
+{
+  private final Object result;  // The value that was produced.
+
+  /**
+   * Constructs a new exception for the value {@code result}.
+   * @param result the value the node produced.
+   */
+  public UnexpectedResultException(Object result)
+  {
+    super(null, null, false, false);
+    this.result = result;
+  }
+
+  /**
+   * Get the value the node produced.
+   * @return the boxed result of the evaluation.
+   */
+  public Object getResult()
+  {
+    return result;
+  }
+}
@@ -0,0 +1,53 @@
+package compiler;
+
+import java.util.Arrays;
+
+/**
+ * A function value together with the locals it captured when it was
+ * created.
+ * @author Zach Kissel
+ */
+public class Closure
+{
+  private CompiledFunction function;  // The code of the closure.
+  private Object[] captured;          // The captured locals.
+
+  /**
+   * Constructs a new closure.
+   * @param function the compiled body of the closure.
+   * @param captured the locals captured by the closure.
+   */
+  public Closure(CompiledFunction function, Object[] captured)
+  {
+    this.function = function;
+    this.captured = captured;
+  }
+
+  /**
+   * Get the function of the closure.
+   * @return the compiled function.
+   */
+  public CompiledFunction getFunction()
+  {
+    return function;
+  }
+
+  /**
+   * Get the captured locals.
+   * @return the array of captured values.
+   */
+  public Object[] getCaptured()
+  {
+    return captured;
+  }
+
+  /**
+   * Provides a string representing the closure.
+   * @return a string representation of the closure.
+   */
+  @Override
+  public String toString()
+  {
+    return Arrays.toString(captured);
+  }
+}
@@ -0,0 +1,17 @@
+package compiler;
+
+/**
+ * Thrown when a syntax tree can not be lowered to bytecode.
+ * @author Zach Kissel
+ */
+public class CompileException extends RuntimeException
+{
+  /**
+   * Constructs a new exception with the given message.
+   * @param msg the reason the tree could not be compiled.
+   */
+  public CompileException(String msg)
+  {
+    super(msg);
+  }
+}
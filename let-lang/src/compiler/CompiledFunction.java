@@ -0,0 +1,63 @@
+package compiler;
+
+/**
+ * A function lowered to bytecode. The parameter of the function always
+ * lives in local slot 0.
+ * @author Zach Kissel
+ */
+public class CompiledFunction
+{
+  private String name;    // The name of the function.
+  private int[] code;     // The bytecode of the function body.
+  private int numLocals;  // The number of local slots the body needs.
+
+  /**
+   * Constructs a new compiled function.
+   * @param name the name of the function.
+   * @param code the bytecode of the body.
+   * @param numLocals the number of local slots used by the body.
+   */
+  public CompiledFunction(String name, int[] code, int numLocals)
+  {
+    this.name = name;
+    this.code = code;
+    this.numLocals = numLocals;
+  }
+
+  /**
+   * Get the name of the function.
+   * @return the name of the function.
+   */
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Get the bytecode of the function.
+   * @return the code array.
+   */
+  public int[] getCode()
+  {
+    return code;
+  }
+
+  /**
+   * Get the number of local slots the function needs.
+   * @return the number of locals.
+   */
+  public int getNumLocals()
+  {
+    return numLocals;
+  }
+
+  /**
+   * Provides a string representing the function.
+   * @return a string representation of the function.
+   */
+  @Override
+  public String toString()
+  {
+    return "Function " + name + ".";
+  }
+}
@@ -0,0 +1,629 @@
+package compiler;
+
+import ast.SyntaxTree;
+import ast.nodes.*;
+import lexer.Token;
+import lexer.TokenType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lowers a syntax tree to bytecode for the virtual machine. Variables are
+ * resolved to local slots while compiling so the machine never looks a
+ * name up at run time; only the named functions live in global slots.
+ * @author Zach Kissel
+ */
+public class Compiler
+{
+  private ArrayList<Object> constants;          // The constant pool.
+  private HashMap<Object, Integer> constIndex;  // Constant to pool index.
+  private HashMap<String, Integer> globals;     // Function name to slot.
+  private ArrayList<String> globalNames;        // Slot to function name.
+  private ArrayList<CompiledFunction> functions;// The compiled functions.
+  private FunctionBuilder current;              // The function being built.
+
+  /**
+   * Constructs a new compiler.
+   */
+  public Compiler()
+  {
+    constants = new ArrayList<>();
+    constIndex = new HashMap<>();
+    globals = new HashMap<>();
+    globalNames = new ArrayList<>();
+    functions = new ArrayList<>();
+  }
+
+  /**
+   * Compiles the syntax tree {@code tree}.
+   * @param tree the tree to compile.
+   * @return the compiled program.
+   * @throws CompileException if the tree can not be compiled.
+   */
+  public Program compile(SyntaxTree tree)
+  {
+    if (!(tree.getRootNode() instanceof ProgNode))
+      throw new CompileException("a program is expected");
+
+    ProgNode prog = (ProgNode) tree.getRootNode();
+    boolean haveResult = false;
+
+    // Every named function gets a global slot up front so that functions
+    // may refer to functions defined after them.
+    for (SyntaxNode expr : prog.getExprs())
+      if (expr instanceof FunNode)
+        globalSlot(((FunNode) expr).getName().getValue());
+
+    current = new FunctionBuilder("<main>", 0);
+    for (SyntaxNode expr : prog.getExprs())
+    {
+      if (expr instanceof FunNode)
+      {
+        FunNode fun = (FunNode) expr;
+        String name = fun.getName().getValue();
+        CompiledFunction fn = compileFunction(name,
+          fun.getLambdaExpression(), new FunctionBuilder(name, 0));
+
+        current.emit(OpCode.CONST, constant(fn));
+        current.emit(OpCode.GSTORE, globals.get(name));
+      }
+      else
+      {
+        // The program result is the value of the last expression; a null
+        // value stops the program.
+        if (haveResult)
+          current.emit(OpCode.POP);
+        compileExpr(expr);
+        current.emit(OpCode.EXITNULL);
+        haveResult = true;
+      }
+    }
+    if (!haveResult)
+      current.emit(OpCode.CONST, constant(null));
+    current.emit(OpCode.RETURN);
+
+    return new Program(constants.toArray(), globalNames.toArray(new String[0]),
+      current.build(), functions);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Compiles a lambda expression into a function whose parameter is in
+   * slot {@code builder.base}.
+   * @param name the name of the function.
+   * @param node the lambda expression.
+   * @param builder the builder holding any inherited scope.
+   * @return the compiled function.
+   */
+  private CompiledFunction compileFunction(String name, SyntaxNode node,
+    FunctionBuilder builder)
+  {
+    if (!(node instanceof LambdaNode))
+      throw new CompileException("lambda expression expected for " + name);
+
+    LambdaNode lexp = (LambdaNode) node;
+    FunctionBuilder saved = current;
+
+    current = builder;
+    current.bind(lexp.getVar().getValue());
+    compileBody(lexp);
+    current.emit(OpCode.RETURN);
+
+    CompiledFunction fn = current.build();
+    current = saved;
+    functions.add(fn);
+    return fn;
+  }
+
+  /**
+   * Compiles the body of a lambda expression whose parameter is already
+   * bound.
+   * @param lexp the lambda expression.
+   */
+  private void compileBody(LambdaNode lexp)
+  {
+    if (!lexp.isClosure())
+    {
+      compileExpr(lexp.getExpr());
+      return;
+    }
+
+    // A closure captures every local visible at this point; its own
+    // parameter follows the captured locals.
+    ClosureNode closure = lexp.getClosure();
+    if (closure == null)
+      throw new CompileException("malformed closure");
+
+    int captured = current.nextSlot;
+    CompiledFunction fn = compileFunction("<closure>", closure.getLambda(),
+      current.inherit(captured));
+    current.emit(OpCode.CLOSURE, constant(fn), captured);
+  }
+
+  /**
+   * Compiles an expression leaving its value on the stack.
+   * @param node the root of the expression.
+   */
+  private void compileExpr(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+      compileToken((TokenNode) node);
+    else if (node instanceof BinOpNode)
+    {
+      BinOpNode bin = (BinOpNode) node;
+      int skip = -1;
+
+      compileExpr(bin.getLeftTerm());
+      if (bin.isLazy())
+        skip = current.emit(OpCode.SHORT, constant(bin.getOp()), 0);
+      compileExpr(bin.getRightTerm());
+      current.emit(binaryOp(bin.getOp()));
+      if (skip >= 0)
+        current.patch(skip + 2, current.pc());
+    }
+    else if (node instanceof RelOpNode)
+    {
+      RelOpNode rel = (RelOpNode) node;
+      compileExpr(rel.getLeftExpr());
+      compileExpr(rel.getRightExpr());
+      current.emit(binaryOp(rel.getOp()));
+    }
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+      if (un.getOp() != TokenType.NOT)
+        throw new CompileException("unknown unary operation " + un.getOp());
+      compileExpr(un.getExpr());
+      current.emit(OpCode.NOT);
+    }
+    else if (node instanceof IfNode)
+      compileIf((IfNode) node);
+    else if (node instanceof LetNode)
+      compileLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+      compileApply((ApplyNode) node);
+    else if (node instanceof HeadNode || node instanceof TailNode)
+    {
+      SyntaxNode list = node instanceof HeadNode ?
+        ((HeadNode) node).getList() : ((TailNode) node).getList();
+
+      if (!HeadNode.isListExpression(list))
+        current.emit(OpCode.ERROR, constant("List expected!"));
+      else
+      {
+        compileExpr(list);
+        current.emit(node instanceof HeadNode ? OpCode.HEAD : OpCode.TAIL);
+      }
+    }
+    else if (node instanceof ListNode)
+    {
+      ListNode lst = (ListNode) node;
+      for (TokenNode entry : lst.getEntries())
+        compileExpr(entry);
+      current.emit(OpCode.LIST, lst.getEntries().size());
+    }
+    else if (node instanceof SetNode)
+    {
+      SetNode set = (SetNode) node;
+      for (TokenNode elem : set.getSet())
+        compileExpr(elem);
+      current.emit(OpCode.SET, set.getSet().size());
+    }
+    else if (node instanceof SwitchNode)
+      compileSwitch((SwitchNode) node);
+    else if (node instanceof FunNode)
+      current.emit(OpCode.CONST, constant(node.evaluate(null)));
+    else
+      throw new CompileException("can not compile " +
+        (node == null ? "a malformed expression" : node.getClass().getSimpleName()));
+  }
+
+  /**
+   * Compiles a token which is either a literal or a variable reference.
+   * @param node the token node.
+   */
+  private void compileToken(TokenNode node)
+  {
+    Token tok = node.getToken();
+    String name;
+    int slot;
+
+    if (node instanceof ConstantNode)
+    {
+      current.emit(OpCode.CONST, constant(((ConstantNode) node).getValue()));
+      return;
+    }
+
+    switch (tok.getType())
+    {
+      case INT:
+      case REAL:
+      case TRUE:
+      case FALSE:
+        current.emit(OpCode.CONST, constant(node.evaluate(null)));
+        return;
+      case ID:
+        name = tok.getValue();
+        slot = current.resolve(name);
+        if (slot >= 0)
+          current.emit(OpCode.LOAD, slot, constant(name));
+        else if (globals.containsKey(name))
+          current.emit(OpCode.GLOAD, globals.get(name));
+        else
+          current.emit(OpCode.UNDEF, constant(name));
+        return;
+      default:
+        current.emit(OpCode.CONST, constant(tok));
+    }
+  }
+
+  /**
+   * Compiles a conditional.
+   * @param node the if node.
+   */
+  private void compileIf(IfNode node)
+  {
+    int branch;
+    int jump;
+
+    compileExpr(node.getCond());
+    branch = current.emit(OpCode.BRANCH, 0, 0);
+    compileExpr(node.getTrueBranch());
+    jump = current.emit(OpCode.JUMP, 0);
+    current.patch(branch + 1, current.pc());
+    compileExpr(node.getFalseBranch());
+    current.patch(branch + 2, current.pc());
+    current.patch(jump + 1, current.pc());
+  }
+
+  /**
+   * Compiles a let expression. Each variable gets a fresh slot that is
+   * released once the body has been compiled.
+   * @param node the let node.
+   */
+  private void compileLet(LetNode node)
+  {
+    int mark = current.mark();
+
+    if (node.isMultiLet())
+    {
+      for (Map.Entry<Token, SyntaxNode> binding : node.getLetMap().entrySet())
+        compileBinding(binding.getKey(), binding.getValue());
+    }
+    else
+      compileBinding(node.getVar(), node.getVarExpr());
+
+    compileExpr(node.getExpr());
+    current.release(mark);
+  }
+
+  /**
+   * Compiles a single let binding.
+   * @param var the variable being bound.
+   * @param expr the expression giving the value of the variable.
+   */
+  private void compileBinding(Token var, SyntaxNode expr)
+  {
+    compileExpr(expr);
+    current.emit(OpCode.BIND, current.bind(var.getValue()), constant(var));
+  }
+
+  /**
+   * Compiles function application. A lambda expression applied in place
+   * is compiled inline binding its parameter to a fresh slot.
+   * @param node the apply node.
+   */
+  private void compileApply(ApplyNode node)
+  {
+    SyntaxNode func = node.getFunc();
+
+    if (func instanceof TokenNode)
+    {
+      int check;
+
+      compileExpr(func);
+      check = current.emit(OpCode.CHECKFN, 0);
+      compileExpr(node.getArg());
+      current.emit(OpCode.CALL);
+      current.patch(check + 1, current.pc());
+    }
+    else if (func instanceof LambdaNode)
+    {
+      LambdaNode lexp = (LambdaNode) func;
+      int mark = current.mark();
+
+      compileExpr(node.getArg());
+      current.emit(OpCode.STORE, current.bind(lexp.getVar().getValue()));
+      compileBody(lexp);
+      current.release(mark);
+    }
+    else
+      current.emit(OpCode.ERROR, constant("Apply not given a function."));
+  }
+
+  /**
+   * Compiles n-way selection into a single jump whose keys are sorted,
+   * so the virtual machine finds the case by binary search. Only integer
+   * literal case labels are supported.
+   * @param node the switch node.
+   */
+  private void compileSwitch(SwitchNode node)
+  {
+    int n = node.getCaseList().size();
+    int sw;
+    int[] jumps = new int[n];
+    TreeMap<Integer, Integer> targets = new TreeMap<>();
+    int i = 0;
+
+    for (CaseNode c : node.getCaseList())
+    {
+      Token label = c.getTokenNode().getToken();
+      if (label.getType() != TokenType.INT)
+        throw new CompileException("switch case labels must be integers");
+      targets.put(Integer.parseInt(label.getValue()), null);
+    }
+
+    compileExpr(node.getTestCase());
+    sw = current.emit(OpCode.SWITCH, 0, 0, targets.size());
+    for (int k = 0; k < targets.size(); k++)
+      current.emit(0, 0);
+
+    for (CaseNode c : node.getCaseList())
+    {
+      // The first case with a given label wins.
+      int key = Integer.parseInt(c.getTokenNode().getToken().getValue());
+      if (targets.get(key) == null)
+        targets.put(key, current.pc());
+      compileExpr(c.getBranch());
+      jumps[i++] = current.emit(OpCode.JUMP, 0);
+    }
+
+    i = 0;
+    for (Map.Entry<Integer, Integer> target : targets.entrySet())
+    {
+      current.patch(sw + 4 + 2 * i, target.getKey());
+      current.patch(sw + 5 + 2 * i, target.getValue());
+      i++;
+    }
+
+    current.patch(sw + 2, current.pc());
+    compileExpr(node.getDefaultCase());
+    current.patch(sw + 1, current.pc());
+    for (int jump : jumps)
+      current.patch(jump + 1, current.pc());
+  }
+
+  /**
+   * Maps a binary or relational operator to its opcode.
+   * @param op the operator.
+   * @return the opcode implementing the operator.
+   */
+  private static int binaryOp(TokenType op)
+  {
+    switch (op)
+    {
+      case ADD:
+        return OpCode.ADD;
+      case SUB:
+        return OpCode.SUB;
+      case MULT:
+        return OpCode.MUL;
+      case DIV:
+        return OpCode.DIV;
+      case AND:
+        return OpCode.AND;
+      case OR:
+        return OpCode.OR;
+      case CONCAT:
+        return OpCode.CONCAT;
+      case UNION:
+        return OpCode.UNION;
+      case INTERSECT:
+        return OpCode.INTERSECT;
+      case LT:
+        return OpCode.LT;
+      case LTE:
+        return OpCode.LTE;
+      case GT:
+        return OpCode.GT;
+      case GTE:
+        return OpCode.GTE;
+      case EQ:
+        return OpCode.EQ;
+      case NEQ:
+        return OpCode.NEQ;
+      default:
+        throw new CompileException("unknown operation " + op);
+    }
+  }
+
+  /**
+   * Gets the global slot of a function name, allocating it if needed.
+   * @param name the name of the function.
+   * @return the global slot.
+   */
+  private int globalSlot(String name)
+  {
+    Integer slot = globals.get(name);
+
+    if (slot == null)
+    {
+      slot = globalNames.size();
+      globals.put(name, slot);
+      globalNames.add(name);
+    }
+    return slot;
+  }
+
+  /**
+   * Gets the index of a value in the constant pool, adding it if needed.
+   * Compiled functions are always added as they are distinct values.
+   * @param val the value.
+   * @return the index of the value in the pool.
+   */
+  private int constant(Object val)
+  {
+    if (val instanceof CompiledFunction)
+    {
+      constants.add(val);
+      return constants.size() - 1;
+    }
+
+    // Keep equal values of different types apart, e.g. 1 and 1.0.
+    Object key = val == null ? constIndex :
+      Arrays.asList(val.getClass(), val);
+    Integer idx = constIndex.get(key);
+    if (idx == null)
+    {
+      idx = constants.size();
+      constants.add(val);
+      constIndex.put(key, idx);
+    }
+    return idx;
+  }
+
+  /**
+   * Holds the code and scope of the function currently being compiled.
+   */
+  private static class FunctionBuilder
+  {
+    private String name;                 // The function name.
+    private int[] code = new int[32];    // The code emitted so far.
+    private int size;                    // The length of the code.
+    private ArrayList<String> names;     // Names in scope, innermost last.
+    private ArrayList<Integer> slots;    // The slot of each name.
+    private int nextSlot;                // The next free slot.
+    private int maxSlot;                 // The most slots ever in use.
+
+    /**
+     * Constructs a builder for a function with an empty scope.
+     * @param name the name of the function.
+     * @param base the first free local slot.
+     */
+    FunctionBuilder(String name, int base)
+    {
+      this.name = name;
+      names = new ArrayList<>();
+      slots = new ArrayList<>();
+      nextSlot = base;
+      maxSlot = base;
+    }
+
+    /**
+     * Creates a builder for a closure that sees the first {@code n}
+     * locals of this function in the same slots.
+     * @param n the number of captured locals.
+     * @return the new builder.
+     */
+    FunctionBuilder inherit(int n)
+    {
+      FunctionBuilder fb = new FunctionBuilder("<closure>", n);
+
+      for (int i = 0; i < names.size(); i++)
+        if (slots.get(i) < n)
+        {
+          fb.names.add(names.get(i));
+          fb.slots.add(slots.get(i));
+        }
+      return fb;
+    }
+
+    /**
+     * Binds {@code var} to a fresh slot.
+     * @param var the name of the variable.
+     * @return the slot of the variable.
+     */
+    int bind(String var)
+    {
+      names.add(var);
+      slots.add(nextSlot);
+      maxSlot = Math.max(maxSlot, nextSlot + 1);
+      return nextSlot++;
+    }
+
+    /**
+     * Finds the slot of the innermost binding of {@code var}.
+     * @param var the name of the variable.
+     * @return the slot or -1 if the name is not a local.
+     */
+    int resolve(String var)
+    {
+      for (int i = names.size() - 1; i >= 0; i--)
+        if (names.get(i).equals(var))
+          return slots.get(i);
+      return -1;
+    }
+
+    /**
+     * Marks the current scope so that it can be released later.
+     * @return the mark.
+     */
+    int mark()
+    {
+      return names.size();
+    }
+
+    /**
+     * Releases every binding made since {@code mark}.
+     * @param mark a value returned by {@link #mark()}.
+     */
+    void release(int mark)
+    {
+      while (names.size() > mark)
+      {
+        names.remove(names.size() - 1);
+        nextSlot = slots.remove(slots.size() - 1);
+      }
+    }
+
+    /**
+     * Appends an instruction to the code.
+     * @param words the opcode followed by its operands.
+     * @return the position of the instruction.
+     */
+    int emit(int... words)
+    {
+      int pos = size;
+
+      if (size + words.length > code.length)
+        code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+      for (int w : words)
+        code[size++] = w;
+      return pos;
+    }
+
+    /**
+     * Overwrites a previously emitted word.
+     * @param pos the position of the word.
+     * @param val the new value.
+     */
+    void patch(int pos, int val)
+    {
+      code[pos] = val;
+    }
+
+    /**
+     * Get the position of the next instruction.
+     * @return the current code length.
+     */
+    int pc()
+    {
+      return size;
+    }
+
+    /**
+     * Builds the compiled function.
+     * @return the compiled function.
+     */
+    CompiledFunction build()
+    {
+      return new CompiledFunction(name, Arrays.copyOf(code, size), maxSlot);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package compiler;
+
+/**
+ * The instruction set of the let-lang virtual machine. Every instruction
+ * is a single int in the code array followed by its operands.
+ * @author Zach Kissel
+ */
+public final class OpCode
+{
+  /** Push constant {@code k}: CONST k. */
+  public static final int CONST = 0;
+
+  /** Push local slot {@code i}, reporting it if undefined: LOAD i name. */
+  public static final int LOAD = 1;
+
+  /** Pop into local slot {@code i}: STORE i. */
+  public static final int STORE = 2;
+
+  /** Pop into local slot {@code i} if it may be let bound: BIND i name. */
+  public static final int BIND = 3;
+
+  /** Push global slot {@code g}, reporting it if undefined: GLOAD g. */
+  public static final int GLOAD = 4;
+
+  /** Pop into global slot {@code g}: GSTORE g. */
+  public static final int GSTORE = 5;
+
+  /** Report variable {@code name} as undefined and push null: UNDEF name. */
+  public static final int UNDEF = 6;
+
+  /** Discard the top of the stack: POP. */
+  public static final int POP = 7;
+
+  /** Binary arithmetic and boolean operations: op. */
+  public static final int ADD = 8;
+  public static final int SUB = 9;
+  public static final int MUL = 10;
+  public static final int DIV = 11;
+  public static final int AND = 12;
+  public static final int OR = 13;
+  public static final int CONCAT = 14;
+  public static final int UNION = 15;
+  public static final int INTERSECT = 16;
+
+  /** Relational operations: op. */
+  public static final int LT = 17;
+  public static final int LTE = 18;
+  public static final int GT = 19;
+  public static final int GTE = 20;
+  public static final int EQ = 21;
+  public static final int NEQ = 22;
+
+  /** Boolean negation: NOT. */
+  public static final int NOT = 23;
+
+  /** List operations: HEAD, TAIL and LIST n. */
+  public static final int HEAD = 24;
+  public static final int TAIL = 25;
+  public static final int LIST = 26;
+
+  /** Build a set out of the top {@code n} values: SET n. */
+  public static final int SET = 27;
+
+  /** Unconditional jump: JUMP target. */
+  public static final int JUMP = 28;
+
+  /**
+   * Pop a condition; fall through on true, jump to {@code falseTarget} on
+   * false and push null then jump to {@code endTarget} otherwise:
+   * BRANCH falseTarget endTarget.
+   */
+  public static final int BRANCH = 29;
+
+  /**
+   * Pop an integer and jump to the matching case, the keys in increasing
+   * order: SWITCH endTarget defaultTarget n key1 target1 ... keyn targetn.
+   */
+  public static final int SWITCH = 30;
+
+  /**
+   * Make sure the top of the stack is a function; if it is not replace it
+   * with null and jump past the call: CHECKFN target.
+   */
+  public static final int CHECKFN = 31;
+
+  /** Call the function below the argument on the stack: CALL. */
+  public static final int CALL = 32;
+
+  /** Return the top of the stack to the caller: RETURN. */
+  public static final int RETURN = 33;
+
+  /** Capture the first {@code n} locals into a closure: CLOSURE f n. */
+  public static final int CLOSURE = 34;
+
+  /** Print message {@code k} and push null: ERROR k. */
+  public static final int ERROR = 35;
+
+  /** Stop the program with a null result if the top is null: EXITNULL. */
+  public static final int EXITNULL = 36;
+
+  /**
+   * Replace the left operand on top of the stack with the result of lazy
+   * operator {@code op} and jump to {@code target} if the operand decides
+   * the result; otherwise fall through: SHORT op target.
+   */
+  public static final int SHORT = 37;
+
+  /** The mnemonics indexed by opcode. */
+  private static final String[] NAMES = {
+    "CONST", "LOAD", "STORE", "BIND", "GLOAD", "GSTORE", "UNDEF", "POP",
+    "ADD", "SUB", "MUL", "DIV", "AND", "OR", "CONCAT", "UNION", "INTERSECT",
+    "LT", "LTE", "GT", "GTE", "EQ", "NEQ", "NOT", "HEAD", "TAIL", "LIST",
+    "SET", "JUMP", "BRANCH", "SWITCH", "CHECKFN", "CALL", "RETURN",
+    "CLOSURE", "ERROR", "EXITNULL", "SHORT"
+  };
+
+  /** The number of operands following each opcode (-1 is variable). */
+  private static final int[] OPERANDS = {
+    1, 2, 1, 2, 1, 1, 1, 0,
+    0, 0, 0, 0, 0, 0, 0, 0, 0,
+    0, 0, 0, 0, 0, 0, 0, 0, 0, 1,
+    1, 1, 2, -1, 1, 0, 0,
+    2, 1, 0, 2
+  };
+
+  private OpCode()
+  {
+  }
+
+  /**
+   * Get the mnemonic of an opcode.
+   * @param op the opcode.
+   * @return the name of the opcode.
+   */
+  public static String name(int op)
+  {
+    return NAMES[op];
+  }
+
+  /**
+   * Get the number of operands that follow an opcode.
+   * @param op the opcode.
+   * @return the operand count or -1 if the count is encoded in the
+   * instruction.
+   */
+  public static int operands(int op)
+  {
+    return OPERANDS[op];
+  }
+}
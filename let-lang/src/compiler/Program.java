@@ -0,0 +1,114 @@
+package compiler;
+
+import java.util.List;
+
+/**
+ * A let-lang program lowered to bytecode. A program is made up of a
+ * constant pool shared by all code, a table of global slots that hold the
+ * named functions and the code that evaluates the top level expressions.
+ * @author Zach Kissel
+ */
+public class Program
+{
+  private Object[] constants;               // The constant pool.
+  private String[] globalNames;             // The names of the globals.
+  private CompiledFunction main;            // The top level code.
+  private List<CompiledFunction> functions; // Every compiled function.
+
+  /**
+   * Constructs a new program.
+   * @param constants the constant pool.
+   * @param globalNames the names of the global slots.
+   * @param main the code for the top level expressions.
+   * @param functions every function of the program.
+   */
+  public Program(Object[] constants, String[] globalNames,
+    CompiledFunction main, List<CompiledFunction> functions)
+  {
+    this.constants = constants;
+    this.globalNames = globalNames;
+    this.main = main;
+    this.functions = functions;
+  }
+
+  /**
+   * Get the constant pool.
+   * @return the array of constants.
+   */
+  public Object[] getConstants()
+  {
+    return constants;
+  }
+
+  /**
+   * Get the names of the global slots.
+   * @return the array of global names.
+   */
+  public String[] getGlobalNames()
+  {
+    return globalNames;
+  }
+
+  /**
+   * Get the code for the top level expressions.
+   * @return the main function.
+   */
+  public CompiledFunction getMain()
+  {
+    return main;
+  }
+
+  /**
+   * Get every function of the program.
+   * @return the list of compiled functions.
+   */
+  public List<CompiledFunction> getFunctions()
+  {
+    return functions;
+  }
+
+  /**
+   * Provides a human readable listing of the bytecode.
+   * @return the disassembled program.
+   */
+  public String disassemble()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    disassemble(sb, main);
+    for (CompiledFunction fn : functions)
+      disassemble(sb, fn);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the listing of a single function to {@code sb}.
+   * @param sb the builder to append to.
+   * @param fn the function to list.
+   */
+  private void disassemble(StringBuilder sb, CompiledFunction fn)
+  {
+    int[] code = fn.getCode();
+    int pc = 0;
+
+    sb.append(fn.getName()).append(" (locals ").append(fn.getNumLocals())
+      .append("):\n");
+    while (pc < code.length)
+    {
+      int op = code[pc];
+      int count = OpCode.operands(op);
+
+      // The switch instruction encodes its own length.
+      if (count < 0)
+        count = 3 + 2 * code[pc + 3];
+
+      sb.append(String.format("%6d  %-9s", pc, OpCode.name(op)));
+      for (int i = 1; i <= count; i++)
+        sb.append(' ').append(code[pc + i]);
+      if (op == OpCode.CONST)
+        sb.append("    ; ").append(constants[code[pc + 1]]);
+      sb.append('\n');
+      pc += count + 1;
+    }
+  }
+}
@@ -0,0 +1,399 @@
+package compiler;
+
+import ast.nodes.BinOpNode;
+import ast.nodes.HeadNode;
+import ast.nodes.LetNode;
+import ast.nodes.ListNode;
+import ast.nodes.RelOpNode;
+import ast.nodes.SetNode;
+import ast.nodes.TailNode;
+import ast.nodes.UnaryOpNode;
+import lexer.Token;
+import lexer.TokenType;
+import java.util.Arrays;
+
+/**
+ * A stack based virtual machine that runs compiled let-lang programs.
+ * Locals live on the value stack directly above the function being
+ * called and calls are handled by the dispatch loop itself, so deep
+ * recursion only grows the heap allocated stacks.
+ * @author Zach Kissel
+ */
+public class VirtualMachine
+{
+  private Program prog;       // The program being run.
+  private Object[] constants; // The constant pool of the program.
+  private Object[] globals;   // The global slots.
+
+  private Object[] stack = new Object[256]; // The value stack.
+  private int sp;                           // The first free stack slot.
+
+  private CompiledFunction[] frameFn = new CompiledFunction[64]; // Callers.
+  private int[] framePc = new int[64];      // Return addresses.
+  private int[] frameBase = new int[64];    // Caller stack bases.
+  private int depth;                        // The number of saved frames.
+
+  /**
+   * Constructs a new virtual machine for {@code prog}.
+   * @param prog the program to run.
+   */
+  public VirtualMachine(Program prog)
+  {
+    this.prog = prog;
+    this.constants = prog.getConstants();
+    this.globals = new Object[prog.getGlobalNames().length];
+  }
+
+  /**
+   * Runs the program.
+   * @return the value of the program.
+   */
+  public Object run()
+  {
+    CompiledFunction fn = prog.getMain();
+    int[] code = fn.getCode();
+    int pc = 0;
+    int base = 0;
+    Object lval;
+    Object rval;
+    Object val;
+
+    sp = 0;
+    depth = 0;
+    ensureStack(fn.getNumLocals());
+    sp = fn.getNumLocals();
+
+    while (true)
+    {
+      switch (code[pc++])
+      {
+        case OpCode.CONST:
+          push(constants[code[pc++]]);
+          break;
+        case OpCode.LOAD:
+          val = stack[base + code[pc++]];
+          if (val == null)
+            System.out.println("Undefined variable " + constants[code[pc]]);
+          pc++;
+          push(val);
+          break;
+        case OpCode.STORE:
+          stack[base + code[pc++]] = stack[--sp];
+          break;
+        case OpCode.BIND:
+          val = stack[--sp];
+          if (!LetNode.canBind((Token) constants[code[pc + 1]], val))
+            val = null;
+          stack[base + code[pc]] = val;
+          pc += 2;
+          break;
+        case OpCode.GLOAD:
+          val = globals[code[pc]];
+          if (val == null)
+            System.out.println("Undefined variable " +
+              prog.getGlobalNames()[code[pc]]);
+          pc++;
+          push(val);
+          break;
+        case OpCode.GSTORE:
+          globals[code[pc++]] = stack[--sp];
+          break;
+        case OpCode.UNDEF:
+          System.out.println("Undefined variable " + constants[code[pc++]]);
+          push(null);
+          break;
+        case OpCode.POP:
+          stack[--sp] = null;
+          break;
+
+        case OpCode.ADD:
+          rval = stack[--sp];
+          lval = stack[sp - 1];
+          if (lval instanceof Integer && rval instanceof Integer)
+            stack[sp - 1] = (Integer) lval + (Integer) rval;
+          else
+            stack[sp - 1] = BinOpNode.apply(TokenType.ADD, lval, rval);
+          break;
+        case OpCode.SUB:
+          rval = stack[--sp];
+          lval = stack[sp - 1];
+          if (lval instanceof Integer && rval instanceof Integer)
+            stack[sp - 1] = (Integer) lval - (Integer) rval;
+          else
+            stack[sp - 1] = BinOpNode.apply(TokenType.SUB, lval, rval);
+          break;
+        case OpCode.MUL:
+          rval = stack[--sp];
+          lval = stack[sp - 1];
+          if (lval instanceof Integer && rval instanceof Integer)
+            stack[sp - 1] = (Integer) lval * (Integer) rval;
+          else
+            stack[sp - 1] = BinOpNode.apply(TokenType.MULT, lval, rval);
+          break;
+        case OpCode.DIV:
+          binary(TokenType.DIV);
+          break;
+        case OpCode.AND:
+          binary(TokenType.AND);
+          break;
+        case OpCode.OR:
+          binary(TokenType.OR);
+          break;
+        case OpCode.CONCAT:
+          binary(TokenType.CONCAT);
+          break;
+        case OpCode.UNION:
+          binary(TokenType.UNION);
+          break;
+        case OpCode.INTERSECT:
+          binary(TokenType.INTERSECT);
+          break;
+
+        case OpCode.LT:
+          rval = stack[--sp];
+          lval = stack[sp - 1];
+          if (lval instanceof Integer && rval instanceof Integer)
+            stack[sp - 1] = (Integer) lval < (Integer) rval;
+          else
+            stack[sp - 1] = RelOpNode.apply(TokenType.LT, lval, rval);
+          break;
+        case OpCode.LTE:
+          relational(TokenType.LTE);
+          break;
+        case OpCode.GT:
+          relational(TokenType.GT);
+          break;
+        case OpCode.GTE:
+          relational(TokenType.GTE);
+          break;
+        case OpCode.EQ:
+          rval = stack[--sp];
+          lval = stack[sp - 1];
+          if (lval instanceof Integer && rval instanceof Integer)
+            stack[sp - 1] = ((Integer) lval).intValue() == (Integer) rval;
+          else
+            stack[sp - 1] = RelOpNode.apply(TokenType.EQ, lval, rval);
+          break;
+        case OpCode.NEQ:
+          relational(TokenType.NEQ);
+          break;
+        case OpCode.NOT:
+          stack[sp - 1] = UnaryOpNode.apply(TokenType.NOT, stack[sp - 1]);
+          break;
+
+        case OpCode.HEAD:
+          stack[sp - 1] = HeadNode.head(stack[sp - 1]);
+          break;
+        case OpCode.TAIL:
+          stack[sp - 1] = TailNode.tail(stack[sp - 1]);
+          break;
+        case OpCode.LIST:
+          val = ListNode.makeList(popValues(code[pc++]));
+          push(val);
+          break;
+        case OpCode.SET:
+          val = SetNode.makeSet(popValues(code[pc++]));
+          push(val);
+          break;
+
+        case OpCode.JUMP:
+          pc = code[pc];
+          break;
+        case OpCode.BRANCH:
+          val = stack[--sp];
+          if (!(val instanceof Boolean))
+          {
+            System.out.println("Error: condition must evaluate to a Boolean.");
+            push(null);
+            pc = code[pc + 1];
+          }
+          else if ((Boolean) val)
+            pc += 2;
+          else
+            pc = code[pc];
+          break;
+        case OpCode.SWITCH:
+          pc = dispatch(code, pc, stack[--sp]);
+          break;
+
+        case OpCode.CHECKFN:
+          if (!(stack[sp - 1] instanceof CompiledFunction))
+          {
+            System.out.println("Apply not given a function.");
+            stack[sp - 1] = null;
+            pc = code[pc];
+          }
+          else
+            pc++;
+          break;
+        case OpCode.CALL:
+          // Save the caller and make the argument local slot 0.
+          if (depth == frameFn.length)
+            growFrames();
+          frameFn[depth] = fn;
+          framePc[depth] = pc;
+          frameBase[depth] = base;
+          depth++;
+
+          fn = (CompiledFunction) stack[sp - 2];
+          code = fn.getCode();
+          pc = 0;
+          base = sp - 1;
+          ensureStack(fn.getNumLocals());
+          while (sp < base + fn.getNumLocals())
+            stack[sp++] = null;
+          break;
+        case OpCode.RETURN:
+          val = stack[sp - 1];
+          if (depth == 0)
+            return val;
+
+          // Drop the callee and its locals, then resume the caller.
+          Arrays.fill(stack, base - 1, sp, null);
+          sp = base - 1;
+          depth--;
+          fn = frameFn[depth];
+          pc = framePc[depth];
+          base = frameBase[depth];
+          code = fn.getCode();
+          frameFn[depth] = null;
+          push(val);
+          break;
+        case OpCode.CLOSURE:
+          val = new Closure((CompiledFunction) constants[code[pc]],
+            Arrays.copyOfRange(stack, base, base + code[pc + 1]));
+          pc += 2;
+          push(val);
+          break;
+        case OpCode.ERROR:
+          System.out.println(constants[code[pc++]]);
+          push(null);
+          break;
+        case OpCode.SHORT:
+          val = BinOpNode.shortCircuit((TokenType) constants[code[pc]],
+            stack[sp - 1]);
+          if (val != null)
+          {
+            stack[sp - 1] = val;
+            pc = code[pc + 1];
+          }
+          else
+            pc += 2;
+          break;
+        case OpCode.EXITNULL:
+          if (stack[sp - 1] == null)
+            return null;
+          break;
+        default:
+          throw new IllegalStateException("bad opcode " + code[pc - 1] +
+            " in " + fn.getName());
+      }
+    }
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Applies a binary operation to the top two values of the stack.
+   * @param op the operation.
+   */
+  private void binary(TokenType op)
+  {
+    Object rval = stack[--sp];
+    stack[sp - 1] = BinOpNode.apply(op, stack[sp - 1], rval);
+  }
+
+  /**
+   * Applies a relational operation to the top two values of the stack.
+   * @param op the operation.
+   */
+  private void relational(TokenType op)
+  {
+    Object rval = stack[--sp];
+    stack[sp - 1] = RelOpNode.apply(op, stack[sp - 1], rval);
+  }
+
+  /**
+   * Finds the target of a switch instruction.
+   * @param code the code holding the instruction.
+   * @param pc the position of the first operand.
+   * @param test the value being switched on.
+   * @return the position to continue at.
+   */
+  private int dispatch(int[] code, int pc, Object test)
+  {
+    int n = code[pc + 2];
+
+    if (!(test instanceof Integer))
+    {
+      System.out.println("Error: only ints allowed for switch statements");
+      push(null);
+      return code[pc];
+    }
+
+    // The keys are sorted, so binary search for the case.
+    int key = (Integer) test;
+    int low = 0;
+    int high = n - 1;
+    while (low <= high)
+    {
+      int mid = (low + high) >>> 1;
+      int probe = code[pc + 3 + 2 * mid];
+
+      if (probe < key)
+        low = mid + 1;
+      else if (probe > key)
+        high = mid - 1;
+      else
+        return code[pc + 4 + 2 * mid];
+    }
+    return code[pc + 1];
+  }
+
+  /**
+   * Pops the top {@code n} values in the order they were pushed.
+   * @param n the number of values.
+   * @return the values.
+   */
+  private Object[] popValues(int n)
+  {
+    Object[] vals = Arrays.copyOfRange(stack, sp - n, sp);
+
+    Arrays.fill(stack, sp - n, sp, null);
+    sp -= n;
+    return vals;
+  }
+
+  /**
+   * Pushes a value on the stack.
+   * @param val the value.
+   */
+  private void push(Object val)
+  {
+    if (sp == stack.length)
+      stack = Arrays.copyOf(stack, stack.length * 2);
+    stack[sp++] = val;
+  }
+
+  /**
+   * Makes sure there is room for {@code n} more values on the stack.
+   * @param n the number of values.
+   */
+  private void ensureStack(int n)
+  {
+    if (sp + n >= stack.length)
+      stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + n + 1));
+  }
+
+  /**
+   * Doubles the capacity of the frame stack.
+   */
+  private void growFrames()
+  {
+    frameFn = Arrays.copyOf(frameFn, frameFn.length * 2);
+    framePc = Arrays.copyOf(framePc, framePc.length * 2);
+    frameBase = Arrays.copyOf(frameBase, frameBase.length * 2);
+  }
+}
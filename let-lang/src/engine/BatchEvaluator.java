@@ -0,0 +1,310 @@
+package engine;
+
+import ast.nodes.*;
+import lexer.Token;
+import lexer.TokenType;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Evaluates a program over columns of inputs with one walk of the tree.
+ * Every expression evaluates to a column, an {@code int[]}, a
+ * {@code double[]} or a {@code boolean[]} with one value per row, and each
+ * node runs one loop over its operand columns. An if evaluates both
+ * branches and picks a value from one of them in each row.
+ * <p>
+ * Only arithmetic, comparisons, Boolean operators, ifs, lets and lambda
+ * expressions applied in place are evaluated this way. A program using
+ * anything else, mixing types or dividing an integer by a column holding
+ * 0 is not: evaluating it row by row is the only way to report its errors
+ * exactly as the interpreter would, and the evaluator gives up.
+ * @author Zach Kissel
+ */
+final class BatchEvaluator
+{
+  private final int rows;   // The number of rows of every column.
+  private Scope scope;      // The variables in scope and their columns.
+
+  /**
+   * Constructs an evaluator over the inputs {@code inputs}.
+   * @param inputs the parameters of the program and their values, each a
+   * column or a value shared by every row.
+   * @param rows the number of rows.
+   */
+  BatchEvaluator(Map<String, Object> inputs, int rows)
+  {
+    this.rows = rows;
+    for (Map.Entry<String, Object> input : inputs.entrySet())
+      scope = new Scope(input.getKey(), column(input.getValue()), scope);
+  }
+
+  /**
+   * Evaluates a program.
+   * @param root the root of the program.
+   * @return the column of the value of the program or null if the
+   * program can not be evaluated a column at a time.
+   */
+  Object evaluate(SyntaxNode root)
+  {
+    Object res = null;
+
+    if (!(root instanceof ProgNode))
+      return eval(root);
+
+    // Functions are only reachable through calls, which are not evaluated
+    // here, so they are skipped.
+    for (SyntaxNode expr : ((ProgNode) root).getExprs())
+      if (!(expr instanceof FunNode))
+      {
+        res = eval(expr);
+        if (res == null)
+          return null;
+      }
+    return res;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Evaluates an expression.
+   * @param node the root of the expression.
+   * @return the column of its values or null if the expression can not
+   * be evaluated a column at a time.
+   */
+  private Object eval(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+      return evalToken((TokenNode) node);
+    else if (node instanceof BinOpNode)
+      return evalBinOp((BinOpNode) node);
+    else if (node instanceof RelOpNode)
+    {
+      RelOpNode rel = (RelOpNode) node;
+      Object left = eval(rel.getLeftExpr());
+      Object right = left == null ? null : eval(rel.getRightExpr());
+
+      if (left instanceof int[] && right instanceof int[])
+        return Kernels.compare(rel.getOp(), (int[]) left, (int[]) right);
+      if (left instanceof double[] && right instanceof double[])
+        return Kernels.compare(rel.getOp(), (double[]) left,
+          (double[]) right);
+      return null;
+    }
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+      Object val = eval(un.getExpr());
+
+      if (un.getOp() == TokenType.NOT && val instanceof boolean[])
+        return Kernels.not((boolean[]) val);
+      return null;
+    }
+    else if (node instanceof IfNode)
+      return evalIf((IfNode) node);
+    else if (node instanceof LetNode)
+      return evalLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+    {
+      ApplyNode apply = (ApplyNode) node;
+      LambdaNode lexp;
+      Object arg;
+      Object res;
+
+      // Only a lambda expression applied in place binds its parameter
+      // in the current scope; named functions need a frame per call.
+      if (!(apply.getFunc() instanceof LambdaNode))
+        return null;
+      lexp = (LambdaNode) apply.getFunc();
+      arg = eval(apply.getArg());
+      if (arg == null || lexp.isClosure())
+        return null;
+      scope = new Scope(lexp.getVar().getValue(), arg, scope);
+      res = eval(lexp.getExpr());
+      scope = scope.parent;
+      return res;
+    }
+    return null;
+  }
+
+  /**
+   * Evaluates a literal or variable.
+   * @param node the token node.
+   * @return the column of its values or null if it is not a number or
+   * Boolean.
+   */
+  private Object evalToken(TokenNode node)
+  {
+    Token tok = node.getToken();
+
+    if (node instanceof ConstantNode)
+      return column(((ConstantNode) node).getValue());
+    if (tok.getType() != TokenType.ID)
+      return column(node.evaluate(null));
+
+    for (Scope s = scope; s != null; s = s.parent)
+      if (s.name.equals(tok.getValue()))
+        return s.column;
+    return null;
+  }
+
+  /**
+   * Evaluates a binary operation.
+   * @param node the binary operation.
+   * @return the column of its values or null if it can not be evaluated
+   * a column at a time.
+   */
+  private Object evalBinOp(BinOpNode node)
+  {
+    TokenType op = node.getOp();
+    Object left = eval(node.getLeftTerm());
+    Object right = left == null ? null : eval(node.getRightTerm());
+
+    switch (op)
+    {
+      case ADD:
+      case SUB:
+      case MULT:
+      case DIV:
+        if (left instanceof int[] && right instanceof int[])
+        {
+          // The interpreter stops at a division by 0, if that row gets
+          // that far; only a walk of the row can tell.
+          if (op == TokenType.DIV && Kernels.hasZero((int[]) right))
+            return null;
+          return Kernels.arith(op, (int[]) left, (int[]) right);
+        }
+        if (left instanceof double[] && right instanceof double[])
+          return Kernels.arith(op, (double[]) left, (double[]) right);
+        return null;
+      case AND:
+      case OR:
+        if (left instanceof boolean[] && right instanceof boolean[])
+          return Kernels.logic(op, (boolean[]) left, (boolean[]) right);
+        return null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Evaluates an if expression.
+   * @param node the if node.
+   * @return the column of its values or null if it can not be evaluated
+   * a column at a time.
+   */
+  private Object evalIf(IfNode node)
+  {
+    Object cond = eval(node.getCond());
+    Object yes;
+    Object no;
+
+    if (!(cond instanceof boolean[]))
+      return null;
+    yes = eval(node.getTrueBranch());
+    no = yes == null ? null : eval(node.getFalseBranch());
+
+    if (yes instanceof int[] && no instanceof int[])
+      return Kernels.select((boolean[]) cond, (int[]) yes, (int[]) no);
+    if (yes instanceof double[] && no instanceof double[])
+      return Kernels.select((boolean[]) cond, (double[]) yes, (double[]) no);
+    if (yes instanceof boolean[] && no instanceof boolean[])
+      return Kernels.select((boolean[]) cond, (boolean[]) yes,
+        (boolean[]) no);
+    return null;
+  }
+
+  /**
+   * Evaluates a let expression. A let binds numbers only, as it does
+   * when the tree is walked.
+   * @param node the let node.
+   * @return the column of the value of the body or null if it can not be
+   * evaluated a column at a time.
+   */
+  private Object evalLet(LetNode node)
+  {
+    Scope saved = scope;
+    Map<Token, SyntaxNode> bindings = new LinkedHashMap<>();
+    Object res;
+
+    if (node.isMultiLet())
+      bindings.putAll(node.getLetMap());
+    else
+      bindings.put(node.getVar(), node.getVarExpr());
+
+    for (Map.Entry<Token, SyntaxNode> binding : bindings.entrySet())
+    {
+      Object val = eval(binding.getValue());
+
+      if (!(val instanceof int[]) && !(val instanceof double[]))
+      {
+        scope = saved;
+        return null;
+      }
+      scope = new Scope(binding.getKey().getValue(), val, scope);
+    }
+    res = eval(node.getExpr());
+    scope = saved;
+    return res;
+  }
+
+  /**
+   * Turns an input or literal into a column. A column is used as is and
+   * a number or Boolean is repeated in every row.
+   * @param val the value.
+   * @return the column or null if the value is of another type.
+   */
+  private Object column(Object val)
+  {
+    if (val instanceof int[] || val instanceof double[] ||
+        val instanceof boolean[])
+      return val;
+    if (val instanceof Integer)
+    {
+      int[] col = new int[rows];
+
+      Arrays.fill(col, (Integer) val);
+      return col;
+    }
+    if (val instanceof Double)
+    {
+      double[] col = new double[rows];
+
+      Arrays.fill(col, (Double) val);
+      return col;
+    }
+    if (val instanceof Boolean)
+    {
+      boolean[] col = new boolean[rows];
+
+      Arrays.fill(col, (Boolean) val);
+      return col;
+    }
+    return null;
+  }
+
+  /**
+   * A variable in scope and its column.
+   */
+  private static class Scope
+  {
+    private final String name;
+    private final Object column;   // The column or null if it has none.
+    private final Scope parent;    // The enclosing bindings.
+
+    /**
+     * Constructs a new binding.
+     * @param name the name of the variable.
+     * @param column the column of the variable.
+     * @param parent the enclosing bindings.
+     */
+    Scope(String name, Object column, Scope parent)
+    {
+      this.name = name;
+      this.column = column;
+      this.parent = parent;
+    }
+  }
+}
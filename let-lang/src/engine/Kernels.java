@@ -0,0 +1,401 @@
+package engine;
+
+import lexer.TokenType;
+
+/**
+ * The loops batch evaluation runs over whole columns. Each operation
+ * picks its loop once by operator and then runs it over every row, so the
+ * loops are simple enough for the JIT to unroll and vectorize. Integer
+ * arithmetic wraps and integer comparisons and real comparisons behave
+ * exactly as the interpreter's do, real equality included.
+ * <p>
+ * When the VM has the Vector API, the operations the JIT does not
+ * vectorize well on its own run most rows through {@link VectorKernels}
+ * and finish the last few here, which is why the scalar loops take the
+ * row to start at.
+ * @author Zach Kissel
+ */
+final class Kernels
+{
+  // True if the Vector API is used: the VM must have been started with
+  // --add-modules jdk.incubator.vector, the property let.vector must not
+  // be false and the machine must have vectors of more than one lane.
+  static final boolean VECTOR = useVectors();
+
+  /**
+   * Prevents construction; the kernels are static.
+   */
+  private Kernels()
+  {
+  }
+
+  /**
+   * Applies an arithmetic operator to two integer columns.
+   * @param op {@code ADD}, {@code SUB}, {@code MULT} or {@code DIV}.
+   * @param a the left operands.
+   * @param b the right operands, none 0 for {@code DIV}.
+   * @return the results.
+   */
+  static int[] arith(TokenType op, int[] a, int[] b)
+  {
+    int[] res = new int[a.length];
+
+    // Vectors have no fast integer division.
+    if (VECTOR && op != TokenType.DIV)
+      arith(op, a, b, res, VectorKernels.arith(op, a, b, res));
+    else
+      arith(op, a, b, res, 0);
+    return res;
+  }
+
+  /**
+   * Applies an arithmetic operator to two real columns.
+   * @param op {@code ADD}, {@code SUB}, {@code MULT} or {@code DIV}.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @return the results.
+   */
+  static double[] arith(TokenType op, double[] a, double[] b)
+  {
+    double[] res = new double[a.length];
+
+    arith(op, a, b, res, VECTOR ? VectorKernels.arith(op, a, b, res) : 0);
+    return res;
+  }
+
+  /**
+   * Compares two integer columns.
+   * @param op the relational operator.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @return the results.
+   */
+  static boolean[] compare(TokenType op, int[] a, int[] b)
+  {
+    boolean[] res = new boolean[a.length];
+
+    compare(op, a, b, res, VECTOR ? VectorKernels.compare(op, a, b, res) : 0);
+    return res;
+  }
+
+  /**
+   * Compares two real columns. Equality is that of {@code Double.equals},
+   * as in the interpreter, so NaN equals itself and 0.0 does not equal
+   * -0.0.
+   * @param op the relational operator.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @return the results.
+   */
+  static boolean[] compare(TokenType op, double[] a, double[] b)
+  {
+    boolean[] res = new boolean[a.length];
+
+    // Vector equality is that of ==, and storing the masks of eight lanes
+    // was measured slower than this loop, so real comparisons stay scalar.
+    compare(op, a, b, res, 0);
+    return res;
+  }
+
+  /**
+   * Applies {@code and} or {@code or} to two Boolean columns.
+   * @param op {@code AND} or {@code OR}.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @return the results.
+   */
+  static boolean[] logic(TokenType op, boolean[] a, boolean[] b)
+  {
+    boolean[] res = new boolean[a.length];
+
+    if (op == TokenType.AND)
+      for (int i = 0; i < res.length; i++)
+        res[i] = a[i] & b[i];
+    else
+      for (int i = 0; i < res.length; i++)
+        res[i] = a[i] | b[i];
+    return res;
+  }
+
+  /**
+   * Negates a Boolean column.
+   * @param a the operands.
+   * @return the results.
+   */
+  static boolean[] not(boolean[] a)
+  {
+    boolean[] res = new boolean[a.length];
+
+    for (int i = 0; i < res.length; i++)
+      res[i] = !a[i];
+    return res;
+  }
+
+  /**
+   * Picks, row by row, a value of one of two integer columns.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @return the values picked.
+   */
+  static int[] select(boolean[] cond, int[] a, int[] b)
+  {
+    int[] res = new int[cond.length];
+
+    select(cond, a, b, res, VECTOR ? VectorKernels.select(cond, a, b, res) : 0);
+    return res;
+  }
+
+  /**
+   * Picks, row by row, a value of one of two real columns.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @return the values picked.
+   */
+  static double[] select(boolean[] cond, double[] a, double[] b)
+  {
+    double[] res = new double[cond.length];
+
+    select(cond, a, b, res, VECTOR ? VectorKernels.select(cond, a, b, res) : 0);
+    return res;
+  }
+
+  /**
+   * Picks, row by row, a value of one of two Boolean columns.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @return the values picked.
+   */
+  static boolean[] select(boolean[] cond, boolean[] a, boolean[] b)
+  {
+    boolean[] res = new boolean[cond.length];
+
+    for (int i = 0; i < res.length; i++)
+      res[i] = cond[i] ? a[i] : b[i];
+    return res;
+  }
+
+  /**
+   * Determines if an integer column holds a 0.
+   * @param a the column.
+   * @return true if some row is 0; otherwise, false.
+   */
+  static boolean hasZero(int[] a)
+  {
+    if (VECTOR && VectorKernels.hasZero(a))
+      return true;
+    return hasZero(a, VECTOR ? VectorKernels.intBound(a.length) : 0);
+  }
+
+  /************
+   * The scalar loops, each starting at a given row.
+   ***********/
+
+  /**
+   * Applies an arithmetic operator to two integer columns from row
+   * {@code from} on.
+   * @param op {@code ADD}, {@code SUB}, {@code MULT} or {@code DIV}.
+   * @param a the left operands.
+   * @param b the right operands, none 0 for {@code DIV}.
+   * @param res the column to store the results in.
+   * @param from the first row.
+   */
+  static void arith(TokenType op, int[] a, int[] b, int[] res, int from)
+  {
+    switch (op)
+    {
+      case ADD:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] + b[i];
+        break;
+      case SUB:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] - b[i];
+        break;
+      case MULT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] * b[i];
+        break;
+      default:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] / b[i];
+        break;
+    }
+  }
+
+  /**
+   * Applies an arithmetic operator to two real columns from row
+   * {@code from} on.
+   * @param op {@code ADD}, {@code SUB}, {@code MULT} or {@code DIV}.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @param from the first row.
+   */
+  static void arith(TokenType op, double[] a, double[] b, double[] res,
+    int from)
+  {
+    switch (op)
+    {
+      case ADD:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] + b[i];
+        break;
+      case SUB:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] - b[i];
+        break;
+      case MULT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] * b[i];
+        break;
+      default:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] / b[i];
+        break;
+    }
+  }
+
+  /**
+   * Compares two integer columns from row {@code from} on.
+   * @param op the relational operator.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @param from the first row.
+   */
+  static void compare(TokenType op, int[] a, int[] b, boolean[] res,
+    int from)
+  {
+    switch (op)
+    {
+      case LT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] < b[i];
+        break;
+      case LTE:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] <= b[i];
+        break;
+      case GT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] > b[i];
+        break;
+      case GTE:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] >= b[i];
+        break;
+      case EQ:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] == b[i];
+        break;
+      default:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] != b[i];
+        break;
+    }
+  }
+
+  /**
+   * Compares two real columns from row {@code from} on.
+   * @param op the relational operator.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @param from the first row.
+   */
+  static void compare(TokenType op, double[] a, double[] b, boolean[] res,
+    int from)
+  {
+    switch (op)
+    {
+      case LT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] < b[i];
+        break;
+      case LTE:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] <= b[i];
+        break;
+      case GT:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] > b[i];
+        break;
+      case GTE:
+        for (int i = from; i < res.length; i++)
+          res[i] = a[i] >= b[i];
+        break;
+      case EQ:
+        for (int i = from; i < res.length; i++)
+          res[i] = Double.compare(a[i], b[i]) == 0;
+        break;
+      default:
+        for (int i = from; i < res.length; i++)
+          res[i] = Double.compare(a[i], b[i]) != 0;
+        break;
+    }
+  }
+
+  /**
+   * Picks a value of one of two integer columns from row {@code from} on.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @param res the column to store the values picked in.
+   * @param from the first row.
+   */
+  static void select(boolean[] cond, int[] a, int[] b, int[] res, int from)
+  {
+    for (int i = from; i < res.length; i++)
+      res[i] = cond[i] ? a[i] : b[i];
+  }
+
+  /**
+   * Picks a value of one of two real columns from row {@code from} on.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @param res the column to store the values picked in.
+   * @param from the first row.
+   */
+  static void select(boolean[] cond, double[] a, double[] b, double[] res,
+    int from)
+  {
+    for (int i = from; i < res.length; i++)
+      res[i] = cond[i] ? a[i] : b[i];
+  }
+
+  /**
+   * Determines if an integer column holds a 0 from row {@code from} on.
+   * @param a the column.
+   * @param from the first row.
+   * @return true if some row is 0; otherwise, false.
+   */
+  static boolean hasZero(int[] a, int from)
+  {
+    for (int i = from; i < a.length; i++)
+      if (a[i] == 0)
+        return true;
+    return false;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Determines if the Vector API may be used. {@link VectorKernels} is not
+   * touched unless its module is present, since loading it would fail.
+   * @return true if the kernels should use vectors; otherwise, false.
+   */
+  private static boolean useVectors()
+  {
+    if (!Boolean.parseBoolean(System.getProperty("let.vector", "true")))
+      return false;
+    if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+      return false;
+    return VectorKernels.lanes() > 1;
+  }
+}
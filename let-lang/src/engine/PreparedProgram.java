@@ -0,0 +1,280 @@
+package engine;
+
+import analysis.Resolver;
+import ast.SyntaxTree;
+import ast.nodes.FunNode;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import environment.Environment;
+import optimizer.ConstantFolder;
+import optimizer.Inliner;
+import parser.Parser;
+import values.ListValue;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A program parsed, optimized and resolved once so that it can be
+ * evaluated any number of times with different inputs. The inputs are
+ * named free variables of the program, its parameters, which are bound
+ * in the program frame next to the functions: every top level expression
+ * and function body sees them unless a binding of its own hides them.
+ * Each evaluation binds the parameters in a fresh frame, so a prepared
+ * program may be evaluated by several threads at once. A program may
+ * also be evaluated over whole columns of inputs at once.
+ * <p>
+ * For example, preparing {@code fun sq x ~ (x * x) apply sq n} with the
+ * parameter {@code n} and evaluating it with 7 gives 49.
+ * @author Zach Kissel
+ */
+public final class PreparedProgram
+{
+  private final SyntaxTree tree;      // The optimized, resolved program.
+  private final List<String> params;  // The names of the parameters.
+  private final int[] slots;          // The slot of each parameter.
+
+  /**
+   * Constructs a prepared program.
+   * @param tree the resolved tree.
+   * @param params the names of the parameters.
+   * @param slots the slot of the program frame holding each parameter.
+   */
+  private PreparedProgram(SyntaxTree tree, List<String> params, int[] slots)
+  {
+    this.tree = tree;
+    this.params = params;
+    this.slots = slots;
+  }
+
+  /**
+   * Prepares the program {@code source}. The program is parsed, small
+   * functions are inlined and constant expressions folded, then the
+   * variables are resolved with {@code params} as parameters.
+   * @param source the text of the program.
+   * @param params the names of the parameters, in the order
+   * {@link #evaluate(Object...)} takes their values.
+   * @return the prepared program.
+   * @throws IllegalArgumentException if the program does not parse or a
+   * parameter is named twice or after a function.
+   */
+  public static PreparedProgram prepare(String source, String... params)
+  {
+    Parser parser = new Parser(source);
+    SyntaxTree tree = parser.parse();
+    List<String> names = new ArrayList<>(Arrays.asList(params));
+    Set<String> seen = new HashSet<>();
+
+    if (parser.hasError())
+      throw new IllegalArgumentException("the program does not parse");
+
+    if (tree.getRootNode() instanceof ProgNode)
+      for (SyntaxNode expr : ((ProgNode) tree.getRootNode()).getExprs())
+        if (expr instanceof FunNode)
+          seen.add(((FunNode) expr).getName().getValue());
+    for (String name : names)
+      if (!seen.add(name))
+        throw new IllegalArgumentException("parameter " + name +
+          " is already a parameter or a function");
+
+    new Inliner().inline(tree);
+    new ConstantFolder().fold(tree);
+    return new PreparedProgram(tree, names,
+      new Resolver().resolve(tree, names));
+  }
+
+  /**
+   * Get the names of the parameters.
+   * @return the parameter names in order.
+   */
+  public List<String> getParameters()
+  {
+    return new ArrayList<>(params);
+  }
+
+  /**
+   * Evaluates the program with its parameters bound to {@code args}.
+   * A parameter takes an integer, a real, a Boolean, a list or a set.
+   * @param args the value of each parameter in order.
+   * @return the value of the program or null if it stopped with an error.
+   * @throws IllegalArgumentException if the number of values does not
+   * match the number of parameters or a value is of no type the language
+   * has.
+   */
+  public Object evaluate(Object... args)
+  {
+    Environment frame = tree.newFrame();
+
+    if (args.length != slots.length)
+      throw new IllegalArgumentException("expected " + slots.length +
+        " arguments but got " + args.length);
+    for (int i = 0; i < slots.length; i++)
+      frame.updateEnvironment(slots[i], check(params.get(i), args[i]));
+    return tree.evaluate(frame);
+  }
+
+  /**
+   * Evaluates the program with each parameter bound to the value of its
+   * name in {@code bindings}.
+   * @param bindings the values of the parameters by name.
+   * @return the value of the program or null if it stopped with an error.
+   * @throws IllegalArgumentException if a parameter has no value or a
+   * value is of no type the language has.
+   */
+  public Object evaluate(Map<String, ?> bindings)
+  {
+    Environment frame = tree.newFrame();
+
+    for (int i = 0; i < slots.length; i++)
+    {
+      String name = params.get(i);
+
+      if (!bindings.containsKey(name))
+        throw new IllegalArgumentException("parameter " + name +
+          " is not bound");
+      frame.updateEnvironment(slots[i], check(name, bindings.get(name)));
+    }
+    return tree.evaluate(frame);
+  }
+
+  /**
+   * Evaluates the program once for every row of the columns
+   * {@code columns}. A parameter is bound to an {@code int[]}, a
+   * {@code double[]} or a {@code boolean[]}, all of the same length, or
+   * to a single value used in every row. When the program only computes
+   * with numbers and Booleans the tree is walked once and each operation
+   * runs as a loop over its columns; otherwise each row is evaluated on
+   * its own.
+   * @param columns the values of the parameters by name.
+   * @return the value of the program in each row: an {@code int[]}, a
+   * {@code double[]} or a {@code boolean[]} if every row has a value of
+   * that type; otherwise an {@code Object[]} holding null for each row
+   * that stopped with an error.
+   * @throws IllegalArgumentException if a parameter has no value, the
+   * columns differ in length or no parameter is bound to a column.
+   */
+  public Object evaluateColumns(Map<String, ?> columns)
+  {
+    Map<String, Object> inputs = new LinkedHashMap<>();
+    int rows = -1;
+    Object res;
+
+    for (String name : params)
+    {
+      Object val = columns.get(name);
+      int length = columnLength(val);
+
+      if (!columns.containsKey(name))
+        throw new IllegalArgumentException("parameter " + name +
+          " is not bound");
+      if (length < 0)
+        check(name, val);
+      else if (rows >= 0 && length != rows)
+        throw new IllegalArgumentException("column " + name + " has " +
+          length + " rows rather than " + rows);
+      else
+        rows = length;
+      inputs.put(name, val);
+    }
+    if (rows < 0)
+      throw new IllegalArgumentException("no parameter is bound to a column");
+
+    res = new BatchEvaluator(inputs, rows).evaluate(tree.getRootNode());
+    if (res != null)
+      return res;
+    return evaluateRows(inputs, rows);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Evaluates the program one row at a time.
+   * @param inputs the value of each parameter, in order.
+   * @param rows the number of rows.
+   * @return the value of the program in each row, as a primitive column
+   * if every row has a value of the same primitive type.
+   */
+  private Object evaluateRows(Map<String, Object> inputs, int rows)
+  {
+    Object[] res = new Object[rows];
+    Object[] args = new Object[params.size()];
+    Class<?> type = null;
+
+    for (int row = 0; row < rows; row++)
+    {
+      int i = 0;
+
+      for (Object val : inputs.values())
+        args[i++] = columnLength(val) < 0 ? val : Array.get(val, row);
+      res[row] = evaluate(args);
+      if (row == 0 && res[row] != null)
+        type = res[row].getClass();
+      else if (res[row] == null || res[row].getClass() != type)
+        type = null;
+    }
+
+    if (type == Integer.class)
+    {
+      int[] col = new int[rows];
+
+      for (int row = 0; row < rows; row++)
+        col[row] = (Integer) res[row];
+      return col;
+    }
+    if (type == Double.class)
+    {
+      double[] col = new double[rows];
+
+      for (int row = 0; row < rows; row++)
+        col[row] = (Double) res[row];
+      return col;
+    }
+    if (type == Boolean.class)
+    {
+      boolean[] col = new boolean[rows];
+
+      for (int row = 0; row < rows; row++)
+        col[row] = (Boolean) res[row];
+      return col;
+    }
+    return res;
+  }
+
+  /**
+   * Get the length of a column.
+   * @param val a parameter value.
+   * @return the number of rows or -1 if the value is not a column.
+   */
+  private static int columnLength(Object val)
+  {
+    if (val instanceof int[] || val instanceof double[] ||
+        val instanceof boolean[])
+      return Array.getLength(val);
+    return -1;
+  }
+
+  /**
+   * Makes sure a parameter is bound to a value of the language.
+   * @param name the name of the parameter.
+   * @param val the value.
+   * @return the value.
+   * @throws IllegalArgumentException if the value is of no type the
+   * language has.
+   */
+  private static Object check(String name, Object val)
+  {
+    if (val instanceof Integer || val instanceof Double ||
+        val instanceof Boolean || val instanceof ListValue ||
+        val instanceof Set)
+      return val;
+    throw new IllegalArgumentException("parameter " + name +
+      " can not be bound to " + val);
+  }
+}
@@ -0,0 +1,237 @@
+package engine;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import lexer.TokenType;
+
+/**
+ * The column loops written with the Vector API. The species are the
+ * widest the machine runs well, chosen when the class is loaded. Each
+ * kernel handles the rows that fill whole vectors and returns the first
+ * row it left, which {@link Kernels} finishes with its scalar loop. The
+ * class must only be loaded when the {@code jdk.incubator.vector} module
+ * is present.
+ * @author Zach Kissel
+ */
+final class VectorKernels
+{
+  private static final VectorSpecies<Integer> INTS =
+    IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Double> DOUBLES =
+    DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * Prevents construction; the kernels are static.
+   */
+  private VectorKernels()
+  {
+  }
+
+  /**
+   * Get the number of integers in a vector.
+   * @return the lanes of the integer species.
+   */
+  static int lanes()
+  {
+    return INTS.length();
+  }
+
+  /**
+   * Get the first row an integer kernel leaves to the scalar loop.
+   * @param rows the number of rows.
+   * @return the number of rows filling whole vectors.
+   */
+  static int intBound(int rows)
+  {
+    return INTS.loopBound(rows);
+  }
+
+  /**
+   * Applies an arithmetic operator to the rows of two integer columns
+   * that fill whole vectors. Each operator has a loop of its own, since
+   * the JIT only compiles a lanewise operation to vector instructions
+   * when the operation is a constant.
+   * @param op {@code ADD}, {@code SUB} or {@code MULT}.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @return the first row left.
+   */
+  static int arith(TokenType op, int[] a, int[] b, int[] res)
+  {
+    int bound = INTS.loopBound(res.length);
+    int step = INTS.length();
+
+    switch (op)
+    {
+      case ADD:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i)
+            .add(IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case SUB:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i)
+            .sub(IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case MULT:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i)
+            .mul(IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      default:
+        return 0;
+    }
+    return bound;
+  }
+
+  /**
+   * Applies an arithmetic operator to the rows of two real columns that
+   * fill whole vectors.
+   * @param op {@code ADD}, {@code SUB}, {@code MULT} or {@code DIV}.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @return the first row left.
+   */
+  static int arith(TokenType op, double[] a, double[] b, double[] res)
+  {
+    int bound = DOUBLES.loopBound(res.length);
+    int step = DOUBLES.length();
+
+    switch (op)
+    {
+      case ADD:
+        for (int i = 0; i < bound; i += step)
+          DoubleVector.fromArray(DOUBLES, a, i)
+            .add(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(res, i);
+        break;
+      case SUB:
+        for (int i = 0; i < bound; i += step)
+          DoubleVector.fromArray(DOUBLES, a, i)
+            .sub(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(res, i);
+        break;
+      case MULT:
+        for (int i = 0; i < bound; i += step)
+          DoubleVector.fromArray(DOUBLES, a, i)
+            .mul(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(res, i);
+        break;
+      default:
+        for (int i = 0; i < bound; i += step)
+          DoubleVector.fromArray(DOUBLES, a, i)
+            .div(DoubleVector.fromArray(DOUBLES, b, i)).intoArray(res, i);
+        break;
+    }
+    return bound;
+  }
+
+  /**
+   * Compares the rows of two integer columns that fill whole vectors.
+   * @param op the relational operator.
+   * @param a the left operands.
+   * @param b the right operands.
+   * @param res the column to store the results in.
+   * @return the first row left.
+   */
+  static int compare(TokenType op, int[] a, int[] b, boolean[] res)
+  {
+    int bound = INTS.loopBound(res.length);
+    int step = INTS.length();
+
+    switch (op)
+    {
+      case LT:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.LT,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case LTE:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.LE,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case GT:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.GT,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case GTE:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.GE,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      case EQ:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.EQ,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+      default:
+        for (int i = 0; i < bound; i += step)
+          IntVector.fromArray(INTS, a, i).compare(VectorOperators.NE,
+            IntVector.fromArray(INTS, b, i)).intoArray(res, i);
+        break;
+    }
+    return bound;
+  }
+
+  /**
+   * Picks a value of one of two integer columns in the rows that fill
+   * whole vectors.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @param res the column to store the values picked in.
+   * @return the first row left.
+   */
+  static int select(boolean[] cond, int[] a, int[] b, int[] res)
+  {
+    int bound = INTS.loopBound(res.length);
+
+    for (int i = 0; i < bound; i += INTS.length())
+      IntVector.fromArray(INTS, b, i)
+        .blend(IntVector.fromArray(INTS, a, i),
+          VectorMask.fromArray(INTS, cond, i))
+        .intoArray(res, i);
+    return bound;
+  }
+
+  /**
+   * Picks a value of one of two real columns in the rows that fill whole
+   * vectors.
+   * @param cond the conditions.
+   * @param a the values where the condition holds.
+   * @param b the values where it does not.
+   * @param res the column to store the values picked in.
+   * @return the first row left.
+   */
+  static int select(boolean[] cond, double[] a, double[] b, double[] res)
+  {
+    int bound = DOUBLES.loopBound(res.length);
+
+    for (int i = 0; i < bound; i += DOUBLES.length())
+      DoubleVector.fromArray(DOUBLES, b, i)
+        .blend(DoubleVector.fromArray(DOUBLES, a, i),
+          VectorMask.fromArray(DOUBLES, cond, i))
+        .intoArray(res, i);
+    return bound;
+  }
+
+  /**
+   * Determines if a 0 is among the rows of an integer column that fill
+   * whole vectors.
+   * @param a the column.
+   * @return true if one of those rows is 0; otherwise, false.
+   */
+  static boolean hasZero(int[] a)
+  {
+    int bound = INTS.loopBound(a.length);
+
+    for (int i = 0; i < bound; i += INTS.length())
+      if (IntVector.fromArray(INTS, a, i).eq(0).anyTrue())
+        return true;
+    return false;
+  }
+}
@@ -1,57 +1,135 @@
 package environment;
 
-import lexer.Token;
-import lexer.TokenType;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
- * A simple representation of an executional environment.
+ * A simple representation of an executional environment. An environment
+ * is a frame of slots linked to the frame of the enclosing scope. The
+ * resolver assigns every variable a (depth, index) address so a lookup
+ * follows {@code depth} parent links and then loads slot {@code index}.
+ * Frames are never copied: entering a scope links a new frame to the
+ * current one and capturing a scope keeps a reference to it, so both
+ * cost O(1) however many functions the program defines.
  * @author Zach Kissel
  */
 public class Environment
 {
-  private HashMap<String, Object> env;
+  private Object[] slots;       // The values bound in this frame.
+  private Environment parent;   // The frame of the enclosing scope.
+  private Environment root;     // The outermost frame.
+  private boolean lazy;         // True if bindings are evaluated by need.
 
   /**
-   * Sets up the initial environment.
+   * Sets up an empty initial environment.
    */
   public Environment()
   {
-    env = new HashMap<>();
+    this(0, null);
   }
 
   /**
-   * Returns the evironment value associated with a token.
-   * @param tok the token to look up the value of.
-   * @return the value of {@code tok} in the environment. A value of null
-   * is returned if hte token is not in the environment.
+   * Sets up a frame with {@code size} slots whose enclosing scope is
+   * {@code parent}. The frame evaluates lazily if its parent does.
+   * @param size the number of slots in the frame.
+   * @param parent the frame of the enclosing scope or null if there is
+   * none.
    */
-  public Object lookup(Token tok)
+  public Environment(int size, Environment parent)
   {
-    return env.get(tok.getValue());
+    this.slots = new Object[size];
+    this.parent = parent;
+    this.root = parent == null ? this : parent.root;
+    this.lazy = parent != null && parent.lazy;
   }
 
   /**
-   * Update the environment such that token {@code tok} has
-   * the given value {@code val}.
-   * @param tok the token to update.
-   * @param val the value to associate with the token.
+   * Returns the value stored at an address.
+   * @param depth the number of frames to walk up.
+   * @param index the slot within that frame.
+   * @return the value at the address. A value of null is returned if
+   * nothing has been stored at the address.
    */
-  public void updateEnvironment(Token tok, Object val)
+  public Object lookup(int depth, int index)
   {
-    if (env.replace(tok.getValue(), val) == null)
-      env.put(tok.getValue(), val);
+    Environment frame = this;
+
+    while (depth-- > 0)
+      frame = frame.parent;
+    return frame.slots[index];
+  }
+
+  /**
+   * Update slot {@code index} of this frame such that it has the given
+   * value {@code val}.
+   * @param index the slot to update.
+   * @param val the value to associate with the slot.
+   */
+  public void updateEnvironment(int index, Object val)
+  {
+    slots[index] = val;
+  }
+
+  /**
+   * Gets the frame {@code depth} levels up from this frame.
+   * @param depth the number of frames to walk up.
+   * @return the enclosing frame.
+   */
+  public Environment ancestor(int depth)
+  {
+    Environment frame = this;
+
+    while (depth-- > 0)
+      frame = frame.parent;
+    return frame;
+  }
+
+  /**
+   * Gets the number of slots in this frame.
+   * @return the frame size.
+   */
+  public int size()
+  {
+    return slots.length;
+  }
+
+  /**
+   * Determines if variables of this frame are bound by need. A lazy frame
+   * binds a let variable or parameter to a thunk that is evaluated the
+   * first time the variable is used.
+   * @return true if bindings are lazy; otherwise, false.
+   */
+  public boolean isLazy()
+  {
+    return lazy;
+  }
+
+  /**
+   * Sets whether variables of this frame and of every frame later linked
+   * below it are bound by need.
+   * @param lazy true if bindings should be lazy.
+   */
+  public void setLazy(boolean lazy)
+  {
+    this.lazy = lazy;
+  }
+
+  /**
+   * Gets the frame of the enclosing scope.
+   * @return the parent frame or null if this is the outermost frame.
+   */
+  public Environment getParent()
+  {
+    return parent;
   }
 
   /**
-   * Makes a copy of the current environment.
-   * @return a copy of the environment.
+   * Gets the outermost frame, the frame of the program holding its named
+   * functions.
+   * @return the outermost frame.
    */
-  public Environment copy()
+  public Environment getRoot()
   {
-    Environment newEnv = new Environment();
-    newEnv.env.putAll(env);
-    return newEnv;
+    return root;
   }
 
   /**
@@ -61,6 +139,6 @@ public class Environment
   @Override
   public String toString()
   {
-    return env.toString();
+    return Arrays.toString(slots);
   }
 }
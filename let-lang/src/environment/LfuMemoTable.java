@@ -0,0 +1,134 @@
+package environment;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * A memo table evicting the entry looked up least often. Keys are kept in
+ * buckets by use count, each bucket in insertion order, so the entry to
+ * evict is the oldest key of the lowest count and every operation takes
+ * constant time. Ties are broken in favour of keeping the newer entry.
+ * @author Zach Kissel
+ */
+final class LfuMemoTable extends MemoTable
+{
+  private final HashMap<Object, Entry> entries = new HashMap<>();
+  private final HashMap<Integer, LinkedHashSet<Object>> buckets =
+    new HashMap<>();
+  private int minCount;   // The lowest use count of any entry.
+
+  /**
+   * Constructs an empty table.
+   * @param capacity the most entries the table holds.
+   */
+  LfuMemoTable(int capacity)
+  {
+    super(capacity);
+  }
+
+  /**
+   * Remembers the result {@code val} of the call with argument
+   * {@code key}, evicting an entry if the table is full.
+   * @param key the argument of the call.
+   * @param val the result of the call.
+   */
+  @Override
+  public synchronized void put(Object key, Object val)
+  {
+    Entry entry = entries.get(key);
+
+    if (entry != null)
+    {
+      entry.val = val;
+      touch(key, entry);
+      return;
+    }
+
+    if (entries.size() >= capacity)
+    {
+      Iterator<Object> eldest = buckets.get(minCount).iterator();
+      entries.remove(eldest.next());
+      eldest.remove();
+    }
+
+    entries.put(key, new Entry(val));
+    bucket(1).add(key);
+    minCount = 1;
+  }
+
+  /**
+   * Get the number of entries in the table.
+   * @return the size of the table.
+   */
+  @Override
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Finds the result remembered for {@code key}, counting the use.
+   * @param key the argument of the call.
+   * @return the result or null if none is remembered.
+   */
+  @Override
+  protected Object find(Object key)
+  {
+    Entry entry = entries.get(key);
+
+    if (entry == null)
+      return null;
+    touch(key, entry);
+    return entry.val;
+  }
+
+  /**
+   * Counts a use of an entry, moving its key to the next bucket.
+   * @param key the key of the entry.
+   * @param entry the entry.
+   */
+  private void touch(Object key, Entry entry)
+  {
+    LinkedHashSet<Object> old = buckets.get(entry.count);
+
+    old.remove(key);
+    if (old.isEmpty())
+    {
+      buckets.remove(entry.count);
+      if (minCount == entry.count)
+        minCount++;
+    }
+    entry.count++;
+    bucket(entry.count).add(key);
+  }
+
+  /**
+   * Get the bucket of keys used {@code count} times, creating it if
+   * needed.
+   * @param count the use count.
+   * @return the bucket.
+   */
+  private LinkedHashSet<Object> bucket(int count)
+  {
+    return buckets.computeIfAbsent(count, c -> new LinkedHashSet<>());
+  }
+
+  /**
+   * A remembered result and the number of times it was used.
+   */
+  private static class Entry
+  {
+    private Object val;
+    private int count = 1;
+
+    /**
+     * Constructs a new entry used once.
+     * @param val the result.
+     */
+    Entry(Object val)
+    {
+      this.val = val;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package environment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memo table evicting the entry looked up least recently. The entries
+ * are kept in access order so the eldest entry is the one to evict.
+ * @author Zach Kissel
+ */
+final class LruMemoTable extends MemoTable
+{
+  private final LinkedHashMap<Object, Object> entries;
+
+  /**
+   * Constructs an empty table.
+   * @param capacity the most entries the table holds.
+   */
+  LruMemoTable(int capacity)
+  {
+    super(capacity);
+    entries = new LinkedHashMap<Object, Object>(16, 0.75f, true)
+    {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest)
+      {
+        return size() > LruMemoTable.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Remembers the result {@code val} of the call with argument
+   * {@code key}, evicting an entry if the table is full.
+   * @param key the argument of the call.
+   * @param val the result of the call.
+   */
+  @Override
+  public synchronized void put(Object key, Object val)
+  {
+    entries.put(key, val);
+  }
+
+  /**
+   * Get the number of entries in the table.
+   * @return the size of the table.
+   */
+  @Override
+  public synchronized int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * Finds the result remembered for {@code key}, making it the most
+   * recently used entry.
+   * @param key the argument of the call.
+   * @return the result or null if none is remembered.
+   */
+  @Override
+  protected Object find(Object key)
+  {
+    return entries.get(key);
+  }
+}
@@ -0,0 +1,118 @@
+package environment;
+
+/**
+ * A bounded table remembering the results of calls to a pure function,
+ * keyed by the argument of the call. Once the table is full an entry is
+ * evicted to make room, either the least recently used or the least
+ * frequently used one. The table counts how many lookups found a result.
+ * A table may be used by several evaluations at once, so its methods
+ * lock the table.
+ * @author Zach Kissel
+ */
+public abstract class MemoTable
+{
+  /**
+   * The ways an entry may be chosen for eviction.
+   */
+  public enum Policy
+  {
+    /** Evict the entry looked up least recently. */
+    LRU,
+    /** Evict the entry looked up least often. */
+    LFU
+  }
+
+  protected final int capacity;   // The most entries the table holds.
+  private long hits;              // Lookups that found a result.
+  private long misses;            // Lookups that did not.
+
+  /**
+   * Constructs an empty table.
+   * @param capacity the most entries the table holds.
+   */
+  protected MemoTable(int capacity)
+  {
+    if (capacity < 1)
+      throw new IllegalArgumentException("capacity must be positive");
+    this.capacity = capacity;
+  }
+
+  /**
+   * Builds an empty table.
+   * @param capacity the most entries the table holds.
+   * @param policy how entries are chosen for eviction.
+   * @return the table.
+   */
+  public static MemoTable create(int capacity, Policy policy)
+  {
+    if (policy == Policy.LFU)
+      return new LfuMemoTable(capacity);
+    return new LruMemoTable(capacity);
+  }
+
+  /**
+   * Get the result remembered for {@code key}.
+   * @param key the argument of the call.
+   * @return the result or null if none is remembered.
+   */
+  public synchronized Object get(Object key)
+  {
+    Object val = find(key);
+
+    if (val == null)
+      misses++;
+    else
+      hits++;
+    return val;
+  }
+
+  /**
+   * Remembers the result {@code val} of the call with argument
+   * {@code key}, evicting an entry if the table is full.
+   * @param key the argument of the call.
+   * @param val the result of the call.
+   */
+  public abstract void put(Object key, Object val);
+
+  /**
+   * Get the number of entries in the table.
+   * @return the size of the table.
+   */
+  public abstract int size();
+
+  /**
+   * Get the number of lookups that found a result.
+   * @return the hit count.
+   */
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+
+  /**
+   * Get the number of lookups that did not find a result.
+   * @return the miss count.
+   */
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+
+  /**
+   * Provides a string giving the hit and miss counts.
+   * @return the counters as a string.
+   */
+  @Override
+  public synchronized String toString()
+  {
+    return hits + " hits, " + misses + " misses";
+  }
+
+  /**
+   * Finds the result remembered for {@code key}, noting the use for the
+   * eviction policy.
+   * @param key the argument of the call.
+   * @return the result or null if none is remembered.
+   */
+  protected abstract Object find(Object key);
+}
@@ -0,0 +1,145 @@
+package jvm;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of bytes written in the big endian order of the class
+ * file format.
+ * @author Zach Kissel
+ */
+final class ByteVector
+{
+  private byte[] data = new byte[64];
+  private int length;
+
+  /**
+   * Appends a byte.
+   * @param b the byte, only the low eight bits are used.
+   * @return this vector.
+   */
+  ByteVector putByte(int b)
+  {
+    ensure(1);
+    data[length++] = (byte) b;
+    return this;
+  }
+
+  /**
+   * Appends a two byte value.
+   * @param s the value, only the low sixteen bits are used.
+   * @return this vector.
+   */
+  ByteVector putShort(int s)
+  {
+    return putByte(s >>> 8).putByte(s);
+  }
+
+  /**
+   * Appends a four byte value.
+   * @param i the value.
+   * @return this vector.
+   */
+  ByteVector putInt(int i)
+  {
+    return putShort(i >>> 16).putShort(i);
+  }
+
+  /**
+   * Appends an eight byte value.
+   * @param l the value.
+   * @return this vector.
+   */
+  ByteVector putLong(long l)
+  {
+    return putInt((int) (l >>> 32)).putInt((int) l);
+  }
+
+  /**
+   * Appends the bytes of another vector.
+   * @param other the vector to append.
+   * @return this vector.
+   */
+  ByteVector putBytes(ByteVector other)
+  {
+    ensure(other.length);
+    System.arraycopy(other.data, 0, data, length, other.length);
+    length += other.length;
+    return this;
+  }
+
+  /**
+   * Appends a string in the modified UTF8 form of the class file format,
+   * preceded by its length in bytes.
+   * @param s the string.
+   * @return this vector.
+   */
+  ByteVector putUTF8(String s)
+  {
+    ByteVector bytes = new ByteVector();
+
+    for (int i = 0; i < s.length(); i++)
+    {
+      char c = s.charAt(i);
+      if (c >= 0x01 && c <= 0x7f)
+        bytes.putByte(c);
+      else if (c <= 0x7ff)
+        bytes.putByte(0xc0 | (c >> 6)).putByte(0x80 | (c & 0x3f));
+      else
+        bytes.putByte(0xe0 | (c >> 12)).putByte(0x80 | ((c >> 6) & 0x3f))
+          .putByte(0x80 | (c & 0x3f));
+    }
+    if (bytes.length > 0xffff)
+      throw new IllegalArgumentException("string too long");
+    return putShort(bytes.length).putBytes(bytes);
+  }
+
+  /**
+   * Overwrites a two byte value written earlier.
+   * @param pos the position of the value.
+   * @param s the new value.
+   */
+  void setShort(int pos, int s)
+  {
+    data[pos] = (byte) (s >>> 8);
+    data[pos + 1] = (byte) s;
+  }
+
+  /**
+   * Overwrites a four byte value written earlier.
+   * @param pos the position of the value.
+   * @param i the new value.
+   */
+  void setInt(int pos, int i)
+  {
+    setShort(pos, i >>> 16);
+    setShort(pos + 2, i);
+  }
+
+  /**
+   * Get the number of bytes written.
+   * @return the length of the vector.
+   */
+  int length()
+  {
+    return length;
+  }
+
+  /**
+   * Copies the bytes written into a new array.
+   * @return the bytes.
+   */
+  byte[] toByteArray()
+  {
+    return Arrays.copyOf(data, length);
+  }
+
+  /**
+   * Makes room for {@code n} more bytes.
+   * @param n the number of bytes about to be written.
+   */
+  private void ensure(int n)
+  {
+    if (length + n > data.length)
+      data = Arrays.copyOf(data, Math.max(2 * data.length, length + n));
+  }
+}
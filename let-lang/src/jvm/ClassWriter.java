@@ -0,0 +1,206 @@
+package jvm;
+
+import java.util.HashMap;
+
+/**
+ * Writes a class file holding static methods. Only the parts of the class
+ * file format the backend needs are supported: a constant pool of
+ * strings, classes, method references, integers and doubles, and methods
+ * with a code attribute. The class is written as version 49 so that it is
+ * checked by the type inferring verifier and needs no stack map frames.
+ * @author Zach Kissel
+ */
+final class ClassWriter
+{
+  private static final int VERSION = 49;
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_FINAL = 0x0010;
+  private static final int ACC_SUPER = 0x0020;
+
+  private final String name;      // The internal name of the class.
+  private final ByteVector pool = new ByteVector();
+  private final HashMap<String, Integer> poolIndex = new HashMap<>();
+  private int poolCount = 1;      // The next free constant pool index.
+  private final ByteVector methods = new ByteVector();
+  private int methodCount;
+
+  /**
+   * Constructs a writer for an empty class.
+   * @param name the internal name of the class, such as {@code jvm/Foo}.
+   */
+  ClassWriter(String name)
+  {
+    this.name = name;
+  }
+
+  /**
+   * Get the internal name of the class.
+   * @return the class name.
+   */
+  String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Get the constant pool index of a string.
+   * @param s the string.
+   * @return the index of its UTF8 entry.
+   */
+  int utf8(String s)
+  {
+    Integer index = poolIndex.get("U" + s);
+
+    if (index != null)
+      return index;
+    pool.putByte(1).putUTF8(s);
+    return add("U" + s, 1);
+  }
+
+  /**
+   * Get the constant pool index of a class.
+   * @param className the internal name of the class.
+   * @return the index of its class entry.
+   */
+  int classRef(String className)
+  {
+    Integer index = poolIndex.get("C" + className);
+
+    if (index != null)
+      return index;
+    index = utf8(className);
+    pool.putByte(7).putShort(index);
+    return add("C" + className, 1);
+  }
+
+  /**
+   * Get the constant pool index of a static method.
+   * @param owner the internal name of the class declaring the method.
+   * @param method the name of the method.
+   * @param desc the descriptor of the method.
+   * @return the index of its method reference entry.
+   */
+  int methodRef(String owner, String method, String desc)
+  {
+    String key = "M" + owner + "." + method + desc;
+    Integer index = poolIndex.get(key);
+    int ownerIndex;
+    int nameIndex;
+    int descIndex;
+    int nameType;
+
+    if (index != null)
+      return index;
+    ownerIndex = classRef(owner);
+    nameIndex = utf8(method);
+    descIndex = utf8(desc);
+    nameType = poolIndex.getOrDefault("N" + method + desc, 0);
+    if (nameType == 0)
+    {
+      pool.putByte(12).putShort(nameIndex).putShort(descIndex);
+      nameType = add("N" + method + desc, 1);
+    }
+    pool.putByte(10).putShort(ownerIndex).putShort(nameType);
+    return add(key, 1);
+  }
+
+  /**
+   * Get the constant pool index of an integer.
+   * @param val the integer.
+   * @return the index of its integer entry.
+   */
+  int integer(int val)
+  {
+    Integer index = poolIndex.get("I" + val);
+
+    if (index != null)
+      return index;
+    pool.putByte(3).putInt(val);
+    return add("I" + val, 1);
+  }
+
+  /**
+   * Get the constant pool index of a double.
+   * @param val the double.
+   * @return the index of its double entry.
+   */
+  int doubleConst(double val)
+  {
+    long bits = Double.doubleToRawLongBits(val);
+    Integer index = poolIndex.get("D" + bits);
+
+    if (index != null)
+      return index;
+    pool.putByte(6).putLong(bits);
+    return add("D" + bits, 2);
+  }
+
+  /**
+   * Adds a public static method.
+   * @param method the name of the method.
+   * @param desc the descriptor of the method.
+   * @param code the body of the method.
+   */
+  void addMethod(String method, String desc, CodeBuilder code)
+  {
+    ByteVector bytes = code.getCode();
+
+    methods.putShort(ACC_PUBLIC | ACC_STATIC).putShort(utf8(method))
+      .putShort(utf8(desc)).putShort(1);
+    methods.putShort(utf8("Code")).putInt(12 + bytes.length())
+      .putShort(code.getMaxStack()).putShort(code.getMaxLocals())
+      .putInt(bytes.length()).putBytes(bytes)
+      .putShort(0).putShort(0);
+    methodCount++;
+  }
+
+  /**
+   * Get the number of methods added so far.
+   * @return the number of methods.
+   */
+  int methodCount()
+  {
+    return methodCount;
+  }
+
+  /**
+   * Writes the class file.
+   * @return the bytes of the class file.
+   */
+  byte[] toByteArray()
+  {
+    int thisClass = classRef(name);
+    int superClass = classRef("java/lang/Object");
+    ByteVector out = new ByteVector();
+
+    if (poolCount > 0xffff)
+      throw new IllegalStateException("constant pool too large");
+    out.putInt(0xcafebabe).putShort(0).putShort(VERSION);
+    out.putShort(poolCount).putBytes(pool);
+    out.putShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER)
+      .putShort(thisClass).putShort(superClass).putShort(0).putShort(0);
+    out.putShort(methodCount).putBytes(methods);
+    out.putShort(0);
+    return out.toByteArray();
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Records the index of an entry just written to the pool.
+   * @param key the key of the entry.
+   * @param slots the number of pool slots the entry takes.
+   * @return the index of the entry.
+   */
+  private int add(String key, int slots)
+  {
+    int index = poolCount;
+
+    poolIndex.put(key, index);
+    poolCount += slots;
+    return index;
+  }
+}
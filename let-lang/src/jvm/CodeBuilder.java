@@ -0,0 +1,363 @@
+package jvm;
+
+import analysis.Type;
+import compiler.CompileException;
+import java.util.ArrayList;
+
+/**
+ * Assembles the body of a method. The builder tracks the depth of the
+ * operand stack as instructions are added so that the method's maximum
+ * stack size and number of locals are known once it is done. Branches
+ * name a {@link Label} whose offset is filled in when it is placed.
+ * @author Zach Kissel
+ */
+final class CodeBuilder
+{
+  // The opcodes used by the backend.
+  static final int ICONST_0 = 0x03;
+  static final int ICONST_1 = 0x04;
+  static final int DCONST_0 = 0x0e;
+  static final int DCONST_1 = 0x0f;
+  static final int BIPUSH = 0x10;
+  static final int SIPUSH = 0x11;
+  static final int LDC = 0x12;
+  static final int LDC_W = 0x13;
+  static final int LDC2_W = 0x14;
+  static final int ILOAD = 0x15;
+  static final int DLOAD = 0x18;
+  static final int ISTORE = 0x36;
+  static final int DSTORE = 0x39;
+  static final int POP = 0x57;
+  static final int POP2 = 0x58;
+  static final int DUP = 0x59;
+  static final int IADD = 0x60;
+  static final int DADD = 0x63;
+  static final int ISUB = 0x64;
+  static final int DSUB = 0x67;
+  static final int IMUL = 0x68;
+  static final int DMUL = 0x6b;
+  static final int IDIV = 0x6c;
+  static final int DDIV = 0x6f;
+  static final int IAND = 0x7e;
+  static final int IOR = 0x80;
+  static final int DCMPL = 0x97;
+  static final int DCMPG = 0x98;
+  static final int IFEQ = 0x99;
+  static final int IFNE = 0x9a;
+  static final int IFLT = 0x9b;
+  static final int IFGE = 0x9c;
+  static final int IFGT = 0x9d;
+  static final int IFLE = 0x9e;
+  static final int IF_ICMPEQ = 0x9f;
+  static final int IF_ICMPNE = 0xa0;
+  static final int IF_ICMPLT = 0xa1;
+  static final int IF_ICMPGE = 0xa2;
+  static final int IF_ICMPGT = 0xa3;
+  static final int IF_ICMPLE = 0xa4;
+  static final int GOTO = 0xa7;
+  static final int LOOKUPSWITCH = 0xab;
+  static final int IRETURN = 0xac;
+  static final int DRETURN = 0xaf;
+  static final int ARETURN = 0xb0;
+  static final int INVOKESTATIC = 0xb8;
+
+  private final ClassWriter cw;   // The class the method belongs to.
+  private final ByteVector code = new ByteVector();
+  private int stack;              // The stack depth or -1 if unreachable.
+  private int maxStack;
+  private int maxLocals;
+
+  /**
+   * Constructs a builder for an empty method body.
+   * @param cw the class the method belongs to.
+   * @param params the number of local slots the parameters take.
+   */
+  CodeBuilder(ClassWriter cw, int params)
+  {
+    this.cw = cw;
+    this.maxLocals = params;
+  }
+
+  /**
+   * Adds an instruction without operands.
+   * @param opcode the opcode.
+   * @param delta the change in stack depth.
+   */
+  void op(int opcode, int delta)
+  {
+    code.putByte(opcode);
+    adjust(delta);
+    if (opcode >= IRETURN && opcode <= ARETURN)
+      stack = -1;
+  }
+
+  /**
+   * Pushes an integer constant.
+   * @param val the value.
+   */
+  void intConst(int val)
+  {
+    if (val >= -1 && val <= 5)
+      code.putByte(ICONST_0 + val);
+    else if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE)
+      code.putByte(BIPUSH).putByte(val);
+    else if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE)
+      code.putByte(SIPUSH).putShort(val);
+    else
+    {
+      int index = cw.integer(val);
+      if (index <= 0xff)
+        code.putByte(LDC).putByte(index);
+      else
+        code.putByte(LDC_W).putShort(index);
+    }
+    adjust(1);
+  }
+
+  /**
+   * Pushes a double constant.
+   * @param val the value.
+   */
+  void doubleConst(double val)
+  {
+    if (Double.doubleToRawLongBits(val) == 0L)
+      code.putByte(DCONST_0);
+    else if (val == 1.0)
+      code.putByte(DCONST_1);
+    else
+      code.putByte(LDC2_W).putShort(cw.doubleConst(val));
+    adjust(2);
+  }
+
+  /**
+   * Pushes a local variable.
+   * @param type the type of the variable.
+   * @param local the local slot.
+   */
+  void load(Type type, int local)
+  {
+    int size = Descriptors.size(type);
+
+    local(Descriptors.isReal(type) ? DLOAD : ILOAD, local, size);
+    adjust(size);
+  }
+
+  /**
+   * Pops the top of the stack into a local variable.
+   * @param type the type of the variable.
+   * @param local the local slot.
+   */
+  void store(Type type, int local)
+  {
+    int size = Descriptors.size(type);
+
+    local(Descriptors.isReal(type) ? DSTORE : ISTORE, local, size);
+    adjust(-size);
+  }
+
+  /**
+   * Adds a branch to {@code target}. A branch in unreachable code, such as
+   * the jump out of a case ending in a tail call, says nothing of the
+   * stack depth at its target.
+   * @param opcode the branch opcode.
+   * @param target the label branched to.
+   */
+  void jump(int opcode, Label target)
+  {
+    int pos = code.length();
+
+    code.putByte(opcode).putShort(0);
+    if (stack < 0)
+    {
+      target.branch(code, pos, pos + 1, false, -1);
+      return;
+    }
+    if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE)
+      adjust(-2);
+    else if (opcode != GOTO)
+      adjust(-1);
+    target.branch(code, pos, pos + 1, false, stack);
+    if (opcode == GOTO)
+      stack = -1;
+  }
+
+  /**
+   * Adds a lookup switch on the integer at the top of the stack.
+   * @param keys the case values in ascending order.
+   * @param targets the label of each case.
+   * @param dflt the label for values with no case.
+   */
+  void lookupSwitch(int[] keys, Label[] targets, Label dflt)
+  {
+    int pos = code.length();
+
+    code.putByte(LOOKUPSWITCH);
+    while (code.length() % 4 != 0)
+      code.putByte(0);
+    adjust(-1);
+    dflt.branch(code, pos, code.length(), true, stack);
+    code.putInt(0).putInt(keys.length);
+    for (int i = 0; i < keys.length; i++)
+    {
+      code.putInt(keys[i]);
+      targets[i].branch(code, pos, code.length(), true, stack);
+      code.putInt(0);
+    }
+    stack = -1;
+  }
+
+  /**
+   * Calls a static method.
+   * @param owner the internal name of the class declaring the method.
+   * @param method the name of the method.
+   * @param desc the descriptor of the method.
+   * @param delta the change in stack depth.
+   */
+  void invokeStatic(String owner, String method, String desc, int delta)
+  {
+    code.putByte(INVOKESTATIC).putShort(cw.methodRef(owner, method, desc));
+    adjust(delta);
+  }
+
+  /**
+   * Places a label at the current position.
+   * @param label the label.
+   */
+  void mark(Label label)
+  {
+    label.place(code, code.length());
+    if (stack < 0)
+      stack = label.stack;
+    else
+      label.stack = stack;
+  }
+
+  /**
+   * Get the bytes of the method body.
+   * @return the code.
+   * @throws CompileException if the method is too large.
+   */
+  ByteVector getCode()
+  {
+    if (code.length() > 0xffff)
+      throw new CompileException("method too large");
+    return code;
+  }
+
+  /**
+   * Get the deepest the operand stack gets.
+   * @return the maximum stack size.
+   */
+  int getMaxStack()
+  {
+    return maxStack;
+  }
+
+  /**
+   * Get the number of local slots the method uses.
+   * @return the maximum number of locals.
+   */
+  int getMaxLocals()
+  {
+    return maxLocals;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Adds a load or store of a local variable.
+   * @param opcode the opcode.
+   * @param local the local slot.
+   * @param size the number of slots the variable takes.
+   */
+  private void local(int opcode, int local, int size)
+  {
+    if (local > 0xff)
+      throw new CompileException("too many local variables");
+    code.putByte(opcode).putByte(local);
+    maxLocals = Math.max(maxLocals, local + size);
+  }
+
+  /**
+   * Changes the tracked stack depth.
+   * @param delta the change in depth.
+   */
+  private void adjust(int delta)
+  {
+    if (stack < 0)
+      stack = 0;
+    stack += delta;
+    maxStack = Math.max(maxStack, stack);
+  }
+
+  /**
+   * A position in the code that branches may target.
+   */
+  static final class Label
+  {
+    private int pos = -1;      // The position once placed.
+    private int stack = -1;    // The stack depth on arrival.
+    private ArrayList<int[]> fixups = new ArrayList<>();
+
+    /**
+     * Records a branch to this label, filling in its offset if the label
+     * is already placed.
+     * @param code the code being built.
+     * @param from the position of the branch instruction.
+     * @param at the position of the offset to fill in.
+     * @param wide true if the offset takes four bytes.
+     * @param depth the stack depth at the branch or -1 if the branch is
+     * unreachable.
+     * @throws CompileException if the depth differs from that of another
+     * branch to the label.
+     */
+    private void branch(ByteVector code, int from, int at, boolean wide,
+      int depth)
+    {
+      int[] fix = { from, at, wide ? 1 : 0 };
+
+      if (depth >= 0)
+      {
+        if (stack >= 0 && depth != stack)
+          throw new CompileException("inconsistent stack depth");
+        stack = depth;
+      }
+      if (pos >= 0)
+        patch(code, fix);
+      else
+        fixups.add(fix);
+    }
+
+    /**
+     * Places the label, filling in the branches made so far.
+     * @param code the code being built.
+     * @param at the position of the label.
+     */
+    private void place(ByteVector code, int at)
+    {
+      pos = at;
+      for (int[] fix : fixups)
+        patch(code, fix);
+      fixups = null;
+    }
+
+    /**
+     * Fills in the offset of a branch.
+     * @param code the code being built.
+     * @param fix the branch.
+     */
+    private void patch(ByteVector code, int[] fix)
+    {
+      int offset = pos - fix[0];
+
+      if (fix[2] == 1)
+        code.setInt(fix[1], offset);
+      else if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE)
+        throw new CompileException("branch too far");
+      else
+        code.setShort(fix[1], offset);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package jvm;
+
+import analysis.Type;
+import compiler.CompileException;
+
+/**
+ * The JVM forms of the types {@link analysis.TypeInference} infers. An
+ * integer is an {@code int}, a real a {@code double} and a Boolean a
+ * {@code boolean}; no other type has a JVM form.
+ * @author Zach Kissel
+ */
+final class Descriptors
+{
+  /**
+   * Prevents construction; the methods are static.
+   */
+  private Descriptors()
+  {
+  }
+
+  /**
+   * Determines if a type has a JVM form.
+   * @param type the type.
+   * @return true if the type is an integer, real or Boolean.
+   */
+  static boolean isPrimitive(Type type)
+  {
+    return type != null && type.valueClass() != null;
+  }
+
+  /**
+   * Determines if a type is the real type.
+   * @param type the type.
+   * @return true if values of the type are doubles.
+   */
+  static boolean isReal(Type type)
+  {
+    return type.valueClass() == Double.class;
+  }
+
+  /**
+   * Get the JVM descriptor of a type.
+   * @param type the type.
+   * @return the descriptor.
+   * @throws CompileException if the type has no JVM form.
+   */
+  static String descriptor(Type type)
+  {
+    if (!isPrimitive(type))
+      throw new CompileException("type can not be determined");
+    if (type.valueClass() == Integer.class)
+      return "I";
+    return isReal(type) ? "D" : "Z";
+  }
+
+  /**
+   * Get the internal name of the class values of a type box to.
+   * @param type the type.
+   * @return the box class.
+   * @throws CompileException if the type has no JVM form.
+   */
+  static String boxClass(Type type)
+  {
+    descriptor(type);
+    return type.valueClass().getName().replace('.', '/');
+  }
+
+  /**
+   * Get the number of stack or local slots a value of a type takes.
+   * @param type the type.
+   * @return the size of the type.
+   */
+  static int size(Type type)
+  {
+    return isReal(type) ? 2 : 1;
+  }
+}
@@ -0,0 +1,598 @@
+package jvm;
+
+import ast.SyntaxTree;
+import ast.nodes.*;
+import compiler.CompileException;
+import lexer.Token;
+import lexer.TokenType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Compiles a syntax tree to a tree of method handles. Each expression
+ * becomes a handle from the frame it runs in, an {@code Object[]}, to its
+ * value: a literal is a constant handle, an operator filters the handles
+ * of its operands into the operator of the interpreter and an if is a
+ * {@code guardWithTest}. A named function is called through a
+ * {@link MutableCallSite} whose target is the handle of its body, so
+ * functions may call each other before their bodies are built. The JIT
+ * sees the handles as constants and can compile a whole expression tree
+ * as one piece of code.
+ * <p>
+ * Values stay boxed and every operator is the interpreter's own, so the
+ * handles behave exactly as the walked tree does. Lists, sets, closures
+ * and functions used as values are not compiled; a program using them
+ * is rejected with a {@link CompileException} so that it can be walked.
+ * @author Zach Kissel
+ */
+public class HandleCompiler
+{
+  private static final int PROGRAM_DEPTH = 1;  // Depth of the functions.
+
+  // The type of the handle of an expression and of a function.
+  private static final MethodType EXPR =
+    MethodType.methodType(Object.class, Object[].class);
+  private static final MethodType FUNCTION =
+    MethodType.methodType(Object.class, Object.class);
+
+  // The operations the handles are built from.
+  private static final MethodHandle BIN_APPLY = find(BinOpNode.class,
+    "apply", Object.class, TokenType.class, Object.class, Object.class);
+  private static final MethodHandle SHORT_CIRCUIT = find(BinOpNode.class,
+    "shortCircuit", Object.class, TokenType.class, Object.class);
+  private static final MethodHandle REL_APPLY = find(RelOpNode.class,
+    "apply", Object.class, TokenType.class, Object.class, Object.class);
+  private static final MethodHandle UNARY_APPLY = find(UnaryOpNode.class,
+    "apply", Object.class, TokenType.class, Object.class);
+  private static final MethodHandle DECIDES = find(HandleCompiler.class,
+    "decides", boolean.class, TokenType.class, Object.class);
+  private static final MethodHandle IS_TRUE = find(HandleCompiler.class,
+    "isTrue", boolean.class, Object.class);
+  private static final MethodHandle IS_BOOLEAN = find(HandleCompiler.class,
+    "isBoolean", boolean.class, Object.class);
+  private static final MethodHandle IS_INT = find(HandleCompiler.class,
+    "isInt", boolean.class, Object.class);
+  private static final MethodHandle IS_LABEL = find(HandleCompiler.class,
+    "isLabel", boolean.class, int.class, Object.class);
+  private static final MethodHandle ERROR = find(HandleCompiler.class,
+    "error", Object.class, String.class);
+  private static final MethodHandle DEFINED = find(HandleCompiler.class,
+    "defined", Object.class, String.class, Object.class);
+  private static final MethodHandle BIND = find(HandleCompiler.class,
+    "bind", void.class, Token.class, int.class, Object.class, Object[].class);
+  private static final MethodHandle FRAME = find(HandleCompiler.class,
+    "frame", Object[].class, int.class, int.class, Object.class);
+  private static final MethodHandle CALL = find(HandleCompiler.class,
+    "call", Object.class, MutableCallSite.class, Object.class);
+  private static final MethodHandle GET =
+    MethodHandles.arrayElementGetter(Object[].class);
+  private static final MethodHandle SET =
+    MethodHandles.arrayElementSetter(Object[].class);
+
+  // The programs compiled so far, forgotten along with their trees.
+  private static final Map<SyntaxTree, HandleProgram> cache =
+    new WeakHashMap<>();
+
+  private IdentityHashMap<FunNode, MutableCallSite> sites;
+  private Set<FunNode> building;   // The functions whose bodies are open.
+  private Map<Integer, FunNode> functions;  // The functions by slot.
+
+  /**
+   * Get the compiled form of the syntax tree {@code tree}, compiling it
+   * the first time it is asked for.
+   * @param tree the resolved tree to compile.
+   * @return the compiled program.
+   * @throws CompileException if the tree can not be compiled.
+   */
+  public static HandleProgram cached(SyntaxTree tree)
+  {
+    HandleProgram prog;
+
+    synchronized (cache)
+    {
+      prog = cache.get(tree);
+    }
+    if (prog != null)
+      return prog;
+
+    prog = new HandleCompiler().compile(tree);
+    synchronized (cache)
+    {
+      cache.putIfAbsent(tree, prog);
+      return cache.get(tree);
+    }
+  }
+
+  /**
+   * Compiles the syntax tree {@code tree}.
+   * @param tree the resolved tree to compile.
+   * @return the compiled program.
+   * @throws CompileException if the tree can not be compiled.
+   */
+  public HandleProgram compile(SyntaxTree tree)
+  {
+    ProgNode prog;
+    ArrayList<MethodHandle> exprs = new ArrayList<>();
+    boolean seenExpr = false;
+
+    if (!(tree.getRootNode() instanceof ProgNode))
+      throw new CompileException("a program is expected");
+    prog = (ProgNode) tree.getRootNode();
+
+    sites = new IdentityHashMap<>();
+    building = Collections.newSetFromMap(new IdentityHashMap<>());
+    functions = new HashMap<>();
+
+    // A function is only bound once its definition is reached, so the
+    // program must define every function before using any.
+    for (SyntaxNode expr : prog.getExprs())
+    {
+      if (!(expr instanceof FunNode))
+      {
+        seenExpr = true;
+        continue;
+      }
+
+      FunNode fun = (FunNode) expr;
+      if (seenExpr)
+        throw new CompileException("function " + fun.getName().getValue() +
+          " defined after use");
+      if (functions.put(fun.getSlot(), fun) != null)
+        throw new CompileException("function " + fun.getName().getValue() +
+          " defined twice");
+    }
+
+    for (SyntaxNode expr : prog.getExprs())
+      if (!(expr instanceof FunNode))
+        exprs.add(compile(expr));
+    MutableCallSite.syncAll(
+      sites.values().toArray(new MutableCallSite[sites.size()]));
+    return new HandleProgram(exprs, prog.getFrameSize());
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Compiles an expression.
+   * @param node the root of the expression.
+   * @return a handle from the frame to the value of the expression.
+   * @throws CompileException if the expression can not be compiled.
+   */
+  private MethodHandle compile(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+      return compileToken((TokenNode) node);
+    else if (node instanceof BinOpNode)
+    {
+      BinOpNode bin = (BinOpNode) node;
+
+      if (bin.isLazy())
+        return compileLazy(bin);
+      return combine(MethodHandles.insertArguments(BIN_APPLY, 0,
+        bin.getOp()), compile(bin.getLeftTerm()),
+        compile(bin.getRightTerm()));
+    }
+    else if (node instanceof RelOpNode)
+    {
+      RelOpNode rel = (RelOpNode) node;
+
+      return combine(MethodHandles.insertArguments(REL_APPLY, 0,
+        rel.getOp()), compile(rel.getLeftExpr()),
+        compile(rel.getRightExpr()));
+    }
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+
+      return MethodHandles.filterArguments(MethodHandles.insertArguments(
+        UNARY_APPLY, 0, un.getOp()), 0, compile(un.getExpr()));
+    }
+    else if (node instanceof IfNode)
+      return compileIf((IfNode) node);
+    else if (node instanceof LetNode)
+      return compileLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+      return compileApply((ApplyNode) node);
+    else if (node instanceof SwitchNode)
+      return compileSwitch((SwitchNode) node);
+    throw new CompileException(node == null ? "missing expression" :
+      node.getClass().getSimpleName() + " not supported");
+  }
+
+  /**
+   * Compiles a literal or a local variable. Reading a variable with no
+   * value reports it, as the interpreter does.
+   * @param node the token node.
+   * @return a constant handle or one reading the frame.
+   */
+  private MethodHandle compileToken(TokenNode node)
+  {
+    Token tok = node.getToken();
+
+    switch (tok.getType())
+    {
+      case INT:
+      case REAL:
+      case TRUE:
+      case FALSE:
+        return constant(node.evaluate(null));
+      case ID:
+        break;
+      default:
+        throw new CompileException("token " + tok + " not supported");
+    }
+    if (node.getDepth() != 0)
+      throw new CompileException("variable " + tok.getValue() +
+        " is not local");
+    return MethodHandles.filterReturnValue(
+      MethodHandles.insertArguments(GET, 1, node.getIndex()),
+      MethodHandles.insertArguments(DEFINED, 0, tok.getValue()));
+  }
+
+  /**
+   * Compiles a binary operation whose right operand is skipped when the
+   * left one decides the result.
+   * @param node the binary operation.
+   * @return the handle of the operation.
+   */
+  private MethodHandle compileLazy(BinOpNode node)
+  {
+    TokenType op = node.getOp();
+
+    // Both branches take the value of the left operand and the frame.
+    MethodHandle decided = MethodHandles.dropArguments(
+      MethodHandles.insertArguments(SHORT_CIRCUIT, 0, op), 1, Object[].class);
+    MethodHandle applied = MethodHandles.filterArguments(
+      MethodHandles.insertArguments(BIN_APPLY, 0, op), 1,
+      compile(node.getRightTerm()));
+
+    return MethodHandles.foldArguments(MethodHandles.guardWithTest(
+      MethodHandles.insertArguments(DECIDES, 0, op), decided, applied),
+      compile(node.getLeftTerm()));
+  }
+
+  /**
+   * Compiles an if expression. A condition that is not a Boolean is an
+   * error, as it is when the tree is walked.
+   * @param node the if node.
+   * @return the handle of the if.
+   */
+  private MethodHandle compileIf(IfNode node)
+  {
+    MethodHandle thenPart = MethodHandles.dropArguments(
+      compile(node.getTrueBranch()), 0, Object.class);
+    MethodHandle elsePart = MethodHandles.dropArguments(
+      compile(node.getFalseBranch()), 0, Object.class);
+
+    elsePart = MethodHandles.guardWithTest(IS_BOOLEAN, elsePart,
+      failure("Error: condition must evaluate to a Boolean.",
+        elsePart.type()));
+    return MethodHandles.foldArguments(
+      MethodHandles.guardWithTest(IS_TRUE, thenPart, elsePart),
+      compile(node.getCond()));
+  }
+
+  /**
+   * Compiles a let expression. The bindings are made in order before the
+   * body runs.
+   * @param node the let node.
+   * @return the handle of the let.
+   */
+  private MethodHandle compileLet(LetNode node)
+  {
+    ArrayList<Token> vars = new ArrayList<>();
+    ArrayList<SyntaxNode> exprs = new ArrayList<>();
+    int[] slots = node.getSlots();
+    MethodHandle body = compile(node.getExpr());
+
+    if (node.isMultiLet())
+    {
+      vars.addAll(node.getLetMap().keySet());
+      exprs.addAll(node.getLetMap().values());
+    }
+    else
+    {
+      vars.add(node.getVar());
+      exprs.add(node.getVarExpr());
+    }
+
+    // Folding runs the binding before the handle it folds into, so the
+    // last binding is folded in first.
+    for (int i = exprs.size() - 1; i >= 0; i--)
+      body = MethodHandles.foldArguments(body, MethodHandles.foldArguments(
+        MethodHandles.insertArguments(BIND, 0, vars.get(i), slots[i]),
+        compile(exprs.get(i))));
+    return body;
+  }
+
+  /**
+   * Compiles a function application. A named function is called through
+   * its call site; a lambda expression binds its parameter in the frame
+   * of the application.
+   * @param node the apply node.
+   * @return the handle of the application.
+   */
+  private MethodHandle compileApply(ApplyNode node)
+  {
+    SyntaxNode func = node.getFunc();
+    MethodHandle arg = compile(node.getArg());
+    MutableCallSite site;
+    FunNode fun;
+
+    if (func instanceof LambdaNode && !((LambdaNode) func).isClosure())
+    {
+      LambdaNode lexp = (LambdaNode) func;
+      MethodHandle store = MethodHandles.permuteArguments(
+        MethodHandles.insertArguments(SET, 1, lexp.getSlot()),
+        MethodType.methodType(void.class, Object.class, Object[].class), 1, 0);
+
+      return MethodHandles.foldArguments(compile(lexp.getExpr()),
+        MethodHandles.foldArguments(store, arg));
+    }
+
+    if (!(func instanceof TokenNode) ||
+        ((TokenNode) func).getDepth() != PROGRAM_DEPTH ||
+        !functions.containsKey(((TokenNode) func).getIndex()))
+      throw new CompileException("only named functions may be applied");
+    fun = functions.get(((TokenNode) func).getIndex());
+    site = site(fun);
+
+    // A call closing a cycle of recursion looks the target up each time;
+    // letting the JIT inline the target there would unroll the recursion.
+    if (building.contains(fun))
+      return MethodHandles.filterArguments(
+        MethodHandles.insertArguments(CALL, 0, site), 0, arg);
+    return MethodHandles.filterArguments(site.dynamicInvoker(), 0, arg);
+  }
+
+  /**
+   * Compiles a switch on integer labels to a chain of tests. The first
+   * case with a label runs.
+   * @param node the switch node.
+   * @return the handle of the switch.
+   */
+  private MethodHandle compileSwitch(SwitchNode node)
+  {
+    ArrayList<CaseNode> cases = new ArrayList<>(node.getCaseList());
+    MethodHandle chain = MethodHandles.dropArguments(
+      compile(node.getDefaultCase()), 0, Object.class);
+
+    for (int i = cases.size() - 1; i >= 0; i--)
+    {
+      CaseNode c = cases.get(i);
+
+      if (!(c.getTokenNode() instanceof ConstantNode) ||
+          !(((ConstantNode) c.getTokenNode()).getValue() instanceof Integer))
+        throw new CompileException("switch labels must be integers");
+      chain = MethodHandles.guardWithTest(
+        MethodHandles.insertArguments(IS_LABEL, 0,
+          ((ConstantNode) c.getTokenNode()).getValue()),
+        MethodHandles.dropArguments(compile(c.getBranch()), 0, Object.class),
+        chain);
+    }
+
+    chain = MethodHandles.guardWithTest(IS_INT, chain,
+      failure("Error: only ints allowed for switch statements",
+        chain.type()));
+    return MethodHandles.foldArguments(chain, compile(node.getTestCase()));
+  }
+
+  /**
+   * Get the call site of a named function, building the handle of its
+   * body the first time the function is called.
+   * @param fun the function.
+   * @return the call site.
+   */
+  private MutableCallSite site(FunNode fun)
+  {
+    MutableCallSite site = sites.get(fun);
+    LambdaNode lexp = (LambdaNode) fun.getLambdaExpression();
+
+    if (site != null)
+      return site;
+    if (lexp.isClosure())
+      throw new CompileException("function " + fun.getName().getValue() +
+        " is a closure");
+
+    // The site exists before the body is compiled so that a recursive
+    // call finds it.
+    site = new MutableCallSite(FUNCTION);
+    sites.put(fun, site);
+    building.add(fun);
+    site.setTarget(MethodHandles.filterArguments(compile(lexp.getExpr()), 0,
+      MethodHandles.insertArguments(FRAME, 0, lexp.getFrameSize(),
+        lexp.getSlot())));
+    building.remove(fun);
+    return site;
+  }
+
+  /**
+   * Applies an operator to the values of two expressions.
+   * @param op a handle taking the two values.
+   * @param left the handle of the left expression.
+   * @param right the handle of the right expression.
+   * @return a handle from the frame to the value of the operation.
+   */
+  private static MethodHandle combine(MethodHandle op, MethodHandle left,
+    MethodHandle right)
+  {
+    return MethodHandles.permuteArguments(
+      MethodHandles.filterArguments(op, 0, left, right), EXPR, 0, 0);
+  }
+
+  /**
+   * Get a handle of an expression whose value is always {@code value}.
+   * @param value the value.
+   * @return the constant handle.
+   */
+  private static MethodHandle constant(Object value)
+  {
+    return MethodHandles.dropArguments(
+      MethodHandles.constant(Object.class, value), 0, Object[].class);
+  }
+
+  /**
+   * Get a handle that reports an error and has no value.
+   * @param msg the message to report.
+   * @param type the type of the handle.
+   * @return the handle.
+   */
+  private static MethodHandle failure(String msg, MethodType type)
+  {
+    return MethodHandles.dropArguments(
+      MethodHandles.insertArguments(ERROR, 0, msg), 0, type.parameterList());
+  }
+
+  /**
+   * Finds a static method.
+   * @param owner the class declaring the method.
+   * @param name the name of the method.
+   * @param ret the return type.
+   * @param params the parameter types.
+   * @return the handle of the method.
+   */
+  private static MethodHandle find(Class<?> owner, String name, Class<?> ret,
+    Class<?>... params)
+  {
+    try
+    {
+      return MethodHandles.lookup().findStatic(owner, name,
+        MethodType.methodType(ret, params));
+    }
+    catch (ReflectiveOperationException ex)
+    {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /************
+   * The operations the handles call.
+   ***********/
+
+  /**
+   * Determines if the left operand of a lazy operator decides its value.
+   * @param op the operator.
+   * @param lval the value of the left operand.
+   * @return true if the right operand is not needed.
+   */
+  private static boolean decides(TokenType op, Object lval)
+  {
+    return BinOpNode.shortCircuit(op, lval) != null;
+  }
+
+  /**
+   * Determines if a value is true.
+   * @param val the value.
+   * @return true if the value is the Boolean true.
+   */
+  private static boolean isTrue(Object val)
+  {
+    return Boolean.TRUE.equals(val);
+  }
+
+  /**
+   * Determines if a value is a Boolean.
+   * @param val the value.
+   * @return true if the value is a Boolean.
+   */
+  private static boolean isBoolean(Object val)
+  {
+    return val instanceof Boolean;
+  }
+
+  /**
+   * Determines if a value is an integer.
+   * @param val the value.
+   * @return true if the value is an integer.
+   */
+  private static boolean isInt(Object val)
+  {
+    return val instanceof Integer;
+  }
+
+  /**
+   * Determines if the value of a switch matches a case label.
+   * @param label the label.
+   * @param val the integer value of the switch.
+   * @return true if the value is the label.
+   */
+  private static boolean isLabel(int label, Object val)
+  {
+    return (Integer) val == label;
+  }
+
+  /**
+   * Reports an error.
+   * @param msg the message.
+   * @return null, the value of an expression in error.
+   */
+  private static Object error(String msg)
+  {
+    System.out.println(msg);
+    return null;
+  }
+
+  /**
+   * Reports a variable read before it has a value.
+   * @param name the name of the variable.
+   * @param val the value read.
+   * @return the value.
+   */
+  private static Object defined(String name, Object val)
+  {
+    if (val == null)
+      System.out.println("Undefined variable " + name);
+    return val;
+  }
+
+  /**
+   * Binds a let variable, as long as the value may be bound.
+   * @param var the variable.
+   * @param slot the slot of the variable.
+   * @param val the value.
+   * @param frame the frame holding the variable.
+   */
+  private static void bind(Token var, int slot, Object val, Object[] frame)
+  {
+    frame[slot] = LetNode.canBind(var, val) ? val : null;
+  }
+
+  /**
+   * Calls the current target of a call site.
+   * @param site the call site of a function.
+   * @param arg the argument.
+   * @return the value of the call.
+   * @throws Throwable if the function fails.
+   */
+  private static Object call(MutableCallSite site, Object arg)
+    throws Throwable
+  {
+    return (Object) site.getTarget().invokeExact(arg);
+  }
+
+  /**
+   * Makes the frame of a function call.
+   * @param size the number of slots of the frame.
+   * @param slot the slot of the parameter.
+   * @param arg the argument.
+   * @return the frame with the parameter bound.
+   */
+  private static Object[] frame(int size, int slot, Object arg)
+  {
+    Object[] frame = new Object[size];
+
+    frame[slot] = arg;
+    return frame;
+  }
+}
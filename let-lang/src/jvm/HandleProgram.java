@@ -0,0 +1,65 @@
+package jvm;
+
+import compiler.CompileException;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * A program compiled to method handles. The handles hold no state of
+ * their own, so a program may be run any number of times.
+ * @author Zach Kissel
+ */
+public class HandleProgram
+{
+  private final MethodHandle[] exprs;  // The top level expressions.
+  private final int frameSize;         // The slots of an expression frame.
+
+  /**
+   * Constructs a new compiled program.
+   * @param exprs the handles of the top level expressions in order.
+   * @param frameSize the number of slots the frame of a top level
+   * expression needs.
+   */
+  HandleProgram(List<MethodHandle> exprs, int frameSize)
+  {
+    this.exprs = exprs.toArray(new MethodHandle[exprs.size()]);
+    this.frameSize = frameSize;
+  }
+
+  /**
+   * Runs the program.
+   * @return the value of the last top level expression or null if an
+   * expression has no value.
+   * @throws CompileException if the program stopped in a way the handles
+   * can not report the same as the interpreter, such as dividing by zero
+   * or recursing too deeply without tail calls. The program has no
+   * effects, so it may simply be interpreted instead.
+   */
+  public Object run()
+  {
+    Object res = null;
+
+    try
+    {
+      for (MethodHandle expr : exprs)
+      {
+        res = (Object) expr.invokeExact(new Object[frameSize]);
+        if (res == null)
+          return null;
+      }
+      return res;
+    }
+    catch (ArithmeticException | StackOverflowError ex)
+    {
+      throw new CompileException("stopped by " + ex);
+    }
+    catch (RuntimeException | Error ex)
+    {
+      throw ex;
+    }
+    catch (Throwable ex)
+    {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
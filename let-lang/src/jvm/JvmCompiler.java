@@ -0,0 +1,710 @@
+package jvm;
+
+import analysis.Type;
+import analysis.TypeException;
+import analysis.TypeInference;
+import ast.SyntaxTree;
+import ast.nodes.*;
+import compiler.CompileException;
+import jvm.CodeBuilder.Label;
+import lexer.Token;
+import lexer.TokenType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles a syntax tree to JVM bytecode. Every named function becomes a
+ * static method of a class whose integers, reals and booleans are the
+ * primitive {@code int}, {@code double} and {@code boolean}, so the JIT
+ * can compile let code as it would Java. The types are inferred first by
+ * {@link TypeInference}, giving each function a single type: its
+ * parameter type is learned from the arguments it is called with and its
+ * result type from its body. A function calling itself in tail position
+ * loops rather than calls.
+ * <p>
+ * Only programs of numbers and booleans are compiled. Lists, sets,
+ * closures, functions used as values and expressions whose type can not
+ * be determined are rejected with a {@link CompileException} so that the
+ * program can be walked instead.
+ * @author Zach Kissel
+ */
+public class JvmCompiler
+{
+  private static final String CLASS = "jvm/LetProgram";
+  private static final int PROGRAM_DEPTH = 1;  // Depth of the functions.
+
+  private HashMap<Integer, Function> functions;  // The functions by slot.
+  private TypeInference typing;        // The type of each expression.
+  private ClassWriter cw;
+  private CodeBuilder code;            // The method being built.
+  private Function current;            // The function being built or null.
+  private Label top;                   // The start of the current function.
+
+  /**
+   * Compiles the syntax tree {@code tree}.
+   * @param tree the resolved tree to compile.
+   * @return the compiled program.
+   * @throws CompileException if the tree can not be compiled.
+   */
+  public JvmProgram compile(SyntaxTree tree)
+  {
+    ProgNode prog = prepare(tree);
+
+    for (Function fn : functions.values())
+      if (fn.isCompiled())
+        compileFunction(fn);
+    compileMain(prog);
+    return new JvmProgram(cw.toByteArray(), true);
+  }
+
+  /**
+   * Compiles the named functions of the syntax tree {@code tree} that can
+   * be compiled, leaving the rest of the program to be walked. The types
+   * of top level expressions that are not well typed are ignored, so a
+   * compiled function may still be called with an argument of another
+   * type; its handle then throws a {@link ClassCastException}.
+   * @param tree the resolved tree to compile.
+   * @return a handle taking and returning boxed values for each function
+   * compiled.
+   * @throws CompileException if no function can be compiled.
+   */
+  public Map<FunNode, MethodHandle> compileFunctions(SyntaxTree tree)
+  {
+    ProgNode prog = prepare(tree);
+    Map<FunNode, MethodHandle> handles = new IdentityHashMap<>();
+    JvmProgram program;
+
+    // A function that fails to compile is dropped and the rest compiled
+    // again, as some of them may call it.
+    while (!compileAll())
+      cw = new ClassWriter(CLASS);
+    if (cw.methodCount() == 0)
+      throw new CompileException("no function can be compiled");
+
+    program = new JvmProgram(cw.toByteArray(), false);
+    for (Function fn : functions.values())
+      if (fn.isCompiled())
+        handles.put(fn.fun, program.method(fn.method, fn.descriptor())
+          .asType(MethodType.methodType(Object.class, Object.class)));
+    return handles;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Collects the functions of a program and infers the types of the
+   * program. A function or top level expression that is not well typed
+   * is left without types and is not compiled.
+   * @param tree the resolved tree to compile.
+   * @return the program node of the tree.
+   * @throws CompileException if the functions can not be compiled.
+   */
+  private ProgNode prepare(SyntaxTree tree)
+  {
+    ProgNode prog;
+    boolean seenExpr = false;
+
+    if (!(tree.getRootNode() instanceof ProgNode))
+      throw new CompileException("a program is expected");
+    prog = (ProgNode) tree.getRootNode();
+
+    functions = new HashMap<>();
+    typing = new TypeInference(false, true);
+    cw = new ClassWriter(CLASS);
+
+    // A function is only bound once its definition is reached, so the
+    // program must define every function before using any.
+    for (SyntaxNode expr : prog.getExprs())
+    {
+      if (!(expr instanceof FunNode))
+      {
+        seenExpr = true;
+        continue;
+      }
+
+      FunNode fun = (FunNode) expr;
+      if (seenExpr)
+        throw new CompileException("function " + fun.getName().getValue() +
+          " defined after use");
+      if (functions.put(fun.getSlot(), new Function(fun)) != null)
+        throw new CompileException("function " + fun.getName().getValue() +
+          " defined twice");
+    }
+
+    try
+    {
+      Map<FunNode, Type> funTypes = typing.infer(tree);
+
+      for (Function fn : functions.values())
+        fn.type = funTypes.get(fn.fun);
+    }
+    catch (TypeException ex)
+    {
+      throw new CompileException(ex.getMessage());
+    }
+    return prog;
+  }
+
+  /**
+   * Finds the named function an application calls.
+   * @param func the function of the application.
+   * @return the function.
+   * @throws CompileException if the function is not a named function.
+   */
+  private Function callee(SyntaxNode func)
+  {
+    Function fn = null;
+
+    if (func instanceof TokenNode &&
+        ((TokenNode) func).getDepth() == PROGRAM_DEPTH)
+      fn = functions.get(((TokenNode) func).getIndex());
+    if (fn == null)
+      throw new CompileException("only named functions may be applied");
+    return fn;
+  }
+
+  /**
+   * Get the type of an expression that compiles to JVM code.
+   * @param node the root of the expression.
+   * @return the type, an integer, real or Boolean.
+   * @throws CompileException if the expression was not typed or its type
+   * has no JVM form.
+   */
+  private Type type(SyntaxNode node)
+  {
+    Type t = typing.typeOf(node);
+
+    Descriptors.descriptor(t);
+    return t;
+  }
+
+  /**
+   * Compiles every function that can be compiled, stopping at the first
+   * that fails.
+   * @return true if all were compiled; false if one failed and was
+   * marked as not compiled.
+   */
+  private boolean compileAll()
+  {
+    for (Function fn : functions.values())
+      if (fn.isCompiled())
+      {
+        try
+        {
+          compileFunction(fn);
+        }
+        catch (CompileException ex)
+        {
+          fn.failed = true;
+          current = null;
+          return false;
+        }
+      }
+    return true;
+  }
+
+  /**
+   * Compiles a function to a static method.
+   * @param fn the function.
+   */
+  private void compileFunction(Function fn)
+  {
+    if (local(fn.lexp.getSlot()) != 0)
+      throw new CompileException("parameter of " + fn.name + " not first");
+    current = fn;
+    code = new CodeBuilder(cw, Descriptors.size(fn.param()));
+    top = new Label();
+    code.mark(top);
+    gen(fn.lexp.getExpr());
+    code.op(Descriptors.isReal(fn.result()) ? CodeBuilder.DRETURN :
+      CodeBuilder.IRETURN, -Descriptors.size(fn.result()));
+    cw.addMethod(fn.method, fn.descriptor(), code);
+    current = null;
+  }
+
+  /**
+   * Compiles the top level expressions to the method {@code main} which
+   * returns the boxed value of the last one.
+   * @param prog the program.
+   */
+  private void compileMain(ProgNode prog)
+  {
+    Type last = null;
+
+    code = new CodeBuilder(cw, 0);
+    for (SyntaxNode expr : prog.getExprs())
+    {
+      if (expr instanceof FunNode)
+        continue;
+      if (last != null)
+        code.op(Descriptors.size(last) == 2 ? CodeBuilder.POP2 :
+          CodeBuilder.POP, -Descriptors.size(last));
+      gen(expr);
+      last = type(expr);
+    }
+
+    if (last == null)
+      throw new CompileException("the program has no expression");
+    code.invokeStatic(Descriptors.boxClass(last), "valueOf",
+      "(" + Descriptors.descriptor(last) + ")L" +
+      Descriptors.boxClass(last) + ";", 1 - Descriptors.size(last));
+    code.op(CodeBuilder.ARETURN, -1);
+    cw.addMethod("main", "()Ljava/lang/Object;", code);
+  }
+
+  /**
+   * Generates code leaving the value of an expression on the stack.
+   * @param node the root of the expression.
+   */
+  private void gen(SyntaxNode node)
+  {
+    Type t = type(node);
+
+    if (node instanceof TokenNode)
+      genToken((TokenNode) node, t);
+    else if (node instanceof BinOpNode)
+      genBinOp((BinOpNode) node, t);
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      Label other = new Label();
+      Label end = new Label();
+
+      jumpIf(ifNode.getCond(), other, false);
+      gen(ifNode.getTrueBranch());
+      code.jump(CodeBuilder.GOTO, end);
+      code.mark(other);
+      gen(ifNode.getFalseBranch());
+      code.mark(end);
+    }
+    else if (node instanceof LetNode)
+    {
+      LetNode let = (LetNode) node;
+      ArrayList<SyntaxNode> exprs = bindings(let);
+
+      for (int i = 0; i < exprs.size(); i++)
+      {
+        gen(exprs.get(i));
+        code.store(type(exprs.get(i)), local(let.getSlots()[i]));
+      }
+      gen(let.getExpr());
+    }
+    else if (node instanceof ApplyNode)
+      genApply((ApplyNode) node);
+    else if (node instanceof SwitchNode)
+      genSwitch((SwitchNode) node);
+    else if (node instanceof RelOpNode || node instanceof UnaryOpNode)
+      genBoolean(node);
+    else
+      throw new CompileException(node.getClass().getSimpleName() +
+        " not supported");
+  }
+
+  /**
+   * Generates code pushing a literal or a local variable.
+   * @param node the token node.
+   * @param t the type of the token.
+   */
+  private void genToken(TokenNode node, Type t)
+  {
+    Token tok = node.getToken();
+
+    switch (tok.getType())
+    {
+      case INT:
+        code.intConst(node instanceof ConstantNode ?
+          (Integer) ((ConstantNode) node).getValue() :
+          Integer.parseInt(tok.getValue()));
+        break;
+      case REAL:
+        code.doubleConst(node instanceof ConstantNode ?
+          (Double) ((ConstantNode) node).getValue() :
+          Double.parseDouble(tok.getValue()));
+        break;
+      case TRUE:
+        code.intConst(1);
+        break;
+      case FALSE:
+        code.intConst(0);
+        break;
+      default:
+        if (node.getDepth() != 0)
+          throw new CompileException("variable " + tok.getValue() +
+            " is not local");
+        code.load(t, local(node.getIndex()));
+        break;
+    }
+  }
+
+  /**
+   * Generates code for a binary operation. A lazy multiplication whose
+   * left operand is 0 skips its right operand.
+   * @param node the binary operation.
+   * @param t the type of the result.
+   */
+  private void genBinOp(BinOpNode node, Type t)
+  {
+    boolean real = Descriptors.isReal(t);
+    Label right = new Label();
+    Label end = new Label();
+    int opcode;
+
+    switch (node.getOp())
+    {
+      case ADD:
+        opcode = real ? CodeBuilder.DADD : CodeBuilder.IADD;
+        break;
+      case SUB:
+        opcode = real ? CodeBuilder.DSUB : CodeBuilder.ISUB;
+        break;
+      case MULT:
+        opcode = real ? CodeBuilder.DMUL : CodeBuilder.IMUL;
+        break;
+      case DIV:
+        opcode = real ? CodeBuilder.DDIV : CodeBuilder.IDIV;
+        break;
+      default:
+        if (node.isLazy())
+        {
+          genBoolean(node);
+          return;
+        }
+        opcode = node.getOp() == TokenType.AND ? CodeBuilder.IAND :
+          CodeBuilder.IOR;
+        break;
+    }
+
+    gen(node.getLeftTerm());
+    if (node.isLazy() && !real)
+    {
+      code.op(CodeBuilder.DUP, 1);
+      code.jump(CodeBuilder.IFNE, right);
+      code.jump(CodeBuilder.GOTO, end);
+      code.mark(right);
+    }
+    gen(node.getRightTerm());
+    code.op(opcode, -Descriptors.size(t));
+    code.mark(end);
+  }
+
+  /**
+   * Generates code for a function application. A function calling itself
+   * in tail position rebinds its parameter and jumps back to its start.
+   * @param node the apply node.
+   */
+  private void genApply(ApplyNode node)
+  {
+    SyntaxNode func = node.getFunc();
+    Function fn;
+
+    gen(node.getArg());
+    if (func instanceof LambdaNode)
+    {
+      LambdaNode lexp = (LambdaNode) func;
+
+      code.store(type(node.getArg()), local(lexp.getSlot()));
+      gen(lexp.getExpr());
+      return;
+    }
+
+    fn = callee(func);
+    if (!fn.isCompiled())
+      throw new CompileException("function " + fn.name + " not compiled");
+    if (node.isTailCall() && fn == current)
+    {
+      code.store(fn.param(), local(fn.lexp.getSlot()));
+      code.jump(CodeBuilder.GOTO, top);
+      return;
+    }
+    code.invokeStatic(CLASS, fn.method, fn.descriptor(),
+      Descriptors.size(fn.result()) - Descriptors.size(fn.param()));
+  }
+
+  /**
+   * Generates code for a switch. The first case with a label runs.
+   * @param node the switch node.
+   */
+  private void genSwitch(SwitchNode node)
+  {
+    TreeMap<Integer, Label> cases = new TreeMap<>();
+    ArrayList<Label> labels = new ArrayList<>();
+    Label dflt = new Label();
+    Label end = new Label();
+    int[] keys;
+    int i = 0;
+
+    for (CaseNode c : node.getCaseList())
+    {
+      Label label = new Label();
+
+      if (!(c.getTokenNode() instanceof ConstantNode) ||
+          !(((ConstantNode) c.getTokenNode()).getValue() instanceof Integer))
+        throw new CompileException("switch labels must be integers");
+      labels.add(label);
+      cases.putIfAbsent((Integer) ((ConstantNode) c.getTokenNode()).getValue(),
+        label);
+    }
+
+    gen(node.getTestCase());
+    keys = new int[cases.size()];
+    for (Map.Entry<Integer, Label> c : cases.entrySet())
+      keys[i++] = c.getKey();
+    code.lookupSwitch(keys, cases.values().toArray(new Label[0]), dflt);
+
+    i = 0;
+    for (CaseNode c : node.getCaseList())
+    {
+      Label label = labels.get(i++);
+      if (!cases.containsValue(label))
+        continue;
+      code.mark(label);
+      gen(c.getBranch());
+      code.jump(CodeBuilder.GOTO, end);
+    }
+    code.mark(dflt);
+    gen(node.getDefaultCase());
+    code.mark(end);
+  }
+
+  /**
+   * Generates code pushing 1 if a condition holds and 0 if it does not.
+   * @param node the condition.
+   */
+  private void genBoolean(SyntaxNode node)
+  {
+    Label no = new Label();
+    Label end = new Label();
+
+    jumpIf(node, no, false);
+    code.intConst(1);
+    code.jump(CodeBuilder.GOTO, end);
+    code.mark(no);
+    code.intConst(0);
+    code.mark(end);
+  }
+
+  /**
+   * Generates code jumping to {@code target} if a condition has the value
+   * {@code sense} and falling through if it does not.
+   * @param node the condition.
+   * @param target the label to jump to.
+   * @param sense the value of the condition that jumps.
+   */
+  private void jumpIf(SyntaxNode node, Label target, boolean sense)
+  {
+    if (node instanceof RelOpNode)
+      jumpIfRelOp((RelOpNode) node, target, sense);
+    else if (node instanceof UnaryOpNode)
+      jumpIf(((UnaryOpNode) node).getExpr(), target, !sense);
+    else if (node instanceof BinOpNode && ((BinOpNode) node).isLazy() &&
+        (((BinOpNode) node).getOp() == TokenType.AND ||
+         ((BinOpNode) node).getOp() == TokenType.OR))
+    {
+      BinOpNode bin = (BinOpNode) node;
+
+      // Jumping on the value that decides the operator skips the right.
+      boolean decides = bin.getOp() == TokenType.OR;
+      if (sense == decides)
+      {
+        jumpIf(bin.getLeftTerm(), target, sense);
+        jumpIf(bin.getRightTerm(), target, sense);
+      }
+      else
+      {
+        Label skip = new Label();
+        jumpIf(bin.getLeftTerm(), skip, decides);
+        jumpIf(bin.getRightTerm(), target, sense);
+        code.mark(skip);
+      }
+    }
+    else
+    {
+      gen(node);
+      code.jump(sense ? CodeBuilder.IFNE : CodeBuilder.IFEQ, target);
+    }
+  }
+
+  /**
+   * Generates code jumping to {@code target} if a comparison has the
+   * value {@code sense}. Reals compare for equality as {@code equals}
+   * does and an ordering involving NaN is false.
+   * @param node the comparison.
+   * @param target the label to jump to.
+   * @param sense the value of the comparison that jumps.
+   */
+  private void jumpIfRelOp(RelOpNode node, Label target, boolean sense)
+  {
+    TokenType op = node.getOp();
+    boolean real = Descriptors.isReal(type(node.getLeftExpr()));
+    int opcode;
+
+    if (!sense)
+      op = negate(op);
+
+    gen(node.getLeftExpr());
+    gen(node.getRightExpr());
+    if (!real)
+      opcode = CodeBuilder.IF_ICMPEQ;
+    else if (op == TokenType.EQ || op == TokenType.NEQ)
+    {
+      code.invokeStatic("java/lang/Double", "compare", "(DD)I", -3);
+      opcode = CodeBuilder.IFEQ;
+    }
+    else
+    {
+      // A NaN compares so that the ordering asked for fails, or, when the
+      // ordering is negated, so that its negation holds.
+      boolean lessLike = op == TokenType.LT || op == TokenType.LTE;
+      code.op(lessLike == sense ? CodeBuilder.DCMPG : CodeBuilder.DCMPL, -3);
+      opcode = CodeBuilder.IFEQ;
+    }
+
+    switch (op)
+    {
+      case EQ:
+        break;
+      case NEQ:
+        opcode += 1;
+        break;
+      case LT:
+        opcode += 2;
+        break;
+      case GTE:
+        opcode += 3;
+        break;
+      case GT:
+        opcode += 4;
+        break;
+      case LTE:
+        opcode += 5;
+        break;
+      default:
+        throw new CompileException("operator " + op + " not supported");
+    }
+    code.jump(opcode, target);
+  }
+
+  /**
+   * Get the comparison that holds exactly when {@code op} does not.
+   * @param op the comparison.
+   * @return the negated comparison.
+   */
+  private static TokenType negate(TokenType op)
+  {
+    switch (op)
+    {
+      case EQ:
+        return TokenType.NEQ;
+      case NEQ:
+        return TokenType.EQ;
+      case LT:
+        return TokenType.GTE;
+      case GTE:
+        return TokenType.LT;
+      case GT:
+        return TokenType.LTE;
+      case LTE:
+        return TokenType.GT;
+      default:
+        throw new CompileException("operator " + op + " not supported");
+    }
+  }
+
+  /**
+   * Get the expressions of a let in binding order.
+   * @param node the let node.
+   * @return the expression giving the value of each variable.
+   */
+  private static ArrayList<SyntaxNode> bindings(LetNode node)
+  {
+    ArrayList<SyntaxNode> exprs = new ArrayList<>();
+
+    if (node.isMultiLet())
+      exprs.addAll(node.getLetMap().values());
+    else
+      exprs.add(node.getVarExpr());
+    return exprs;
+  }
+
+  /**
+   * Get the JVM local holding a frame slot. Each slot gets two locals so
+   * that it may hold a double.
+   * @param slot the frame slot.
+   * @return the local.
+   */
+  private static int local(int slot)
+  {
+    return 2 * slot;
+  }
+
+  /**
+   * A named function and the method it compiles to.
+   */
+  private static class Function
+  {
+    private final FunNode fun;
+    private final String name;
+    private final String method;
+    private final LambdaNode lexp;
+    private Type type;        // The type of the function or null.
+    private boolean failed;   // True if the body can not be compiled.
+
+    /**
+     * Constructs a new function.
+     * @param fun the function definition.
+     */
+    Function(FunNode fun)
+    {
+      this.fun = fun;
+      name = fun.getName().getValue();
+      method = "let$" + name;
+      lexp = (LambdaNode) fun.getLambdaExpression();
+    }
+
+    /**
+     * Determines if the function is compiled to a method.
+     * @return true if the body compiles and its types are known.
+     */
+    boolean isCompiled()
+    {
+      return !failed && type != null && !lexp.isClosure() &&
+        Descriptors.isPrimitive(param()) &&
+        Descriptors.isPrimitive(result());
+    }
+
+    /**
+     * Get the type of the parameter.
+     * @return the parameter type.
+     */
+    Type param()
+    {
+      return type.parameter();
+    }
+
+    /**
+     * Get the type of the result.
+     * @return the result type.
+     */
+    Type result()
+    {
+      return type.result();
+    }
+
+    /**
+     * Get the descriptor of the method.
+     * @return the method descriptor.
+     */
+    String descriptor()
+    {
+      return "(" + Descriptors.descriptor(param()) + ")" +
+        Descriptors.descriptor(result());
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package jvm;
+
+import compiler.CompileException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * A program compiled to a JVM class. The class is defined as a hidden
+ * class, so it can be unloaded once the program is no longer used, and
+ * is run by calling its {@code main} method.
+ * @author Zach Kissel
+ */
+public class JvmProgram
+{
+  private final MethodHandles.Lookup lookup;  // Access to the class.
+  private final MethodHandle main;   // The top level expressions or null.
+
+  /**
+   * Defines the class of a compiled program.
+   * @param classBytes the class file.
+   * @param hasMain true if the class has a {@code main} method.
+   * @throws CompileException if the class is rejected by the JVM.
+   */
+  JvmProgram(byte[] classBytes, boolean hasMain)
+  {
+    try
+    {
+      lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+    }
+    catch (IllegalAccessException | LinkageError ex)
+    {
+      throw new CompileException("class rejected: " + ex);
+    }
+    main = hasMain ? method("main", "()Ljava/lang/Object;") : null;
+  }
+
+  /**
+   * Get a method of the class.
+   * @param name the name of the method.
+   * @param desc the descriptor of the method.
+   * @return a handle calling the method.
+   * @throws CompileException if the method can not be found.
+   */
+  MethodHandle method(String name, String desc)
+  {
+    try
+    {
+      return lookup.findStatic(lookup.lookupClass(), name,
+        MethodType.fromMethodDescriptorString(desc, null));
+    }
+    catch (IllegalAccessException | NoSuchMethodException | LinkageError ex)
+    {
+      throw new CompileException("class rejected: " + ex);
+    }
+  }
+
+  /**
+   * Runs the program.
+   * @return the value of the last top level expression.
+   * @throws CompileException if the program stopped in a way compiled
+   * code can not report the same as the interpreter, such as dividing
+   * by zero or recursing too deeply without tail calls. The program has
+   * no effects, so it may simply be interpreted instead.
+   */
+  public Object run()
+  {
+    try
+    {
+      return (Object) main.invokeExact();
+    }
+    catch (ArithmeticException | StackOverflowError ex)
+    {
+      throw new CompileException("stopped by " + ex);
+    }
+    catch (RuntimeException | Error ex)
+    {
+      throw ex;
+    }
+    catch (Throwable ex)
+    {
+      throw new IllegalStateException(ex);
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package jvm;
+
+import ast.SyntaxTree;
+import ast.nodes.FunNode;
+import ast.nodes.ProgNode;
+import ast.nodes.SyntaxNode;
+import compiler.CompileException;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Compiles the functions of a walked program once they are called often.
+ * Every named function counts its calls; when one becomes hot the
+ * functions of the program are compiled to JVM bytecode on a background
+ * thread while the interpreter carries on. Once the compiler is done,
+ * each hot function is given its compiled body, so a short program never
+ * pays for compiling and a long one ends up running compiled code. A
+ * function the compiler can not handle stays interpreted.
+ * @author Zach Kissel
+ */
+public class TieredCompiler
+{
+  private final SyntaxTree tree;
+  private final boolean tracing;
+  private final ArrayList<FunNode> hot = new ArrayList<>();
+  private Map<FunNode, MethodHandle> handles;  // Null until compiled.
+  private boolean started;    // True once the compiler thread is started.
+
+  /**
+   * Constructs a new tiered compiler for a program.
+   * @param tree the resolved tree of the program.
+   * @param tracing true if the functions compiled should be reported.
+   */
+  public TieredCompiler(SyntaxTree tree, boolean tracing)
+  {
+    this.tree = tree;
+    this.tracing = tracing;
+  }
+
+  /**
+   * Starts counting the calls of every named function of the program.
+   * @param threshold the number of calls after which a function is
+   * compiled.
+   */
+  public void attach(int threshold)
+  {
+    if (!(tree.getRootNode() instanceof ProgNode))
+      return;
+    for (SyntaxNode expr : ((ProgNode) tree.getRootNode()).getExprs())
+      if (expr instanceof FunNode)
+        ((FunNode) expr).setTiering(threshold, this::hot);
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Handles a function becoming hot. The first hot function starts the
+   * compiler; a function that becomes hot after it has finished gets its
+   * compiled body at once.
+   * @param fun the hot function.
+   */
+  private synchronized void hot(FunNode fun)
+  {
+    hot.add(fun);
+    if (handles != null)
+      install(fun);
+    else if (!started)
+    {
+      Thread thread = new Thread(this::compile, "let-compiler");
+
+      // The program does not wait for a compile it no longer needs.
+      thread.setDaemon(true);
+      thread.start();
+      started = true;
+    }
+  }
+
+  /**
+   * Compiles the functions of the program and installs those that are
+   * hot. Runs on the compiler thread.
+   */
+  private void compile()
+  {
+    Map<FunNode, MethodHandle> compiled;
+
+    try
+    {
+      compiled = new JvmCompiler().compileFunctions(tree);
+    }
+    catch (CompileException ex)
+    {
+      if (tracing)
+        System.out.println("Not compiled: " + ex.getMessage());
+      compiled = Map.of();
+    }
+
+    synchronized (this)
+    {
+      handles = compiled;
+      for (FunNode fun : hot)
+        install(fun);
+    }
+  }
+
+  /**
+   * Gives a function its compiled body if it has one.
+   * @param fun the function.
+   */
+  private void install(FunNode fun)
+  {
+    MethodHandle handle = handles.get(fun);
+
+    if (handle == null)
+      return;
+    fun.setCompiled(handle);
+    if (tracing)
+      System.out.println("Compiled " + fun.getName().getValue() + ".");
+  }
+}
@@ -0,0 +1,569 @@
+package optimizer;
+
+import analysis.Resolver;
+import ast.SyntaxTree;
+import ast.nodes.*;
+import lexer.Token;
+import lexer.TokenType;
+import values.ListValue;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partially evaluates a syntax tree before it is run. Operators applied
+ * to constants, and lazy operators whose left operand is a constant that
+ * decides them, are replaced by their value, conditionals and switches on
+ * a constant keep only the branch that is taken, and variables bound to
+ * constants by a let or by a lambda expression applied in place are
+ * replaced by their value. Only expressions whose evaluation can not
+ * report an error are folded, so the folded program prints exactly what
+ * the original would have.
+ * @author Zach Kissel
+ */
+public class ConstantFolder
+{
+  // The variables in scope bound to constants; a variable bound to
+  // anything else is absent.
+  private HashMap<String, ConstantNode> bound = new HashMap<>();
+
+  /**
+   * Folds the tree {@code tree} and resolves the folded tree again.
+   * @param tree the tree to fold.
+   * @return the number of nodes removed from the tree.
+   */
+  public int fold(SyntaxTree tree)
+  {
+    SyntaxNode root = tree.getRootNode();
+    int before = size(root);
+
+    root = fold(root);
+    tree.setRootNode(root);
+    new Resolver().resolve(tree);
+    return before - size(root);
+  }
+
+  /**
+   * Counts the nodes of the tree rooted at {@code node}.
+   * @param node the root of the tree.
+   * @return the number of nodes.
+   */
+  public static int size(SyntaxNode node)
+  {
+    int n = 1;
+
+    if (node == null)
+      return 0;
+    if (node instanceof ProgNode)
+    {
+      for (SyntaxNode expr : ((ProgNode) node).getExprs())
+        n += size(expr);
+    }
+    else if (node instanceof FunNode)
+      n += size(((FunNode) node).getLambdaExpression());
+    else if (node instanceof LambdaNode)
+    {
+      LambdaNode lexp = (LambdaNode) node;
+      n += lexp.isClosure() ? size(lexp.getClosure()) : size(lexp.getExpr());
+    }
+    else if (node instanceof ClosureNode)
+      n += size(((ClosureNode) node).getLambda());
+    else if (node instanceof BinOpNode)
+      n += size(((BinOpNode) node).getLeftTerm()) +
+        size(((BinOpNode) node).getRightTerm());
+    else if (node instanceof RelOpNode)
+      n += size(((RelOpNode) node).getLeftExpr()) +
+        size(((RelOpNode) node).getRightExpr());
+    else if (node instanceof UnaryOpNode)
+      n += size(((UnaryOpNode) node).getExpr());
+    else if (node instanceof IfNode)
+      n += size(((IfNode) node).getCond()) +
+        size(((IfNode) node).getTrueBranch()) +
+        size(((IfNode) node).getFalseBranch());
+    else if (node instanceof LetNode)
+    {
+      LetNode let = (LetNode) node;
+      if (let.isMultiLet())
+      {
+        for (SyntaxNode expr : let.getLetMap().values())
+          n += size(expr);
+      }
+      else
+        n += size(let.getVarExpr());
+      n += size(let.getExpr());
+    }
+    else if (node instanceof ApplyNode)
+      n += size(((ApplyNode) node).getFunc()) +
+        size(((ApplyNode) node).getArg());
+    else if (node instanceof HeadNode)
+      n += size(((HeadNode) node).getList());
+    else if (node instanceof TailNode)
+      n += size(((TailNode) node).getList());
+    else if (node instanceof ListNode)
+      n += ((ListNode) node).getEntries().size();
+    else if (node instanceof SetNode)
+      n += ((SetNode) node).getSet().size();
+    else if (node instanceof SwitchNode)
+    {
+      SwitchNode sw = (SwitchNode) node;
+      n += size(sw.getTestCase()) + size(sw.getDefaultCase());
+      for (CaseNode c : sw.getCaseList())
+        n += size(c);
+    }
+    else if (node instanceof CaseNode)
+      n += size(((CaseNode) node).getTokenNode()) +
+        size(((CaseNode) node).getBranch());
+    return n;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Folds an expression.
+   * @param node the root of the expression.
+   * @return the folded expression.
+   */
+  private SyntaxNode fold(SyntaxNode node)
+  {
+    if (node instanceof TokenNode)
+      return foldToken((TokenNode) node);
+    else if (node instanceof ProgNode)
+    {
+      LinkedList<SyntaxNode> exprs = new LinkedList<>();
+      for (SyntaxNode expr : ((ProgNode) node).getExprs())
+        exprs.add(fold(expr));
+      return new ProgNode(exprs);
+    }
+    else if (node instanceof FunNode)
+    {
+      FunNode fun = (FunNode) node;
+      return new FunNode(fun.getName(), foldLambda(fun.getLambdaExpression()));
+    }
+    else if (node instanceof LambdaNode)
+      return foldLambda(node);
+    else if (node instanceof BinOpNode)
+      return foldBinOp((BinOpNode) node);
+    else if (node instanceof RelOpNode)
+      return foldRelOp((RelOpNode) node);
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+      SyntaxNode expr = fold(un.getExpr());
+
+      if (un.getOp() == TokenType.NOT && valueOf(expr) instanceof Boolean)
+        return constant(UnaryOpNode.apply(un.getOp(), valueOf(expr)));
+      return new UnaryOpNode(expr, un.getOp());
+    }
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      SyntaxNode cond = fold(ifNode.getCond());
+
+      // Only the branch that is taken survives a constant condition.
+      if (valueOf(cond) instanceof Boolean)
+        return fold((Boolean) valueOf(cond) ? ifNode.getTrueBranch() :
+          ifNode.getFalseBranch());
+      return new IfNode(cond, fold(ifNode.getTrueBranch()),
+        fold(ifNode.getFalseBranch()));
+    }
+    else if (node instanceof LetNode)
+      return foldLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+      return foldApply((ApplyNode) node);
+    else if (node instanceof HeadNode)
+      return foldListOp(node, ((HeadNode) node).getList());
+    else if (node instanceof TailNode)
+      return foldListOp(node, ((TailNode) node).getList());
+    else if (node instanceof ListNode)
+      return foldList((ListNode) node);
+    else if (node instanceof SetNode)
+      return foldSet((SetNode) node);
+    else if (node instanceof SwitchNode)
+      return foldSwitch((SwitchNode) node);
+    return node;
+  }
+
+  /**
+   * Replaces an identifier bound to a constant by the constant.
+   * @param node the token node.
+   * @return the folded token node.
+   */
+  private TokenNode foldToken(TokenNode node)
+  {
+    ConstantNode val;
+
+    if (node.getToken().getType() != TokenType.ID)
+      return node;
+    val = bound.get(node.getToken().getValue());
+    if (val == null)
+      return node;
+    return new ConstantNode(val.getToken(), val.getValue());
+  }
+
+  /**
+   * Folds the body of a lambda expression with its parameters hidden.
+   * @param node the lambda expression.
+   * @return the folded lambda expression.
+   */
+  private SyntaxNode foldLambda(SyntaxNode node)
+  {
+    LambdaNode lexp = (LambdaNode) node;
+    LambdaNode inner;
+    ConstantNode saved;
+    SyntaxNode body;
+
+    if (!lexp.isClosure())
+    {
+      saved = bind(lexp.getVar(), null);
+      body = fold(lexp.getExpr());
+      restore(lexp.getVar(), saved);
+      return new LambdaNode(lexp.getVar(), body);
+    }
+    if (lexp.getClosure() == null)
+      return lexp;
+
+    saved = bind(lexp.getVar(), null);
+    inner = (LambdaNode) foldLambda(lexp.getClosure().getLambda());
+    restore(lexp.getVar(), saved);
+    return new LambdaNode(lexp.getVar(), lexp.getExpr(),
+      new ClosureNode(inner));
+  }
+
+  /**
+   * Folds a binary operation. Only operands of the types an operator is
+   * defined on are folded.
+   * @param node the binary operation.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldBinOp(BinOpNode node)
+  {
+    SyntaxNode left = fold(node.getLeftTerm());
+    SyntaxNode right = fold(node.getRightTerm());
+    Object lval = valueOf(left);
+    Object rval = valueOf(right);
+    TokenType op = node.getOp();
+    boolean foldable = false;
+
+    // A lazy operator decided by its left operand never runs the right.
+    if (node.isLazy() && BinOpNode.shortCircuit(op, lval) != null)
+      return constant(BinOpNode.shortCircuit(op, lval));
+
+    switch (op)
+    {
+      case ADD:
+      case SUB:
+      case MULT:
+        foldable = (lval instanceof Integer && rval instanceof Integer) ||
+          (lval instanceof Double && rval instanceof Double);
+        break;
+      case DIV:
+        foldable = (lval instanceof Integer && rval instanceof Integer &&
+          (Integer) rval != 0) ||
+          (lval instanceof Double && rval instanceof Double);
+        break;
+      case AND:
+      case OR:
+        foldable = lval instanceof Boolean && rval instanceof Boolean;
+        break;
+      case CONCAT:
+        foldable = lval instanceof ListValue && rval instanceof ListValue &&
+          (((ListValue) lval).isEmpty() || ((ListValue) rval).isEmpty() ||
+          ((ListValue) lval).head().getClass() ==
+            ((ListValue) rval).head().getClass());
+        break;
+      case UNION:
+      case INTERSECT:
+        foldable = lval instanceof Set && rval instanceof Set &&
+          !((Set<?>) lval).isEmpty() && !((Set<?>) rval).isEmpty();
+        break;
+      default:
+        break;
+    }
+
+    if (foldable)
+      return constant(BinOpNode.apply(op, lval, rval));
+    return new BinOpNode(left, op, right);
+  }
+
+  /**
+   * Folds a comparison of two numbers of the same type.
+   * @param node the relational operation.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldRelOp(RelOpNode node)
+  {
+    SyntaxNode left = fold(node.getLeftExpr());
+    SyntaxNode right = fold(node.getRightExpr());
+    Object lval = valueOf(left);
+    Object rval = valueOf(right);
+
+    if ((lval instanceof Integer && rval instanceof Integer) ||
+        (lval instanceof Double && rval instanceof Double))
+      return constant(RelOpNode.apply(node.getOp(), lval, rval));
+    return new RelOpNode(left, node.getOp(), right);
+  }
+
+  /**
+   * Folds a let expression. Bindings to constants a let may bind are
+   * substituted into the rest of the let and dropped.
+   * @param node the let expression.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldLet(LetNode node)
+  {
+    LinkedHashMap<Token, SyntaxNode> letMap = new LinkedHashMap<>();
+    LinkedList<Token> vars = new LinkedList<>();
+    LinkedList<ConstantNode> saved = new LinkedList<>();
+    SyntaxNode body;
+
+    if (node.isMultiLet())
+    {
+      for (Map.Entry<Token, SyntaxNode> binding : node.getLetMap().entrySet())
+        foldBinding(binding.getKey(), binding.getValue(), letMap, vars, saved);
+    }
+    else
+      foldBinding(node.getVar(), node.getVarExpr(), letMap, vars, saved);
+
+    body = fold(node.getExpr());
+    while (!vars.isEmpty())
+      restore(vars.removeLast(), saved.removeLast());
+
+    if (letMap.isEmpty())
+      return body;
+    if (!node.isMultiLet())
+      return new LetNode(node.getVar(), letMap.get(node.getVar()), body);
+    return new LetNode(letMap, body);
+  }
+
+  /**
+   * Folds a single binding of a let expression.
+   * @param var the variable being bound.
+   * @param expr the expression giving the value of the variable.
+   * @param letMap the bindings that remain.
+   * @param vars the variables bound so far.
+   * @param saved what each of those variables was bound to before.
+   */
+  private void foldBinding(Token var, SyntaxNode expr,
+    LinkedHashMap<Token, SyntaxNode> letMap, LinkedList<Token> vars,
+    LinkedList<ConstantNode> saved)
+  {
+    SyntaxNode val = fold(expr);
+
+    vars.add(var);
+    if (val instanceof ConstantNode &&
+        LetNode.isBindable(((ConstantNode) val).getValue()))
+      saved.add(bind(var, (ConstantNode) val));
+    else
+    {
+      letMap.put(var, val);
+      saved.add(bind(var, null));
+    }
+  }
+
+  /**
+   * Folds a function application. A lambda expression applied in place to
+   * a constant is replaced by its body with the constant substituted.
+   * @param node the apply node.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldApply(ApplyNode node)
+  {
+    SyntaxNode arg = fold(node.getArg());
+    SyntaxNode func = node.getFunc();
+    LambdaNode lexp;
+    ConstantNode saved;
+    SyntaxNode body;
+
+    if (func instanceof TokenNode)
+      return new ApplyNode(foldToken((TokenNode) func), arg);
+    if (!(func instanceof LambdaNode))
+      return new ApplyNode(fold(func), arg);
+
+    lexp = (LambdaNode) func;
+    if (lexp.isClosure() || !(arg instanceof ConstantNode))
+      return new ApplyNode(foldLambda(lexp), arg);
+
+    saved = bind(lexp.getVar(), (ConstantNode) arg);
+    body = fold(lexp.getExpr());
+    restore(lexp.getVar(), saved);
+    return body;
+  }
+
+  /**
+   * Folds the head or tail of a constant list. Operands that are not list
+   * expressions are left alone since the operation reports them without
+   * evaluating them.
+   * @param node the head or tail node.
+   * @param list the operand of the node.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldListOp(SyntaxNode node, SyntaxNode list)
+  {
+    SyntaxNode folded;
+    Object val;
+
+    if (!HeadNode.isListExpression(list))
+      return node;
+
+    folded = fold(list);
+    val = valueOf(folded);
+    if (node instanceof HeadNode)
+    {
+      if (val instanceof ListValue && !((ListValue) val).isEmpty())
+        return constant(HeadNode.head(val));
+      return new HeadNode(folded);
+    }
+    if (val instanceof ListValue && ((ListValue) val).size() > 1)
+      return constant(TailNode.tail(val));
+    return new TailNode(folded);
+  }
+
+  /**
+   * Folds a list whose entries are numbers of a single type.
+   * @param node the list node.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldList(ListNode node)
+  {
+    LinkedList<TokenNode> entries = new LinkedList<>();
+    Object[] vals = new Object[node.getEntries().size()];
+    boolean foldable = true;
+    int i = 0;
+
+    for (TokenNode entry : node.getEntries())
+    {
+      TokenNode folded = foldToken(entry);
+      entries.add(folded);
+      vals[i] = valueOf(folded);
+      foldable = foldable &&
+        (vals[i] instanceof Integer || vals[i] instanceof Double) &&
+        vals[i].getClass() == vals[0].getClass();
+      i++;
+    }
+
+    if (foldable)
+      return constant(ListNode.makeList(vals));
+    return new ListNode(entries);
+  }
+
+  /**
+   * Folds a set whose elements are all constants.
+   * @param node the set node.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldSet(SetNode node)
+  {
+    HashSet<TokenNode> elems = new HashSet<>();
+    Object[] vals = new Object[node.getSet().size()];
+    boolean foldable = true;
+    int i = 0;
+
+    for (TokenNode elem : node.getSet())
+    {
+      TokenNode folded = foldToken(elem);
+      elems.add(folded);
+      vals[i] = valueOf(folded);
+      foldable = foldable && vals[i] != null;
+      i++;
+    }
+
+    if (foldable)
+      return constant(SetNode.makeSet(vals));
+    return new SetNode(elems);
+  }
+
+  /**
+   * Folds a switch expression. A constant integer switched on over
+   * constant labels keeps only the branch that is taken.
+   * @param node the switch node.
+   * @return the folded expression.
+   */
+  private SyntaxNode foldSwitch(SwitchNode node)
+  {
+    LinkedList<CaseNode> cases = new LinkedList<>();
+    TokenNode test = foldToken(node.getTestCase());
+    boolean constantLabels = true;
+    SyntaxNode taken = null;
+
+    for (CaseNode c : node.getCaseList())
+    {
+      TokenNode label = foldToken(c.getTokenNode());
+      Object val = valueOf(label);
+
+      constantLabels = constantLabels && val instanceof Integer;
+      if (taken == null && val != null && val.equals(valueOf(test)))
+        taken = c.getBranch();
+      cases.add(new CaseNode(label, fold(c.getBranch())));
+    }
+
+    if (valueOf(test) instanceof Integer && constantLabels)
+      return fold(taken != null ? taken : node.getDefaultCase());
+    return new SwitchNode(test, fold(node.getDefaultCase()), cases);
+  }
+
+  /**
+   * Get the value of a constant expression.
+   * @param node the expression.
+   * @return the value or null if the expression is not a constant.
+   */
+  private static Object valueOf(SyntaxNode node)
+  {
+    if (node instanceof ConstantNode)
+      return ((ConstantNode) node).getValue();
+    return null;
+  }
+
+  /**
+   * Builds a constant node for a folded value.
+   * @param val the value.
+   * @return the constant node.
+   */
+  private static ConstantNode constant(Object val)
+  {
+    TokenType type;
+
+    if (val instanceof Integer)
+      type = TokenType.INT;
+    else if (val instanceof Double)
+      type = TokenType.REAL;
+    else if (val instanceof Boolean)
+      type = (Boolean) val ? TokenType.TRUE : TokenType.FALSE;
+    else if (val instanceof ListValue)
+      type = TokenType.LIST;
+    else
+      type = TokenType.SET;
+    return new ConstantNode(new Token(type, String.valueOf(val)), val);
+  }
+
+  /**
+   * Binds {@code var} for the expressions folded next.
+   * @param var the variable.
+   * @param val the constant it is bound to or null if it is not bound to
+   * a constant.
+   * @return what the variable was bound to before.
+   */
+  private ConstantNode bind(Token var, ConstantNode val)
+  {
+    if (val == null)
+      return bound.remove(var.getValue());
+    return bound.put(var.getValue(), val);
+  }
+
+  /**
+   * Restores the binding of {@code var} saved by {@link #bind}.
+   * @param var the variable.
+   * @param saved what the variable was bound to before.
+   */
+  private void restore(Token var, ConstantNode saved)
+  {
+    if (saved == null)
+      bound.remove(var.getValue());
+    else
+      bound.put(var.getValue(), saved);
+  }
+}
@@ -0,0 +1,465 @@
+package optimizer;
+
+import analysis.Resolver;
+import ast.SyntaxTree;
+import ast.nodes.*;
+import lexer.Token;
+import lexer.TokenType;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces calls of small named functions by their bodies. A call
+ * {@code apply f e} of the function {@code fun f x ~ body} becomes the
+ * lambda expression {@code x ~ body} applied in place to {@code e}, so
+ * the argument is still evaluated once and the parameter is bound in the
+ * frame of the caller rather than in a frame of its own. The constant
+ * folder then substitutes constant arguments into the body.
+ * <p>
+ * Only functions whose body is within the size budget are inlined, and
+ * never a function that may call itself, directly or through other
+ * functions, nor a function defined more than once. A call is left alone
+ * if a name the body uses is bound by a let or parameter around the call,
+ * since the body would then see that binding rather than the function
+ * it meant. Nor is a call inlined that may run before the definition of
+ * the function is evaluated: a top level call must come after the
+ * definition, and a call in a function body must call a function
+ * defined before the function holding it.
+ * @author Zach Kissel
+ */
+public class Inliner
+{
+  /** The default size budget, in nodes, of a body that may be inlined. */
+  public static final int DEFAULT_BUDGET = 24;
+
+  // Inlined bodies may themselves contain calls that are inlined; this
+  // bounds how deeply so that the program can not grow without limit.
+  private static final int MAX_DEPTH = 4;
+
+  private int budget;                           // The largest body inlined.
+  private HashMap<String, FunNode> candidates;  // The functions to inline.
+  private HashMap<FunNode, Set<String>> uses;   // The names each body uses.
+  private HashMap<String, Integer> locals;      // The names bound locally.
+  private HashSet<String> defined;              // The functions defined.
+  private int depth;                            // Inlined bodies entered.
+  private int inlined;                          // The calls inlined.
+
+  /**
+   * Constructs an inliner with the default size budget.
+   */
+  public Inliner()
+  {
+    this(DEFAULT_BUDGET);
+  }
+
+  /**
+   * Constructs an inliner.
+   * @param budget the most nodes the body of an inlined function may have.
+   */
+  public Inliner(int budget)
+  {
+    this.budget = budget;
+  }
+
+  /**
+   * Inlines the calls of small functions of the tree {@code tree} and
+   * resolves the rewritten tree again.
+   * @param tree the tree to rewrite.
+   * @return the number of calls inlined.
+   */
+  public int inline(SyntaxTree tree)
+  {
+    SyntaxNode root = tree.getRootNode();
+
+    candidates = new HashMap<>();
+    uses = new HashMap<>();
+    locals = new HashMap<>();
+    defined = new HashSet<>();
+    depth = 0;
+    inlined = 0;
+    if (!(root instanceof ProgNode))
+      return 0;
+
+    findCandidates((ProgNode) root);
+    if (!candidates.isEmpty())
+    {
+      tree.setRootNode(rewrite(root));
+      new Resolver().resolve(tree);
+    }
+    return inlined;
+  }
+
+  /************
+   * Private Methods.
+   ***********/
+
+  /**
+   * Finds the functions of the program that may be inlined.
+   * @param prog the program.
+   */
+  private void findCandidates(ProgNode prog)
+  {
+    HashMap<String, FunNode> functions = new HashMap<>();
+    HashSet<String> redefined = new HashSet<>();
+
+    for (SyntaxNode expr : prog.getExprs())
+      if (expr instanceof FunNode)
+      {
+        FunNode fun = (FunNode) expr;
+        HashSet<String> names = new HashSet<>();
+
+        if (functions.put(fun.getName().getValue(), fun) != null)
+          redefined.add(fun.getName().getValue());
+        // The parameter is bound again by the inlined body.
+        if (collect(fun.getLambdaExpression(), names))
+        {
+          names.remove(((LambdaNode) fun.getLambdaExpression()).getVar()
+            .getValue());
+          uses.put(fun, names);
+        }
+      }
+
+    for (FunNode fun : functions.values())
+    {
+      String name = fun.getName().getValue();
+      LambdaNode lexp = (LambdaNode) fun.getLambdaExpression();
+
+      if (uses.containsKey(fun) && !redefined.contains(name) &&
+          ConstantFolder.size(lexp.getExpr()) <= budget &&
+          !reaches(functions, uses.get(fun), name, new HashSet<>()))
+        candidates.put(name, fun);
+    }
+  }
+
+  /**
+   * Determines if a function body using {@code names} may end up calling
+   * the function {@code target}.
+   * @param functions the functions of the program by name.
+   * @param names the names used by the body.
+   * @param target the name of the function.
+   * @param visited the functions already searched.
+   * @return true if the target may be reached; otherwise, false.
+   */
+  private boolean reaches(Map<String, FunNode> functions, Set<String> names,
+    String target, Set<String> visited)
+  {
+    for (String name : names)
+    {
+      FunNode callee = functions.get(name);
+
+      if (name.equals(target))
+        return true;
+      if (callee == null || !visited.add(name))
+        continue;
+      if (!uses.containsKey(callee) ||
+          reaches(functions, uses.get(callee), target, visited))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Collects the identifiers used in an expression, bound within it or
+   * not.
+   * @param node the root of the expression.
+   * @param names the set the names are added to.
+   * @return true if the expression can be copied; false if it holds a
+   * closure.
+   */
+  private static boolean collect(SyntaxNode node, Set<String> names)
+  {
+    if (node == null)
+      return true;
+    else if (node instanceof TokenNode)
+    {
+      if (((TokenNode) node).getToken().getType() == TokenType.ID)
+        names.add(((TokenNode) node).getToken().getValue());
+      return true;
+    }
+    else if (node instanceof LambdaNode)
+    {
+      LambdaNode lexp = (LambdaNode) node;
+      return !lexp.isClosure() && collect(lexp.getExpr(), names);
+    }
+    else if (node instanceof BinOpNode)
+      return collect(((BinOpNode) node).getLeftTerm(), names) &&
+        collect(((BinOpNode) node).getRightTerm(), names);
+    else if (node instanceof RelOpNode)
+      return collect(((RelOpNode) node).getLeftExpr(), names) &&
+        collect(((RelOpNode) node).getRightExpr(), names);
+    else if (node instanceof UnaryOpNode)
+      return collect(((UnaryOpNode) node).getExpr(), names);
+    else if (node instanceof IfNode)
+      return collect(((IfNode) node).getCond(), names) &&
+        collect(((IfNode) node).getTrueBranch(), names) &&
+        collect(((IfNode) node).getFalseBranch(), names);
+    else if (node instanceof LetNode)
+    {
+      LetNode let = (LetNode) node;
+
+      if (let.isMultiLet())
+      {
+        for (SyntaxNode expr : let.getLetMap().values())
+          if (!collect(expr, names))
+            return false;
+      }
+      else if (!collect(let.getVarExpr(), names))
+        return false;
+      return collect(let.getExpr(), names);
+    }
+    else if (node instanceof ApplyNode)
+      return collect(((ApplyNode) node).getFunc(), names) &&
+        collect(((ApplyNode) node).getArg(), names);
+    else if (node instanceof HeadNode)
+      return collect(((HeadNode) node).getList(), names);
+    else if (node instanceof TailNode)
+      return collect(((TailNode) node).getList(), names);
+    else if (node instanceof ListNode)
+    {
+      for (TokenNode entry : ((ListNode) node).getEntries())
+        collect(entry, names);
+      return true;
+    }
+    else if (node instanceof SetNode)
+    {
+      for (TokenNode elem : ((SetNode) node).getSet())
+        collect(elem, names);
+      return true;
+    }
+    else if (node instanceof SwitchNode)
+    {
+      SwitchNode sw = (SwitchNode) node;
+
+      collect(sw.getTestCase(), names);
+      for (CaseNode c : sw.getCaseList())
+      {
+        collect(c.getTokenNode(), names);
+        if (!collect(c.getBranch(), names))
+          return false;
+      }
+      return collect(sw.getDefaultCase(), names);
+    }
+    return false;
+  }
+
+  /**
+   * Copies an expression, inlining the calls it makes.
+   * @param node the root of the expression.
+   * @return the copy.
+   */
+  private SyntaxNode rewrite(SyntaxNode node)
+  {
+    if (node == null)
+      return null;
+    else if (node instanceof ConstantNode)
+    {
+      ConstantNode c = (ConstantNode) node;
+      return new ConstantNode(c.getToken(), c.getValue());
+    }
+    else if (node instanceof TokenNode)
+      return new TokenNode(((TokenNode) node).getToken());
+    else if (node instanceof ProgNode)
+    {
+      // A function is only defined once the expressions before its
+      // definition have run.
+      LinkedList<SyntaxNode> exprs = new LinkedList<>();
+      for (SyntaxNode expr : ((ProgNode) node).getExprs())
+      {
+        exprs.add(rewrite(expr));
+        if (expr instanceof FunNode)
+          defined.add(((FunNode) expr).getName().getValue());
+      }
+      return new ProgNode(exprs);
+    }
+    else if (node instanceof FunNode)
+    {
+      FunNode fun = (FunNode) node;
+      return new FunNode(fun.getName(), rewrite(fun.getLambdaExpression()));
+    }
+    else if (node instanceof LambdaNode)
+      return rewriteLambda((LambdaNode) node);
+    else if (node instanceof BinOpNode)
+    {
+      BinOpNode bin = (BinOpNode) node;
+      return new BinOpNode(rewrite(bin.getLeftTerm()), bin.getOp(),
+        rewrite(bin.getRightTerm()));
+    }
+    else if (node instanceof RelOpNode)
+    {
+      RelOpNode rel = (RelOpNode) node;
+      return new RelOpNode(rewrite(rel.getLeftExpr()), rel.getOp(),
+        rewrite(rel.getRightExpr()));
+    }
+    else if (node instanceof UnaryOpNode)
+    {
+      UnaryOpNode un = (UnaryOpNode) node;
+      return new UnaryOpNode(rewrite(un.getExpr()), un.getOp());
+    }
+    else if (node instanceof IfNode)
+    {
+      IfNode ifNode = (IfNode) node;
+      return new IfNode(rewrite(ifNode.getCond()),
+        rewrite(ifNode.getTrueBranch()), rewrite(ifNode.getFalseBranch()));
+    }
+    else if (node instanceof LetNode)
+      return rewriteLet((LetNode) node);
+    else if (node instanceof ApplyNode)
+      return rewriteApply((ApplyNode) node);
+    else if (node instanceof HeadNode)
+      return new HeadNode(rewrite(((HeadNode) node).getList()));
+    else if (node instanceof TailNode)
+      return new TailNode(rewrite(((TailNode) node).getList()));
+    else if (node instanceof ListNode)
+    {
+      LinkedList<TokenNode> entries = new LinkedList<>();
+      for (TokenNode entry : ((ListNode) node).getEntries())
+        entries.add((TokenNode) rewrite(entry));
+      return new ListNode(entries);
+    }
+    else if (node instanceof SetNode)
+    {
+      HashSet<TokenNode> elems = new HashSet<>();
+      for (TokenNode elem : ((SetNode) node).getSet())
+        elems.add((TokenNode) rewrite(elem));
+      return new SetNode(elems);
+    }
+    else if (node instanceof SwitchNode)
+    {
+      SwitchNode sw = (SwitchNode) node;
+      LinkedList<CaseNode> cases = new LinkedList<>();
+
+      for (CaseNode c : sw.getCaseList())
+        cases.add(new CaseNode((TokenNode) rewrite(c.getTokenNode()),
+          rewrite(c.getBranch())));
+      return new SwitchNode((TokenNode) rewrite(sw.getTestCase()),
+        rewrite(sw.getDefaultCase()), cases);
+    }
+    return node;
+  }
+
+  /**
+   * Copies a lambda expression with its parameter bound locally.
+   * @param lexp the lambda expression.
+   * @return the copy.
+   */
+  private SyntaxNode rewriteLambda(LambdaNode lexp)
+  {
+    SyntaxNode copy;
+
+    if (lexp.isClosure() && lexp.getClosure() == null)
+      return lexp;
+
+    enter(lexp.getVar());
+    if (!lexp.isClosure())
+      copy = new LambdaNode(lexp.getVar(), rewrite(lexp.getExpr()));
+    else
+      copy = new LambdaNode(lexp.getVar(), lexp.getExpr(),
+        new ClosureNode(rewrite(lexp.getClosure().getLambda())));
+    leave(lexp.getVar());
+    return copy;
+  }
+
+  /**
+   * Copies a let expression. Each binding sees the bindings before it.
+   * @param node the let expression.
+   * @return the copy.
+   */
+  private SyntaxNode rewriteLet(LetNode node)
+  {
+    LinkedHashMap<Token, SyntaxNode> letMap = new LinkedHashMap<>();
+    LinkedList<Token> vars = new LinkedList<>();
+    SyntaxNode copy;
+
+    if (node.isMultiLet())
+    {
+      for (Map.Entry<Token, SyntaxNode> binding : node.getLetMap().entrySet())
+      {
+        letMap.put(binding.getKey(), rewrite(binding.getValue()));
+        enter(binding.getKey());
+        vars.add(binding.getKey());
+      }
+      copy = new LetNode(letMap, rewrite(node.getExpr()));
+    }
+    else
+    {
+      SyntaxNode varExpr = rewrite(node.getVarExpr());
+
+      enter(node.getVar());
+      vars.add(node.getVar());
+      copy = new LetNode(node.getVar(), varExpr, rewrite(node.getExpr()));
+    }
+
+    for (Token var : vars)
+      leave(var);
+    return copy;
+  }
+
+  /**
+   * Copies a function application, inlining the call if the function is
+   * a candidate that is already defined and that the bindings around the
+   * call do not hide.
+   * @param node the apply node.
+   * @return the copy.
+   */
+  private SyntaxNode rewriteApply(ApplyNode node)
+  {
+    SyntaxNode arg = rewrite(node.getArg());
+    SyntaxNode func = node.getFunc();
+    FunNode fun = null;
+    LambdaNode lexp;
+    SyntaxNode body;
+
+    if (func instanceof TokenNode &&
+        !locals.containsKey(((TokenNode) func).getToken().getValue()) &&
+        defined.contains(((TokenNode) func).getToken().getValue()))
+      fun = candidates.get(((TokenNode) func).getToken().getValue());
+
+    if (fun == null || depth >= MAX_DEPTH || hidden(uses.get(fun)))
+      return new ApplyNode(rewrite(func), arg);
+
+    lexp = (LambdaNode) fun.getLambdaExpression();
+    depth++;
+    enter(lexp.getVar());
+    body = rewrite(lexp.getExpr());
+    leave(lexp.getVar());
+    depth--;
+    inlined++;
+    return new ApplyNode(new LambdaNode(lexp.getVar(), body), arg);
+  }
+
+  /**
+   * Determines if any of {@code names} is bound around the current call.
+   * @param names the names a function body uses.
+   * @return true if a name is bound locally; otherwise, false.
+   */
+  private boolean hidden(Set<String> names)
+  {
+    for (String name : names)
+      if (locals.containsKey(name))
+        return true;
+    return false;
+  }
+
+  /**
+   * Notes that {@code var} is bound for the expressions copied next.
+   * @param var the variable.
+   */
+  private void enter(Token var)
+  {
+    locals.merge(var.getValue(), 1, Integer::sum);
+  }
+
+  /**
+   * Notes that a binding of {@code var} has ended.
+   * @param var the variable.
+   */
+  private void leave(Token var)
+  {
+    if (locals.merge(var.getValue(), -1, Integer::sum) == 0)
+      locals.remove(var.getValue());
+  }
+}
@@ -4,12 +4,15 @@ import java.util.LinkedList;
 import lexer.Lexer;
 import lexer.TokenType;
 import lexer.Token;
+import ast.ConstantPool;
 import ast.SyntaxTree;
 import ast.nodes.*;
+import analysis.Resolver;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 
 /**
  * Implements a generic super class for parsing files.
@@ -21,6 +24,7 @@ public class Parser
   private boolean errorFound;   // True if ther was a parser error.
   private boolean doTracing;    // True if we should run parser tracing.
   private Token nextTok;        // The current token being analyzed.
+  private ConstantPool constants; // The literals of the program.
 
   /**
    * Constructs a new parser for the file {@code source} by
@@ -72,11 +76,17 @@ public class Parser
   {
     SyntaxTree ast;
 
+    constants = new ConstantPool();
     nextToken();    // Get the first token.
     ast = new SyntaxTree(evalProg());   // Start processing at the root of the tree.
+    ast.setConstantPool(constants);
 
     if (nextTok.getType() != TokenType.EOF)
       logError("Parse error, unexpected token " + nextTok);
+
+    // Give every variable its address now that all scopes are known.
+    if (!errorFound)
+      new Resolver().resolve(ast);
     return ast;
   }
 
@@ -426,7 +436,7 @@ public class Parser
                         if(nextTok.getType() == TokenType.LPAREN)
                         {
                             nextToken();
-                            TokenNode cCase = new TokenNode(nextTok);//get the case
+                            TokenNode cCase = makeTokenNode(nextTok);//get the case
                             nextToken();
                             if(nextTok.getType() == TokenType.RPAREN)
                             {
@@ -445,7 +455,7 @@ public class Parser
                 {
                     nextToken();
                     SyntaxNode temp = evalExpr(); //defaults only need the expression
-                    sn = new SwitchNode(new TokenNode(initialCase), temp, caseList); //return the new switchNode
+                    sn = new SwitchNode(makeTokenNode(initialCase), temp, caseList); //return the new switchNode
                     return sn;
                 }
             }
@@ -469,7 +479,7 @@ public class Parser
         SyntaxNode varExpr;
         SyntaxNode expr;
         boolean multiLet = false;
-        HashMap<Token, SyntaxNode> letMap = new HashMap<>(); //for mapping variables to their values
+        HashMap<Token, SyntaxNode> letMap = new LinkedHashMap<>(); //for mapping variables to their values in order
 
         trace("enter handleLet");
 
@@ -562,7 +572,7 @@ public class Parser
             if (nextTok.getType() == TokenType.INT ||
                 nextTok.getType() == TokenType.REAL ||
                 nextTok.getType() == TokenType.ID)
-                  entries.add(new TokenNode(nextTok));
+                  entries.add(makeTokenNode(nextTok));
             else {
                 logError("Invalid list element.");
                 return new ListNode(entries);
@@ -574,7 +584,7 @@ public class Parser
               if (nextTok.getType() == TokenType.INT ||
                   nextTok.getType() == TokenType.REAL ||
                   nextTok.getType() == TokenType.ID)
-                    entries.add(new TokenNode(nextTok));
+                    entries.add(makeTokenNode(nextTok));
               else {
                   logError("Invalid list element.");
                   return new ListNode(entries);
@@ -653,7 +663,7 @@ public class Parser
             nextTok.getType() == TokenType.TRUE ||
             nextTok.getType() == TokenType.FALSE)
         {
-            fact = new TokenNode(nextTok);
+            fact = makeTokenNode(nextTok);
             nextToken();
         }
         else if (nextTok.getType() == TokenType.LIST)
@@ -722,7 +732,7 @@ public class Parser
                   if(nextTok.getType() == TokenType.INT || nextTok.getType() == //read first element of set
                           TokenType.REAL || nextTok.getType() == TokenType.ID)
                   {
-                      set.add(new TokenNode(nextTok)); //add it to the set
+                      set.add(makeTokenNode(nextTok)); //add it to the set
                   }
                   else
                   {
@@ -736,7 +746,7 @@ public class Parser
                       if(nextTok.getType() == TokenType.INT || nextTok.getType() ==
                           TokenType.REAL || nextTok.getType() == TokenType.ID)
                       {
-                          set.add(new TokenNode(nextTok)); //add to set
+                          set.add(makeTokenNode(nextTok)); //add to set
                       }
                       else
                       {
@@ -761,6 +771,31 @@ public class Parser
           return s;
       }//end of evalSet
 
+  /**
+   * Builds the node for the token {@code tok}. Literals are decoded once
+   * into the constant pool and become constant nodes.
+   * @param tok the token.
+   * @return a constant node for a literal; otherwise, a token node.
+   */
+  private TokenNode makeTokenNode(Token tok)
+  {
+    Object val;
+
+    try
+    {
+      val = constants.add(tok);
+    }
+    catch (NumberFormatException e)
+    {
+      logError("Invalid number " + tok.getValue() + ".");
+      val = null;
+    }
+
+    if (val != null)
+      return new ConstantNode(tok, val);
+    return new TokenNode(tok);
+  }
+
   /**
    * Logs an error to the console.
    * @param msg the error message to dispaly.
@@ -0,0 +1,149 @@
+package values;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable singly linked list of arbitrary values. Taking the head or
+ * the tail of a list is constant time and never changes the list, so a
+ * list may be shared freely between variables, closures and threads.
+ * Concatenation copies only the cells of the left list and shares the
+ * right list.
+ * @author Zach Kissel
+ */
+public final class ConsList extends ListValue
+{
+  /** The empty list. */
+  public static final ConsList EMPTY = new ConsList(null, null, 0);
+
+  private final Object head;    // The first element.
+  private final ConsList tail;  // The rest of the list.
+  private final int size;       // The number of elements.
+
+  /**
+   * Constructs a new cell.
+   * @param head the first element.
+   * @param tail the rest of the list.
+   * @param size the number of elements in the list.
+   */
+  private ConsList(Object head, ConsList tail, int size)
+  {
+    this.head = head;
+    this.tail = tail;
+    this.size = size;
+  }
+
+  /**
+   * Builds a list holding {@code vals} in order.
+   * @param vals the elements of the list.
+   * @return the list.
+   */
+  public static ConsList of(Object[] vals)
+  {
+    ConsList lst = EMPTY;
+
+    for (int i = vals.length - 1; i >= 0; i--)
+      lst = lst.prepend(vals[i]);
+    return lst;
+  }
+
+  /**
+   * Builds the list whose head is {@code val} and whose tail is this list.
+   * @param val the new first element.
+   * @return the new list.
+   */
+  public ConsList prepend(Object val)
+  {
+    return new ConsList(val, this, size + 1);
+  }
+
+  /**
+   * Get the first element of the list.
+   * @return the first element.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public Object head()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return head;
+  }
+
+  /**
+   * Get the list without its first element.
+   * @return the rest of the list.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public ConsList tail()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return tail;
+  }
+
+  /**
+   * Get the number of elements in the list.
+   * @return the size of the list.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Builds the list holding the elements of this list followed by the
+   * elements of {@code other}. The cells of a cons list {@code other} are
+   * shared.
+   * @param other the list to append.
+   * @return the concatenated list.
+   */
+  @Override
+  public ListValue concat(ListValue other)
+  {
+    Object[] vals;
+    ConsList lst;
+    int i = 0;
+
+    if (!(other instanceof ConsList) || size == 0 || other.isEmpty())
+      return super.concat(other);
+
+    vals = new Object[size];
+    for (Object val : this)
+      vals[i++] = val;
+    lst = (ConsList) other;
+    while (i > 0)
+      lst = lst.prepend(vals[--i]);
+    return lst;
+  }
+
+  /**
+   * Get an iterator over the elements of the list.
+   * @return the iterator.
+   */
+  @Override
+  public Iterator<Object> iterator()
+  {
+    return new Iterator<Object>()
+    {
+      private ConsList curr = ConsList.this;
+
+      @Override
+      public boolean hasNext()
+      {
+        return curr.size > 0;
+      }
+
+      @Override
+      public Object next()
+      {
+        Object val = curr.head();
+
+        curr = curr.tail;
+        return val;
+      }
+    };
+  }
+}
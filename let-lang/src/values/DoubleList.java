@@ -0,0 +1,206 @@
+package values;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list of real numbers stored unboxed in an array. The tail of a
+ * list is a view of the same array starting one element later, so it is
+ * built in constant time without copying.
+ * @author Zach Kissel
+ */
+public final class DoubleList extends ListValue
+{
+  private final double[] elems;  // The backing array, shared between views.
+  private final int offset;   // The position of the first element.
+  private final int size;     // The number of elements.
+
+  /**
+   * Constructs a view of {@code elems}.
+   * @param elems the backing array.
+   * @param offset the position of the first element.
+   * @param size the number of elements.
+   */
+  private DoubleList(double[] elems, int offset, int size)
+  {
+    this.elems = elems;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  /**
+   * Builds a list holding {@code vals} in order.
+   * @param vals the elements of the list, each a {@code Double}.
+   * @return the list.
+   */
+  public static DoubleList of(Object[] vals)
+  {
+    double[] elems = new double[vals.length];
+
+    for (int i = 0; i < vals.length; i++)
+      elems[i] = (Double) vals[i];
+    return new DoubleList(elems, 0, elems.length);
+  }
+
+  /**
+   * Builds a list holding {@code elems} in order. The array is not copied
+   * and must not be changed afterwards.
+   * @param elems the elements of the list.
+   * @return the list.
+   */
+  public static DoubleList wrap(double[] elems)
+  {
+    return new DoubleList(elems, 0, elems.length);
+  }
+
+  /**
+   * Get the first element of the list without boxing it.
+   * @return the first element.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  public double headDouble()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return elems[offset];
+  }
+
+  /**
+   * Get the element at position {@code i}.
+   * @param i the position of the element.
+   * @return the element.
+   * @throws IndexOutOfBoundsException if {@code i} is not a position of
+   * the list.
+   */
+  public double getDouble(int i)
+  {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException(i);
+    return elems[offset + i];
+  }
+
+  /**
+   * Copies the elements of the list into a new array.
+   * @return the elements of the list.
+   */
+  public double[] toDoubleArray()
+  {
+    return Arrays.copyOfRange(elems, offset, offset + size);
+  }
+
+  /**
+   * Get the first element of the list.
+   * @return the first element.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public Object head()
+  {
+    return headDouble();
+  }
+
+  /**
+   * Get the list without its first element.
+   * @return the rest of the list.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public DoubleList tail()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return new DoubleList(elems, offset + 1, size - 1);
+  }
+
+  /**
+   * Get the number of elements in the list.
+   * @return the size of the list.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Builds the list holding the elements of this list followed by the
+   * elements of {@code other}. Two real lists are joined with a single
+   * array copy.
+   * @param other the list to append.
+   * @return the concatenated list.
+   */
+  @Override
+  public ListValue concat(ListValue other)
+  {
+    DoubleList right;
+    double[] joined;
+
+    if (!(other instanceof DoubleList) || size == 0 || other.isEmpty())
+      return super.concat(other);
+
+    right = (DoubleList) other;
+    joined = Arrays.copyOfRange(elems, offset, offset + size + right.size);
+    System.arraycopy(right.elems, right.offset, joined, size, right.size);
+    return new DoubleList(joined, 0, joined.length);
+  }
+
+  /**
+   * Get an iterator over the elements of the list.
+   * @return the iterator.
+   */
+  @Override
+  public Iterator<Object> iterator()
+  {
+    return new Iterator<Object>()
+    {
+      private int i = offset;
+
+      @Override
+      public boolean hasNext()
+      {
+        return i < offset + size;
+      }
+
+      @Override
+      public Object next()
+      {
+        if (i >= offset + size)
+          throw new NoSuchElementException();
+        return elems[i++];
+      }
+    };
+  }
+
+  /**
+   * Determines if {@code obj} is a list with equal elements in the same
+   * order.
+   * @param obj the object to compare to.
+   * @return true if the lists are equal; otherwise, false.
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    DoubleList other;
+
+    if (!(obj instanceof DoubleList))
+      return super.equals(obj);
+    other = (DoubleList) obj;
+    return Arrays.equals(elems, offset, offset + size,
+      other.elems, other.offset, other.offset + other.size);
+  }
+
+  /**
+   * Computes a hash code consistent with {@link #equals(Object)}.
+   * @return the hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    int hash = 1;
+
+    for (int i = offset; i < offset + size; i++)
+      hash = 31 * hash + Double.hashCode(elems[i]);
+    return hash;
+  }
+}
@@ -0,0 +1,222 @@
+package values;
+
+/**
+ * An immutable set of integers drawn from a small range, stored as one bit
+ * per value of the range. Union and intersection of two bitsets combine
+ * whole words at a time.
+ * @author Zach Kissel
+ */
+final class IntBitSet extends IntSet
+{
+  /** The empty set. */
+  static final IntBitSet EMPTY = new IntBitSet(0, new long[0], 0);
+
+  private final int base;     // The value of bit 0, a multiple of 64.
+  private final long[] words; // The bits, lowest values first.
+  private final int size;     // The number of bits set.
+
+  /**
+   * Constructs a new bitset.
+   * @param base the value of bit 0.
+   * @param words the bits.
+   * @param size the number of bits set.
+   */
+  private IntBitSet(int base, long[] words, int size)
+  {
+    this.base = base;
+    this.words = words;
+    this.size = size;
+  }
+
+  /**
+   * Builds the bitset holding the distinct values of {@code vals}.
+   * @param vals the elements, duplicates allowed.
+   * @param min the smallest element.
+   * @param max the largest element.
+   * @return the set.
+   */
+  static IntBitSet build(int[] vals, int min, int max)
+  {
+    int base = base(min);
+    long[] words = new long[(int) words(min, max)];
+    int size = 0;
+
+    for (int val : vals)
+    {
+      long off = (long) val - base;
+      long bit = 1L << off;
+      int w = (int) (off >>> 6);
+
+      if ((words[w] & bit) == 0)
+      {
+        words[w] |= bit;
+        size++;
+      }
+    }
+    return new IntBitSet(base, words, size);
+  }
+
+  /**
+   * Computes the number of words needed for the values {@code min}
+   * through {@code max}.
+   * @param min the smallest value.
+   * @param max the largest value.
+   * @return the number of words.
+   */
+  static long words(int min, int max)
+  {
+    return (((long) max - base(min)) >>> 6) + 1;
+  }
+
+  /**
+   * Computes the value of bit 0 for a set whose smallest value is
+   * {@code min}.
+   * @param min the smallest value.
+   * @return the largest multiple of 64 not above {@code min}.
+   */
+  private static int base(int min)
+  {
+    return Math.floorDiv(min, 64) * 64;
+  }
+
+  /**
+   * Computes the value just past the last bit of the set.
+   * @return the end of the range covered by the words.
+   */
+  private long end()
+  {
+    return (long) base + 64L * words.length;
+  }
+
+  /**
+   * Get the number of elements in the set.
+   * @return the size of the set.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Determines if {@code val} is an element of the set.
+   * @param val the value to look for.
+   * @return true if the value is in the set; otherwise, false.
+   */
+  @Override
+  public boolean containsInt(int val)
+  {
+    long off = (long) val - base;
+
+    return off >= 0 && off < 64L * words.length &&
+      (words[(int) (off >>> 6)] & (1L << off)) != 0;
+  }
+
+  /**
+   * Copies the elements of the set into a new array.
+   * @return the elements in ascending order.
+   */
+  @Override
+  public int[] elements()
+  {
+    int[] vals = new int[size];
+    int n = 0;
+
+    for (int w = 0; w < words.length; w++)
+    {
+      long word = words[w];
+      while (word != 0)
+      {
+        vals[n++] = base + 64 * w + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
+    }
+    return vals;
+  }
+
+  /**
+   * Builds the union of this set and {@code other}. Two bitsets whose
+   * combined range is still small are joined word by word.
+   * @param other the other set.
+   * @return a new set holding the elements of both sets.
+   */
+  @Override
+  public IntSet union(IntSet other)
+  {
+    IntBitSet right;
+    long[] joined;
+    long span;
+    int lo;
+    int count = 0;
+
+    if (size == 0)
+      return other;
+    if (other.isEmpty())
+      return this;
+    if (!(other instanceof IntBitSet))
+      return super.union(other);
+
+    right = (IntBitSet) other;
+    lo = Math.min(base, right.base);
+    span = (Math.max(end(), right.end()) - lo) >>> 6;
+    if (span > (long) size + right.size)
+      return super.union(other);
+
+    joined = new long[(int) span];
+    or(joined, lo);
+    right.or(joined, lo);
+    for (long word : joined)
+      count += Long.bitCount(word);
+    return new IntBitSet(lo, joined, count);
+  }
+
+  /**
+   * Builds the intersection of this set and {@code other}. Two bitsets
+   * are intersected word by word over the range they share.
+   * @param other the other set.
+   * @return a new set holding the elements common to both sets.
+   */
+  @Override
+  public IntSet intersect(IntSet other)
+  {
+    IntBitSet right;
+    long[] common;
+    long hi;
+    int lo;
+    int l;
+    int r;
+    int count = 0;
+
+    if (!(other instanceof IntBitSet))
+      return super.intersect(other);
+
+    right = (IntBitSet) other;
+    lo = Math.max(base, right.base);
+    hi = Math.min(end(), right.end());
+    if (hi <= lo)
+      return EMPTY;
+
+    common = new long[(int) ((hi - lo) >>> 6)];
+    l = (int) (((long) lo - base) >>> 6);
+    r = (int) (((long) lo - right.base) >>> 6);
+    for (int w = 0; w < common.length; w++)
+    {
+      common[w] = words[w + l] & right.words[w + r];
+      count += Long.bitCount(common[w]);
+    }
+    return count == 0 ? EMPTY : new IntBitSet(lo, common, count);
+  }
+
+  /**
+   * Ors the words of this set into {@code dest}.
+   * @param dest the words of a set whose bit 0 is the value {@code lo}.
+   * @param lo a multiple of 64 not above the base of this set.
+   */
+  private void or(long[] dest, int lo)
+  {
+    int shift = (int) (((long) base - lo) >>> 6);
+
+    for (int w = 0; w < words.length; w++)
+      dest[w + shift] |= words[w];
+  }
+}
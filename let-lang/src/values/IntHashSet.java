@@ -0,0 +1,125 @@
+package values;
+
+/**
+ * An immutable set of integers stored in an open addressing hash table
+ * with linear probing. Zero marks a free slot, so whether zero is an
+ * element is kept on the side.
+ * @author Zach Kissel
+ */
+final class IntHashSet extends IntSet
+{
+  private final int[] table;      // The slots, a power of two of them.
+  private final boolean hasZero;  // True if zero is an element.
+  private final int size;         // The number of elements.
+
+  /**
+   * Constructs a new hash set.
+   * @param table the slots.
+   * @param hasZero true if zero is an element.
+   * @param size the number of elements.
+   */
+  private IntHashSet(int[] table, boolean hasZero, int size)
+  {
+    this.table = table;
+    this.hasZero = hasZero;
+    this.size = size;
+  }
+
+  /**
+   * Builds the hash set holding the distinct values of {@code vals}. The
+   * table is kept at most half full.
+   * @param vals the elements, duplicates allowed.
+   * @return the set.
+   */
+  static IntHashSet build(int[] vals)
+  {
+    int[] table = new int[Integer.highestOneBit(Math.max(vals.length, 1)) * 4];
+    int mask = table.length - 1;
+    boolean hasZero = false;
+    int size = 0;
+
+    for (int val : vals)
+    {
+      if (val == 0)
+      {
+        if (!hasZero)
+          size++;
+        hasZero = true;
+        continue;
+      }
+
+      int i = hash(val) & mask;
+      while (table[i] != 0 && table[i] != val)
+        i = (i + 1) & mask;
+      if (table[i] == 0)
+      {
+        table[i] = val;
+        size++;
+      }
+    }
+    return new IntHashSet(table, hasZero, size);
+  }
+
+  /**
+   * Spreads the bits of {@code val} so that runs of values do not cluster.
+   * @param val the value to hash.
+   * @return the hash of the value.
+   */
+  private static int hash(int val)
+  {
+    int h = val * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Get the number of elements in the set.
+   * @return the size of the set.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Determines if {@code val} is an element of the set.
+   * @param val the value to look for.
+   * @return true if the value is in the set; otherwise, false.
+   */
+  @Override
+  public boolean containsInt(int val)
+  {
+    int mask = table.length - 1;
+    int i;
+
+    if (val == 0)
+      return hasZero;
+
+    i = hash(val) & mask;
+    while (table[i] != 0)
+    {
+      if (table[i] == val)
+        return true;
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Copies the elements of the set into a new array.
+   * @return the elements in no particular order.
+   */
+  @Override
+  public int[] elements()
+  {
+    int[] vals = new int[size];
+    int n = 0;
+
+    if (hasZero)
+      vals[n++] = 0;
+    for (int val : table)
+      if (val != 0)
+        vals[n++] = val;
+    return vals;
+  }
+}
@@ -0,0 +1,206 @@
+package values;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable list of integers stored unboxed in an array. The tail of a
+ * list is a view of the same array starting one element later, so it is
+ * built in constant time without copying.
+ * @author Zach Kissel
+ */
+public final class IntList extends ListValue
+{
+  private final int[] elems;  // The backing array, shared between views.
+  private final int offset;   // The position of the first element.
+  private final int size;     // The number of elements.
+
+  /**
+   * Constructs a view of {@code elems}.
+   * @param elems the backing array.
+   * @param offset the position of the first element.
+   * @param size the number of elements.
+   */
+  private IntList(int[] elems, int offset, int size)
+  {
+    this.elems = elems;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  /**
+   * Builds a list holding {@code vals} in order.
+   * @param vals the elements of the list, each an {@code Integer}.
+   * @return the list.
+   */
+  public static IntList of(Object[] vals)
+  {
+    int[] elems = new int[vals.length];
+
+    for (int i = 0; i < vals.length; i++)
+      elems[i] = (Integer) vals[i];
+    return new IntList(elems, 0, elems.length);
+  }
+
+  /**
+   * Builds a list holding {@code elems} in order. The array is not copied
+   * and must not be changed afterwards.
+   * @param elems the elements of the list.
+   * @return the list.
+   */
+  public static IntList wrap(int[] elems)
+  {
+    return new IntList(elems, 0, elems.length);
+  }
+
+  /**
+   * Get the first element of the list without boxing it.
+   * @return the first element.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  public int headInt()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return elems[offset];
+  }
+
+  /**
+   * Get the element at position {@code i}.
+   * @param i the position of the element.
+   * @return the element.
+   * @throws IndexOutOfBoundsException if {@code i} is not a position of
+   * the list.
+   */
+  public int getInt(int i)
+  {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException(i);
+    return elems[offset + i];
+  }
+
+  /**
+   * Copies the elements of the list into a new array.
+   * @return the elements of the list.
+   */
+  public int[] toIntArray()
+  {
+    return Arrays.copyOfRange(elems, offset, offset + size);
+  }
+
+  /**
+   * Get the first element of the list.
+   * @return the first element.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public Object head()
+  {
+    return headInt();
+  }
+
+  /**
+   * Get the list without its first element.
+   * @return the rest of the list.
+   * @throws NoSuchElementException if the list is empty.
+   */
+  @Override
+  public IntList tail()
+  {
+    if (size == 0)
+      throw new NoSuchElementException("empty list");
+    return new IntList(elems, offset + 1, size - 1);
+  }
+
+  /**
+   * Get the number of elements in the list.
+   * @return the size of the list.
+   */
+  @Override
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Builds the list holding the elements of this list followed by the
+   * elements of {@code other}. Two integer lists are joined with a single
+   * array copy.
+   * @param other the list to append.
+   * @return the concatenated list.
+   */
+  @Override
+  public ListValue concat(ListValue other)
+  {
+    IntList right;
+    int[] joined;
+
+    if (!(other instanceof IntList) || size == 0 || other.isEmpty())
+      return super.concat(other);
+
+    right = (IntList) other;
+    joined = Arrays.copyOfRange(elems, offset, offset + size + right.size);
+    System.arraycopy(right.elems, right.offset, joined, size, right.size);
+    return new IntList(joined, 0, joined.length);
+  }
+
+  /**
+   * Get an iterator over the elements of the list.
+   * @return the iterator.
+   */
+  @Override
+  public Iterator<Object> iterator()
+  {
+    return new Iterator<Object>()
+    {
+      private int i = offset;
+
+      @Override
+      public boolean hasNext()
+      {
+        return i < offset + size;
+      }
+
+      @Override
+      public Object next()
+      {
+        if (i >= offset + size)
+          throw new NoSuchElementException();
+        return elems[i++];
+      }
+    };
+  }
+
+  /**
+   * Determines if {@code obj} is a list with equal elements in the same
+   * order.
+   * @param obj the object to compare to.
+   * @return true if the lists are equal; otherwise, false.
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    IntList other;
+
+    if (!(obj instanceof IntList))
+      return super.equals(obj);
+    other = (IntList) obj;
+    return Arrays.equals(elems, offset, offset + size,
+      other.elems, other.offset, other.offset + other.size);
+  }
+
+  /**
+   * Computes a hash code consistent with {@link #equals(Object)}.
+   * @return the hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    int hash = 1;
+
+    for (int i = offset; i < offset + size; i++)
+      hash = 31 * hash + Integer.hashCode(elems[i]);
+    return hash;
+  }
+}
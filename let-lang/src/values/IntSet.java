@@ -0,0 +1,143 @@
+package values;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of integers stored unboxed. A set whose elements lie in
+ * a small range is kept as a bitset and any other set as an open
+ * addressing hash table. The set behaves as a read only
+ * {@code Set<Object>} of {@code Integer} so that it compares equal to any
+ * other set holding the same integers.
+ * @author Zach Kissel
+ */
+public abstract class IntSet extends AbstractSet<Object>
+{
+  /**
+   * Builds the set holding the distinct values of {@code vals}, picking
+   * the representation that needs the least memory.
+   * @param vals the elements of the set, duplicates allowed.
+   * @return the set.
+   */
+  public static IntSet of(int[] vals)
+  {
+    int min = Integer.MAX_VALUE;
+    int max = Integer.MIN_VALUE;
+
+    if (vals.length == 0)
+      return IntBitSet.EMPTY;
+
+    for (int val : vals)
+    {
+      min = Math.min(min, val);
+      max = Math.max(max, val);
+    }
+
+    // A word of the bitset costs as much as a slot pair of the hash table.
+    if (IntBitSet.words(min, max) <= vals.length)
+      return IntBitSet.build(vals, min, max);
+    return IntHashSet.build(vals);
+  }
+
+  /**
+   * Determines if {@code val} is an element of the set.
+   * @param val the value to look for.
+   * @return true if the value is in the set; otherwise, false.
+   */
+  public abstract boolean containsInt(int val);
+
+  /**
+   * Copies the elements of the set into a new array.
+   * @return the elements in no particular order.
+   */
+  public abstract int[] elements();
+
+  /**
+   * Builds the union of this set and {@code other}.
+   * @param other the other set.
+   * @return a new set holding the elements of both sets.
+   */
+  public IntSet union(IntSet other)
+  {
+    int[] left = elements();
+    int[] right = other.elements();
+    int[] vals = Arrays.copyOf(left, left.length + right.length);
+
+    System.arraycopy(right, 0, vals, left.length, right.length);
+    return of(vals);
+  }
+
+  /**
+   * Builds the intersection of this set and {@code other}. The smaller
+   * set is walked and the larger set probed.
+   * @param other the other set.
+   * @return a new set holding the elements common to both sets.
+   */
+  public IntSet intersect(IntSet other)
+  {
+    IntSet small = size() <= other.size() ? this : other;
+    IntSet large = small == this ? other : this;
+    int[] vals = small.elements();
+    int n = 0;
+
+    for (int val : vals)
+      if (large.containsInt(val))
+        vals[n++] = val;
+    return of(Arrays.copyOf(vals, n));
+  }
+
+  /**
+   * Determines if {@code obj} is an element of the set.
+   * @param obj the value to look for.
+   * @return true if the value is an integer in the set; otherwise, false.
+   */
+  @Override
+  public boolean contains(Object obj)
+  {
+    return obj instanceof Integer && containsInt((Integer) obj);
+  }
+
+  /**
+   * Get an iterator over the boxed elements of the set.
+   * @return the iterator.
+   */
+  @Override
+  public Iterator<Object> iterator()
+  {
+    return new Iterator<Object>()
+    {
+      private int[] vals = elements();
+      private int i;
+
+      @Override
+      public boolean hasNext()
+      {
+        return i < vals.length;
+      }
+
+      @Override
+      public Object next()
+      {
+        if (i >= vals.length)
+          throw new NoSuchElementException();
+        return vals[i++];
+      }
+    };
+  }
+
+  /**
+   * Provides a string of the form {@code [a, b, c]} listing the elements
+   * in ascending order.
+   * @return the string form of the set.
+   */
+  @Override
+  public String toString()
+  {
+    int[] vals = elements();
+
+    Arrays.sort(vals);
+    return Arrays.toString(vals);
+  }
+}
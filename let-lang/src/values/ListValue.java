@@ -0,0 +1,120 @@
+package values;
+
+import java.util.Iterator;
+
+/**
+ * An immutable list value. Lists are never changed once built; taking
+ * the tail of a list or concatenating two lists builds a new list that
+ * may share storage with its operands.
+ * @author Zach Kissel
+ */
+public abstract class ListValue implements Iterable<Object>
+{
+  /**
+   * Get the first element of the list.
+   * @return the first element.
+   * @throws java.util.NoSuchElementException if the list is empty.
+   */
+  public abstract Object head();
+
+  /**
+   * Get the list without its first element.
+   * @return the rest of the list.
+   * @throws java.util.NoSuchElementException if the list is empty.
+   */
+  public abstract ListValue tail();
+
+  /**
+   * Get the number of elements in the list.
+   * @return the size of the list.
+   */
+  public abstract int size();
+
+  /**
+   * Builds the list holding the elements of this list followed by the
+   * elements of {@code other}.
+   * @param other the list to append.
+   * @return the concatenated list.
+   */
+  public ListValue concat(ListValue other)
+  {
+    Object[] vals;
+    int i = 0;
+
+    if (isEmpty())
+      return other;
+    if (other.isEmpty())
+      return this;
+
+    vals = new Object[size() + other.size()];
+    for (Object val : this)
+      vals[i++] = val;
+    for (Object val : other)
+      vals[i++] = val;
+    return ConsList.of(vals);
+  }
+
+  /**
+   * Determines if the list has no elements.
+   * @return true if the list is empty; otherwise, false.
+   */
+  public boolean isEmpty()
+  {
+    return size() == 0;
+  }
+
+  /**
+   * Determines if {@code obj} is a list with equal elements in the same
+   * order.
+   * @param obj the object to compare to.
+   * @return true if the lists are equal; otherwise, false.
+   */
+  @Override
+  public boolean equals(Object obj)
+  {
+    Iterator<Object> it;
+
+    if (obj == this)
+      return true;
+    if (!(obj instanceof ListValue) || ((ListValue) obj).size() != size())
+      return false;
+
+    it = ((ListValue) obj).iterator();
+    for (Object val : this)
+      if (!val.equals(it.next()))
+        return false;
+    return true;
+  }
+
+  /**
+   * Computes a hash code consistent with {@link #equals(Object)}.
+   * @return the hash code.
+   */
+  @Override
+  public int hashCode()
+  {
+    int hash = 1;
+
+    for (Object val : this)
+      hash = 31 * hash + val.hashCode();
+    return hash;
+  }
+
+  /**
+   * Provides a string of the form {@code [a, b, c]}.
+   * @return the string form of the list.
+   */
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder("[");
+    String sep = "";
+
+    for (Object val : this)
+    {
+      sb.append(sep).append(val);
+      sep = ", ";
+    }
+    return sb.append(']').toString();
+  }
+}